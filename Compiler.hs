@@ -3,12 +3,16 @@ module Compiler (compile) where
 import Syntax
 import Jasmin
 import Data.List
+import qualified Data.Map as Map
+import Data.Graph (stronglyConnComp, SCC(..))
+import Data.Int (Int32)
+import GHC.Float (castFloatToWord32)
 
 -- | JVM method stack
 -- | Used to keep track of the stack size needed for the method. The current
 -- | stack size is expanded and shrunk as the method is compiled, and the
 -- | maximum stack size is stored.
-data Stack = Stack { currentStackSize :: Int, maxStackSize :: Int }
+data Stack = Stack { currentStackSize :: !Int, maxStackSize :: !Int }
              deriving (Show)
 
 -- | Creates an empty stack
@@ -34,8 +38,10 @@ shrinkStack n (Stack {currentStackSize = c, maxStackSize = m})
 type Line = String
 
 -- | Compiler output for one method in the class
--- | Contains the instructions in the method and the stack state at the end of
--- | the method. The stack size limit is the maximum stack size.
+-- | Contains the instructions in the method in reverse order and the stack
+-- | state at the end of the method. The stack size limit is the maximum stack
+-- | size. Keeping the instructions reversed lets each instruction be added in
+-- | constant time.
 data Output = Output [Line] Stack
               deriving (Show)
 
@@ -43,36 +49,156 @@ data Output = Output [Line] Stack
 emptyOutput :: Output
 emptyOutput = Output [] emptyStack
 
+-- | Applies an instruction to empty output
+-- | Returns the instructions in program order and the stack state at the end.
+runInstruction :: Instruction -> ([Line], Stack)
+runInstruction instruction = (reverse instructions, stack)
+  where (Output instructions stack) = instruction emptyOutput
+
 -- | Episcopal function
 data Function
   -- | Function defined as a query, with the name of the query and the number
   -- | of its parameters. This will get translated into a method in the compiled
   -- | class
   = QueryFunction Id Int
-  -- | Locally defined function (using the let expression) with the name, list
-  -- | of parameters, the expression and the environment of the let expression
-  -- | that defined it. The expression is copied when the local function is called.
-  | LocalFunction Id [Id] Expression Environment
+  -- | Helper lifted out of an expression (see liftProgram), with the name of
+  -- | its method and the number of its parameters. Helpers are private methods
+  -- | of the compiled class
+  | HelperFunction Id Int
   -- | Parameter of a query function with the name and index (first argument = 1)
   | QueryParameter Id Int
+  -- | Value of a local definition with the name, the index of the local
+  -- | variable holding it and its inferred type. The value is evaluated once,
+  -- | when the let expression defining it is entered
+  | LocalValue Id Int ValueType
+  -- | Value precomputed when the class is initialized (see evaluateProgram),
+  -- | with the name of the static field holding it and its type
+  | PrecomputedValue Id ValueType
+  -- | Helper holding an operand that can be evaluated in parallel (see
+  -- | forkProgram), with the name of its method, the number of its parameters,
+  -- | its index among the operand tasks and the inferred type of its value
+  | OperandTask Id Int Int ValueType
     deriving (Show)
 
--- | Expression environment, containing the program name and the list of
--- | functions defined in the expression's scope
-data Environment = Environment Id [Function] deriving (Show)
+-- | Expression environment, containing the program name, the list of
+-- | functions defined in the expression's scope and the index of the first
+-- | local variable not used by the scope
+data Environment = Environment Id [Function] Int deriving (Show)
 
 -- | Creates the starting environment for program methods. This contains the
--- | Program name and a list of all query functions
-programEnvironment :: Program -> Environment
-programEnvironment (Program name _ queries) = Environment name functions
-  where functions = [QueryFunction name (length arguments) | (Query name arguments _) <- queries]
+-- | Program name and a list of all query functions, helpers and precomputed values
+programEnvironment :: Program -> [Query] -> [Precomputed] -> [Id] -> Environment
+programEnvironment (Program name _ queries) helpers precomputed tasks = environment
+  where environment = Environment name functions 1
+        functions = [QueryFunction name (length arguments) | (Query name arguments _) <- queries] ++
+                    [helperFunction name (length arguments) (head expressions) | (Query name arguments expressions) <- helpers] ++
+                    [PrecomputedValue field valueType | (Precomputed field _ valueType) <- precomputed]
+        helperFunction name arity body = case elemIndex name tasks of
+                                           (Just index) -> OperandTask name arity index (inferType body environment) -- the parameters of the task are not in the environment, so they have unknown types
+                                           Nothing -> HelperFunction name arity
 
 -- | Tries to find a function with the specified name in the environment
 lookupFunction :: Id -> Environment -> Maybe Function
-lookupFunction id (Environment _ functions) = find match functions
+lookupFunction id (Environment _ functions _) = find match functions
   where match (QueryFunction name _) = name == id
+        match (HelperFunction name _) = name == id
         match (QueryParameter name _) = name == id
-        match (LocalFunction name _ _ _) = name == id
+        match (LocalValue name _ _) = name == id
+        match (PrecomputedValue name _) = name == id
+        match (OperandTask name _ _ _) = name == id
+
+-- | Type of an episcopal value, as far as it can be inferred at compile time
+data ValueType
+  -- | Discrete integer sample
+  = IntValue
+  -- | Discrete float sample
+  | FloatValue
+  -- | Discrete boolean sample
+  | BoolValue
+  -- | Continuous sample
+  | ContinuousValue
+  -- | Distribution with the type of its samples
+  | DistributionValue ValueType
+  -- | Type that is only known at run time, such as the type of a query parameter
+  | UnknownValue
+    deriving (Eq, Show)
+
+-- | Category of an operator, deciding the types of its operands and result
+data OperatorKind = Arithmetic | Logical | Comparison | Equality
+
+-- | Finds the category of an operator
+operatorKind :: Operator -> OperatorKind
+operatorKind OpPlus = Arithmetic
+operatorKind OpMinus = Arithmetic
+operatorKind OpTimes = Arithmetic
+operatorKind OpOver = Arithmetic
+operatorKind OpOr = Logical
+operatorKind OpAnd = Logical
+operatorKind OpLessThan = Comparison
+operatorKind OpGreaterThan = Comparison
+operatorKind OpEqual = Equality
+
+-- | Infers the type of the value of an expression in the specified environment
+-- | Query parameters, query calls and helper calls have unknown types, because they can be called with arguments of
+-- | any type. Local values have the types inferred when they are defined.
+inferType :: Expression -> Environment -> ValueType
+inferType (ExpConst (ConstInt _)) _ = IntValue
+inferType (ExpConst (ConstFloat _)) _ = FloatValue
+inferType (ExpConst (ConstBool _)) _ = BoolValue
+inferType (ExpOp operator left right) env = operatorType operator (inferType left env) (inferType right env)
+inferType (ExpDist distribution) _ = DistributionValue (distributionSampleType distribution)
+inferType (ExpSample expression) env = case inferType expression env of
+                                         (DistributionValue sampleType) -> sampleType
+                                         _ -> UnknownValue
+inferType (ExpCall name _) env = case lookupFunction name env of
+                                   (Just (LocalValue _ _ valueType)) -> valueType
+                                   (Just (PrecomputedValue _ valueType)) -> valueType
+                                   (Just (OperandTask _ _ _ valueType)) -> valueType
+                                   _ -> UnknownValue
+inferType (ExpLet definitions expression) env = inferType expression (letEnvironment definitions env)
+inferType (ExpObserve _ expression) env = inferType expression env
+
+-- | Infers the type of the result of an operator from the types of its operands
+-- | Logical operators and comparisons always result in a boolean sample, or fail at run time.
+operatorType :: Operator -> ValueType -> ValueType -> ValueType
+operatorType operator left right = case operatorKind operator of
+                                     Arithmetic -> arithmeticType left right
+                                     _ -> BoolValue
+  where arithmeticType IntValue IntValue = IntValue
+        arithmeticType FloatValue FloatValue = FloatValue
+        arithmeticType FloatValue ContinuousValue = ContinuousValue -- continuous sample shifted or scaled by a constant
+        arithmeticType ContinuousValue FloatValue = ContinuousValue
+        arithmeticType _ _ = UnknownValue
+
+-- | Finds the type of the samples of a distribution
+distributionSampleType :: Distribution -> ValueType
+distributionSampleType (Bernoulli _) = IntValue
+distributionSampleType (Beta _ _) = ContinuousValue
+distributionSampleType (Normal _ _) = ContinuousValue
+distributionSampleType (Flip _) = BoolValue
+
+-- | Finds the overload of the Runtime operator method for discrete samples of the operand types
+-- | Returns the types of the operands and of the result, or Nothing if the operator has to be dispatched at run time.
+typedOperator :: Operator -> ValueType -> ValueType -> Maybe (ValueType, ValueType)
+typedOperator operator left right
+  | left /= right = Nothing -- both operands need to have the same type
+  | otherwise = case (operatorKind operator, left) of
+                  (Arithmetic, IntValue) -> Just (IntValue, IntValue)
+                  (Arithmetic, FloatValue) -> Just (FloatValue, FloatValue)
+                  (Logical, BoolValue) -> Just (BoolValue, BoolValue)
+                  (Comparison, IntValue) -> Just (IntValue, BoolValue)
+                  (Comparison, FloatValue) -> Just (FloatValue, BoolValue)
+                  (Equality, IntValue) -> Just (IntValue, BoolValue)
+                  (Equality, FloatValue) -> Just (FloatValue, BoolValue)
+                  (Equality, BoolValue) -> Just (BoolValue, BoolValue)
+                  _ -> Nothing
+
+-- | JVM type of the primitive discrete sample of a value type
+sampleClass :: ValueType -> TypeSpec
+sampleClass IntValue = TypeObject "episcopal/discrete/IntDiscreteSample"
+sampleClass FloatValue = TypeObject "episcopal/discrete/FloatDiscreteSample"
+sampleClass BoolValue = TypeObject "episcopal/discrete/BoolDiscreteSample"
+sampleClass valueType = error $ "No discrete sample class for " ++ show valueType
 
 -- | Instruction is a function that modifies an output. It usually adds an
 -- | instruction line and modifies the stack
@@ -82,16 +208,13 @@ type Instruction = Output -> Output
 instr :: Line -- | String containing the whole instruction line
       -> (Stack -> Stack) -- | Stack change function, this can expand or shrink the stack
       -> Instruction -- | Function that adds the instruction to the output and modifies the stack
-instr instruction updateStack (Output instructions stack) = Output instructions' stack'
-  where instructions' = instructions ++ [instruction]
-        stack' = updateStack stack
+instr instruction updateStack (Output instructions stack) = stack' `seq` Output (instruction : instructions) stack'
+  where stack' = updateStack stack -- evaluated right away, so that long methods do not build up a chain of stack updates
 
 -- | Combination of multiple instructions
 -- | Takes a list of instructions and applies them in sequence.
 exec :: [Instruction] -> Instruction
-exec (instruction:[]) = instruction
-exec (instruction:next) = (exec next) . instruction
-exec [] = id
+exec = foldr (flip (.)) id
 
 -- | Indents a list of program lines by two spaces
 -- | Used for method instructions to make the program output more readable
@@ -110,10 +233,416 @@ method name arity = Method name arguments (TypeObject "episcopal/runtime/Runtime
 -- | The output is a list of lines of the compiled bytecode
 compile :: Program -> [Line]
 compile program = concat [classHeader program,
+                          constantFields constants precomputed,
                           mainMethod program,
                           initMethod,
-                          queryMethods program,
-                          runMethod program]
+                          classInitMethod program constants precomputed,
+                          queryMethods evaluated helpers precomputed tasks,
+                          helperMethods evaluated helpers precomputed tasks,
+                          operandMethod evaluated helpers tasks,
+                          runMethod evaluated helpers precomputed tasks]
+  where (lifted, liftedHelpers) = liftProgram program -- local functions and parts of oversized methods become helpers
+        (forked, forkedHelpers, tasks) = forkProgram lifted liftedHelpers -- expensive operands become tasks that can run in parallel
+        (evaluated, helpers, precomputed) = evaluateProgram forked forkedHelpers -- parts known at compile time are folded or precomputed
+        constants = programConstants evaluated helpers precomputed
+
+-- | Local binding visible while lifting an expression
+data Binding
+  -- | Value of a query parameter or a local definition, with the unique name of its variable
+  = ValueBinding Id
+  -- | Local function lifted into a helper, with the name of the helper, the
+  -- | variables it captures from the enclosing scope and which of its
+  -- | parameters it uses
+  | HelperBinding Id [Id] [Bool]
+
+-- | State of lifting, with the number of names created so far and the created
+-- | helpers in reverse order
+data Lifting = Lifting Int [Query]
+
+-- | Estimated size of the bytecode of one expression node in bytes
+-- | Each node compiles to at most a few instructions, so this is an upper bound.
+nodeSize :: Int
+nodeSize = 12
+
+-- | Estimated bytecode size from which a method is split into helpers
+-- | HotSpot does not compile methods larger than 8000 bytes, which is well
+-- | below the 64KB limit of the JVM.
+methodSizeLimit :: Int
+methodSizeLimit = 8000
+
+-- | Lifts the local functions of a program into helpers and splits oversized methods
+-- | A local function with parameters becomes a helper method taking the values
+-- | it captures from the enclosing scope, followed by the parameters it uses,
+-- | so that each argument is evaluated once at the call. Local definitions and
+-- | parameters get unique names, so that the lifted expressions can refer to
+-- | the captured values by name. Returns the program with the lifted
+-- | expressions and the helpers, which are compiled like queries.
+liftProgram :: Program -> (Program, [Query])
+liftProgram (Program name body queries) = (Program name body'' queries'', helpers' ++ reverse split)
+  where (lifted, body') = liftExpression "run" [] (Lifting 0 []) body
+        (Lifting count helpers, queries') = mapAccumL liftQuery lifted queries
+        (splitBody, body'') = splitExpression "run" [] (Lifting count []) body'
+        (splitQueries, queries'') = mapAccumL splitQuery splitBody queries'
+        (Lifting _ split, helpers') = mapAccumL splitQuery splitQueries (reverse helpers)
+        liftQuery state (Query qname parameters expressions) = (state', Query qname parameters [expression])
+          where (state', expression) = liftExpression qname [(parameter, ValueBinding parameter) | parameter <- parameters] state (head expressions)
+        splitQuery state (Query qname parameters expressions) = (state', Query qname parameters [expression])
+          where (state', expression) = splitExpression qname parameters state (head expressions)
+
+-- | Lifts the local functions out of an expression
+liftExpression :: Id -- | Name of the method containing the expression, used to name the helpers
+               -> [(Id, Binding)] -- | Bindings of the names in scope
+               -> Lifting
+               -> Expression
+               -> (Lifting, Expression)
+liftExpression owner scope state (ExpCall name arguments) = case lookup name scope of
+                                                              (Just (ValueBinding variable)) -> (state, variableReference variable) -- values do not take arguments
+                                                              (Just (HelperBinding helper captured used)) -> liftHelperCall owner scope state name helper captured used arguments
+                                                              Nothing -> (state', ExpCall name arguments') -- query call
+  where (state', arguments') = mapAccumL (liftExpression owner scope) state arguments
+liftExpression owner scope state (ExpLet definitions expression) = (state'', if null values then expression' else ExpLet values expression')
+  where (state', bindings) = mapAccumL (liftDefinition owner scope) state definitions -- definitions are in the scope of the let expression, not of each other
+        scope' = [(name, binding) | (name, binding, _) <- bindings] ++ scope
+        (state'', expression') = liftExpression owner scope' state' expression
+        values = [Definition variable [] [value] | (_, ValueBinding variable, Just value) <- bindings, variable `elem` used] -- unused values are not evaluated
+        used = variableReferences expression'
+liftExpression owner scope state expression = (state', rebuild expressions')
+  where (parts, rebuild) = subexpressions [] expression
+        (state', expressions') = mapAccumL (liftExpression owner scope) state (map fst parts)
+
+-- | Lifts a local definition in the scope of its let expression
+-- | A value gets a variable with a unique name, a function is lifted into a helper.
+liftDefinition :: Id -- | Name of the method containing the definition
+               -> [(Id, Binding)] -- | Bindings of the names in the scope of the let expression
+               -> Lifting
+               -> Definition
+               -> (Lifting, (Id, Binding, Maybe Expression)) -- | Name with its binding, and the lifted expression of a value
+liftDefinition owner scope state (Definition name [] expressions) = (state'', (name, ValueBinding variable, Just value))
+  where (state', variable) = uniqueName state name
+        (state'', value) = liftExpression owner scope state' (head expressions)
+liftDefinition owner scope state (Definition name parameters expressions) = (addHelper helper state''', (name, HelperBinding helperName captured used, Nothing))
+  where (state', helperName) = uniqueName state (owner ++ "$" ++ name)
+        (state'', variables) = mapAccumL uniqueName state' parameters
+        scope' = zip parameters (map ValueBinding variables) ++ scope
+        (state''', body) = liftExpression owner scope' state'' (head expressions)
+        references = variableReferences body
+        captured = [variable | variable <- references, variable `elem` [v | (_, ValueBinding v) <- scope]] -- values of the enclosing scope used by the function
+        used = [variable `elem` references | variable <- variables]
+        helper = Query helperName (captured ++ [variable | (variable, True) <- zip variables used]) [body]
+
+-- | Lifts a call of a local function into a call of its helper
+-- | The helper gets the captured values followed by the arguments of the
+-- | parameters it uses. Arguments of unused parameters are not evaluated.
+liftHelperCall :: Id -- | Name of the method containing the call
+               -> [(Id, Binding)] -- | Bindings of the names in scope
+               -> Lifting
+               -> Id -- | Name of the local function
+               -> Id -- | Name of the helper
+               -> [Id] -- | Variables captured by the helper
+               -> [Bool] -- | Parameters used by the helper
+               -> [Expression] -- | Arguments of the call
+               -> (Lifting, Expression)
+liftHelperCall owner scope state name helper captured used arguments
+  | length arguments /= length used = error $ "Function " ++ name ++ " expects " ++ show (length used) ++ " arguments"
+  | otherwise = (state', ExpCall helper (map variableReference captured ++ arguments'))
+  where (state', arguments') = mapAccumL (liftExpression owner scope) state [argument | (argument, True) <- zip arguments used]
+
+-- | Splits an oversized expression into helpers
+-- | The subexpressions are split first. If the expression is still larger than
+-- | the method size limit, its largest subexpressions are moved into helpers
+-- | until it fits.
+splitExpression :: Id -- | Name of the method containing the expression
+                -> [Id] -- | Variables in scope
+                -> Lifting
+                -> Expression
+                -> (Lifting, Expression)
+splitExpression owner variables state expression = (state', expression')
+  where (state', (expression', _)) = splitSized owner variables state expression
+
+-- | Splits an oversized expression into helpers, also returning the estimated size of the split expression
+-- | The sizes of the subexpressions are returned by the recursive calls, so
+-- | that each expression is measured once.
+splitSized :: Id -> [Id] -> Lifting -> Expression -> (Lifting, (Expression, Int))
+splitSized owner variables state expression
+  | size <= methodSizeLimit = (state', (rebuild parts', size))
+  | otherwise = (state'', (rebuild parts'', largest size sizes))
+  where (parts, rebuild) = subexpressions variables expression
+        (state', split) = mapAccumL (\s (part, scope) -> splitSized owner scope s part) state parts
+        parts' = map fst split
+        size = nodeSize + sum (map snd split)
+        sizes = sortBy (\(_, a) (_, b) -> compare b a) (zip [0 :: Int ..] (map snd split)) -- largest parts first
+        extracted = sort (takeLargest size sizes)
+        takeLargest total ((index, partSize) : rest)
+          | total > methodSizeLimit = index : takeLargest (total - partSize + nodeSize) rest
+        takeLargest _ _ = []
+        largest total ((_, partSize) : rest)
+          | total > methodSizeLimit = largest (total - partSize + nodeSize) rest
+        largest total _ = total
+        (state'', parts'') = mapAccumL extract state' (zip3 (marks 0 extracted) parts' (map snd parts))
+        marks index (next : rest)
+          | index == next = True : marks (index + 1) rest
+        marks index rest = False : marks (index + 1) rest
+        extract s (True, part, scope) = extractHelper (owner ++ "$part") scope s part
+        extract s (False, part, _) = (s, part)
+
+-- | Moves an expression into a new helper and returns the call of the helper
+-- | The helper takes the variables of the enclosing scope used by the expression.
+extractHelper :: Id -- | Prefix of the name of the helper
+              -> [Id] -- | Variables in scope
+              -> Lifting
+              -> Expression
+              -> (Lifting, Expression)
+extractHelper prefix variables state expression = (addHelper (Query name captured [expression]) state', ExpCall name (map variableReference captured))
+  where (state', name) = uniqueName state prefix
+        captured = [variable | variable <- variableReferences expression, variable `elem` variables]
+
+-- | Creates a unique name by numbering a name
+uniqueName :: Lifting -> Id -> (Lifting, Id)
+uniqueName (Lifting count helpers) name = (Lifting (count + 1) helpers, name ++ "$" ++ show count)
+
+-- | Adds a created helper
+addHelper :: Query -> Lifting -> Lifting
+addHelper helper (Lifting count helpers) = Lifting count (helper : helpers)
+
+-- | Creates an expression reading a variable
+variableReference :: Id -> Expression
+variableReference variable = ExpCall variable []
+
+-- | Lists the names called without arguments in an expression, in the order of their first use
+-- | These are the variables used by the expression, along with queries without parameters.
+variableReferences :: Expression -> [Id]
+variableReferences = nub . references
+  where references (ExpCall name []) = [name]
+        references expression = concatMap (references . fst) (fst (subexpressions [] expression))
+
+-- | Splits an expression into its subexpressions, each with the variables in its scope
+-- | Also returns a function rebuilding the expression from new subexpressions.
+subexpressions :: [Id] -- | Variables in the scope of the expression
+               -> Expression
+               -> ([(Expression, [Id])], [Expression] -> Expression)
+subexpressions _ expression@(ExpConst _) = ([], const expression)
+subexpressions variables (ExpOp operator left right) = ([(left, variables), (right, variables)], \[left', right'] -> ExpOp operator left' right')
+subexpressions variables (ExpDist distribution) = ([(argument, variables) | argument <- distributionArguments distribution], ExpDist . rebuildDistribution distribution)
+subexpressions variables (ExpSample expression) = ([(expression, variables)], \[expression'] -> ExpSample expression')
+subexpressions variables (ExpCall name arguments) = ([(argument, variables) | argument <- arguments], ExpCall name)
+subexpressions variables (ExpLet definitions expression) = (values ++ [(expression, variables')], rebuild)
+  where values = [(head expressions, variables) | (Definition _ _ expressions) <- definitions] -- definitions are in the scope of the let expression
+        variables' = [name | (Definition name _ _) <- definitions] ++ variables
+        rebuild expressions' = ExpLet [Definition name parameters [value] | (Definition name parameters _, value) <- zip definitions expressions'] (last expressions')
+subexpressions variables (ExpObserve sample expression) = ([(sample, variables), (expression, variables)], \[sample', expression'] -> ExpObserve sample' expression')
+
+-- | Creates a distribution of the same kind with new parameter expressions
+rebuildDistribution :: Distribution -> [Expression] -> Distribution
+rebuildDistribution (Bernoulli _) [p] = Bernoulli p
+rebuildDistribution (Beta _ _) [a, b] = Beta a b
+rebuildDistribution (Normal _ _) [m, sd] = Normal m sd
+rebuildDistribution (Flip _) [p] = Flip p
+rebuildDistribution distribution _ = error $ "Wrong number of parameters for " ++ show distribution
+
+-- | Estimated cost from which an operand is evaluated in parallel with the other operand, in expression nodes
+-- | Cheaper operands stay inline, because forking costs more than evaluating
+-- | a few operators.
+forkThreshold :: Int
+forkThreshold = 100
+
+-- | Lifts the left operands of operators with two expensive operands into operand tasks
+-- | The tasks are helpers that the runtime can evaluate on another thread
+-- | while the right operand is evaluated (see compileForkedOperator). Returns
+-- | the program, its helpers including the tasks, and the names of the tasks in
+-- | the order of their indexes.
+forkProgram :: Program -> [Query] -> (Program, [Query], [Id])
+forkProgram (Program name body queries) helpers = (Program name body' queries', helpers' ++ tasks, [task | (Query task _ _) <- tasks])
+  where costs = methodCosts (queries ++ helpers)
+        (state, body') = forkExpression costs "run" [] (Lifting 0 []) body
+        (state', queries') = mapAccumL forkQuery state queries
+        (Lifting _ created, helpers') = mapAccumL forkQuery state' helpers
+        tasks = reverse created
+        forkQuery s (Query qname parameters expressions) = (s', Query qname parameters [expression])
+          where (s', expression) = forkExpression costs qname parameters s (head expressions)
+
+-- | Lifts the expensive left operands in an expression into operand tasks
+-- | The subexpressions are processed first, so the operands inside a task can
+-- | be forked as well.
+forkExpression :: Map.Map Id Int -- | Estimated costs of the methods (see methodCosts)
+               -> Id -- | Name of the method containing the expression
+               -> [Id] -- | Variables in scope
+               -> Lifting
+               -> Expression
+               -> (Lifting, Expression)
+forkExpression costs owner variables state expression = case rebuild parts' of
+                                                    (ExpOp operator left right) | expensive left && expensive right -> fork operator left right
+                                                    expression' -> (state', expression')
+  where (parts, rebuild) = subexpressions variables expression
+        (state', parts') = mapAccumL (\s (part, scope) -> forkExpression costs owner scope s part) state parts
+        expensive operand = operandCost costs variables operand >= forkThreshold
+        fork operator left right = (state'', ExpOp operator task right)
+          where (state'', task) = extractHelper (owner ++ "$$operand") variables state' left
+
+-- | Estimates the cost of evaluating an expression, counting each node once and each call of a method as the cost of its body
+-- | Methods without an estimate are the operand tasks created while forking,
+-- | which are expensive by definition.
+operandCost :: Map.Map Id Int -- | Estimated costs of the methods (see methodCosts)
+            -> [Id] -- | Variables in scope
+            -> Expression
+            -> Int
+operandCost costs variables (ExpCall name arguments)
+  | name `notElem` variables = 1 + Map.findWithDefault forkThreshold name costs + sum (map (operandCost costs variables) arguments)
+operandCost costs variables expression = 1 + sum [operandCost costs scope part | (part, scope) <- fst (subexpressions variables expression)]
+
+-- | Estimates the costs of evaluating the bodies of queries and helpers
+-- | The cost of a method includes the costs of the methods it calls.
+-- | Recursive methods are assumed to be expensive, and all costs are capped at
+-- | forkThreshold, as they are only compared to it.
+methodCosts :: [Query] -> Map.Map Id Int
+methodCosts methods = costs
+  where costs = Map.fromList [(name, cost name parameters (head expressions)) | (Query name parameters expressions) <- methods] -- refers to itself lazily
+        cost name parameters body
+          | name `elem` recursive = forkThreshold
+          | otherwise = min forkThreshold (operandCost costs parameters body)
+        recursive = concat [names | (CyclicSCC names) <- stronglyConnComp calls]
+        calls = [(name, name, calledMethods parameters (head expressions)) | (Query name parameters expressions) <- methods]
+
+-- | Lists the names of the methods called in an expression
+calledMethods :: [Id] -- | Variables in scope
+              -> Expression
+              -> [Id]
+calledMethods variables (ExpCall name arguments)
+  | name `notElem` variables = name : concatMap (calledMethods variables) arguments
+calledMethods variables expression = concat [calledMethods scope part | (part, scope) <- fst (subexpressions variables expression)]
+
+-- | Value precomputed when the program class is initialized, with the name of
+-- | the static field holding it, its expression and its type
+data Precomputed = Precomputed Id Expression ValueType
+
+-- | Evaluates the parts of a lifted program that are known at compile time
+-- | Operators on constants are folded into constants, and constant let values
+-- | are substituted into their uses. Discrete subexpressions that depend only on
+-- | constants are precomputed when the program class is initialized, and read
+-- | from static fields afterwards. Parts depending on parameters, calls,
+-- | observations or continuous samples stay at run time. As the class is
+-- | initialized before the program is configured, the precomputed values get
+-- | the approximation policy in effect at that time, exact by default.
+evaluateProgram :: Program -> [Query] -> (Program, [Query], [Precomputed])
+evaluateProgram (Program name body queries) helpers = (Program name body' queries', helpers', reverse precomputed)
+  where (state, body') = precompute ([], Map.empty) (foldExpression [] body)
+        (state', queries') = mapAccumL evaluateQuery state queries
+        ((precomputed, _), helpers') = mapAccumL evaluateQuery state' helpers
+        evaluateQuery s (Query qname parameters expressions) = (s', Query qname parameters [expression])
+          where (s', expression) = precompute s (foldExpression [] (head expressions))
+
+-- | Folds the operators on constants in an expression
+-- | Local values that fold into constants are substituted into their uses and
+-- | their definitions are removed. The names of local values are unique after
+-- | lifting, so the substitution cannot capture another variable.
+foldExpression :: [(Id, Expression)] -- | Constant values of the local variables in scope
+               -> Expression
+               -> Expression
+foldExpression values expression@(ExpCall name []) = maybe expression id (lookup name values)
+foldExpression values (ExpOp operator left right) = foldOperator operator (foldExpression values left) (foldExpression values right)
+foldExpression values (ExpLet definitions expression)
+  | null definitions' = expression'
+  | otherwise = ExpLet definitions' expression'
+  where folded = [(name, parameters, foldExpression values (head expressions)) | (Definition name parameters expressions) <- definitions]
+        known = [(name, value) | (name, [], value@(ExpConst _)) <- folded]
+        definitions' = [Definition name parameters [value] | (name, parameters, value) <- folded, not (constantValue parameters value)]
+        constantValue [] (ExpConst _) = True
+        constantValue _ _ = False
+        expression' = foldExpression (known ++ values) expression
+foldExpression values expression = rebuild (map (foldExpression values . fst) parts)
+  where (parts, rebuild) = subexpressions [] expression
+
+-- | Folds an operator if both of its operands are constants
+foldOperator :: Operator -> Expression -> Expression -> Expression
+foldOperator operator left@(ExpConst a) right@(ExpConst b) = maybe (ExpOp operator left right) ExpConst (foldConstants operator a b)
+foldOperator operator left right = ExpOp operator left right
+
+-- | Applies an operator to two constants, with the semantics of the runtime
+-- | Integers wrap around like Java ints and floats are compared by their bits.
+-- | Returns Nothing if the operator fails at run time for the constants, or if
+-- | the result cannot be written as a constant.
+foldConstants :: Operator -> Constant -> Constant -> Maybe Constant
+foldConstants operator (ConstInt a) (ConstInt b) = case operator of
+                                                     OpPlus -> int (a + b)
+                                                     OpMinus -> int (a - b)
+                                                     OpTimes -> int (a * b)
+                                                     OpOver | b /= 0 -> int (a `quot` b) -- division by zero throws at run time
+                                                     OpLessThan -> Just (ConstBool (a < b))
+                                                     OpGreaterThan -> Just (ConstBool (a > b))
+                                                     OpEqual -> Just (ConstBool (a == b))
+                                                     _ -> Nothing
+  where int n = Just (ConstInt (fromIntegral (fromIntegral n :: Int32)))
+foldConstants operator (ConstFloat a) (ConstFloat b) = case operator of
+                                                         OpPlus -> float (a + b)
+                                                         OpMinus -> float (a - b)
+                                                         OpTimes -> float (a * b)
+                                                         OpOver -> float (a / b)
+                                                         OpLessThan -> Just (ConstBool (a < b))
+                                                         OpGreaterThan -> Just (ConstBool (a > b))
+                                                         OpEqual -> Just (ConstBool (castFloatToWord32 a == castFloatToWord32 b))
+                                                         _ -> Nothing
+  where float n
+          | isNaN n || isInfinite n = Nothing -- not a valid constant
+          | otherwise = Just (ConstFloat n)
+foldConstants operator (ConstBool a) (ConstBool b) = case operator of
+                                                       OpAnd -> Just (ConstBool (a && b))
+                                                       OpOr -> Just (ConstBool (a || b))
+                                                       OpEqual -> Just (ConstBool (a == b))
+                                                       _ -> Nothing
+foldConstants _ _ _ = Nothing -- operands of different types fail at run time
+
+-- | Moves the largest subexpressions known at compile time into precomputed values
+-- | Identical subexpressions share one precomputed value. They are found by
+-- | their printed form, which tells apart the float constants 0 and -0, unlike
+-- | their comparison. Constants are not precomputed, because they are read from
+-- | their own fields already.
+precompute :: ([Precomputed], Map.Map String Id) -- | Precomputed values created so far, in reverse order, and their fields by printed expression
+           -> Expression
+           -> (([Precomputed], Map.Map String Id), Expression)
+precompute state@(precomputed, fields) expression = case staticType expression of
+                                                      (Just valueType) | not (isConstant expression) -> store valueType
+                                                      _ -> (state', rebuild parts')
+  where (parts, rebuild) = subexpressions [] expression
+        (state', parts') = mapAccumL precompute state (map fst parts)
+        isConstant (ExpConst _) = True
+        isConstant _ = False
+        key = show expression
+        store valueType = case Map.lookup key fields of
+                            (Just existing) -> (state, variableReference existing)
+                            Nothing -> ((Precomputed field expression valueType : precomputed, Map.insert key field fields), variableReference field)
+          where field = "precomputed$" ++ show (Map.size fields)
+
+-- | Finds the type of an expression that can be evaluated when the program class is initialized
+-- | These are constants, typed operators on them and samples of discrete
+-- | distributions with constant probabilities. Integer division is left to run
+-- | time, because a division by zero has to fail only when it is evaluated.
+staticType :: Expression -> Maybe ValueType
+staticType (ExpConst (ConstInt _)) = Just IntValue
+staticType (ExpConst (ConstFloat _)) = Just FloatValue
+staticType (ExpConst (ConstBool _)) = Just BoolValue
+staticType (ExpOp operator left right) = do leftType <- staticType left
+                                            rightType <- staticType right
+                                            (operandType, resultType) <- typedOperator operator leftType rightType
+                                            if integerDivision operator operandType then Nothing else Just resultType
+  where integerDivision OpOver IntValue = True
+        integerDivision _ _ = False
+staticType (ExpDist (Flip p)) | probability p = Just (DistributionValue BoolValue)
+staticType (ExpDist (Bernoulli p)) | probability p = Just (DistributionValue IntValue)
+staticType (ExpSample expression) = case staticType expression of
+                                      (Just (DistributionValue sampleType)) -> Just sampleType
+                                      _ -> Nothing
+staticType _ = Nothing
+
+-- | Checks if an expression is a constant probability
+probability :: Expression -> Bool
+probability (ExpConst (ConstFloat p)) = p >= 0 && p <= 1
+probability _ = False
+
+-- | Counts the local variables needed by the let expressions in an expression
+-- | The values of a let expression are stored above the locals of the
+-- | enclosing scope, and the let expressions inside them use the locals above.
+expressionLocals :: Expression -> Int
+expressionLocals (ExpLet definitions expression) = length definitions + maximum (map expressionLocals (expression : [head expressions | (Definition _ _ expressions) <- definitions]))
+expressionLocals expression = maximum (0 : map (expressionLocals . fst) (fst (subexpressions [] expression)))
 
 -- | Generates a Jasmin class header for the specified program
 -- | The class will have the same name as the program and it will contain all
@@ -122,6 +651,58 @@ classHeader :: Program -> [Line]
 classHeader (Program name _ _) = [jclass [ClassPublic] name,
                                   jsuper "episcopal/runtime/Program"]
 
+-- | Collects the distinct constants used in the program, its helpers and precomputed values
+-- | Each constant is stored in a static field of the program class, so that its
+-- | runtime value is only created once when the class is initialized.
+programConstants :: Program -> [Query] -> [Precomputed] -> [Constant]
+programConstants (Program _ body queries) helpers precomputed = map head (groupBy sameField (sortOn constantField constants)) -- sorted by field, so that duplicates are adjacent
+  where constants = concatMap expressionConstants (body : [e | (Query _ _ expressions) <- queries ++ helpers, e <- expressions] ++ [e | (Precomputed _ e _) <- precomputed])
+        sameField a b = constantField a == constantField b -- constants with the same field name have the same value
+
+-- | Collects the constants used in an expression
+expressionConstants :: Expression -> [Constant]
+expressionConstants expression = collect expression []
+  where collect (ExpConst constant) rest = constant : rest
+        collect e rest = foldr (collect . fst) rest (fst (subexpressions [] e)) -- prepends to the constants collected so far
+
+-- | Name of the static field holding a constant, derived from its type and value
+constantField :: Constant -> Id
+constantField (ConstInt n) = "int_" ++ fieldSafe (show n)
+constantField (ConstFloat n) = "float_" ++ fieldSafe (show n)
+constantField (ConstBool n) = if n then "bool_true" else "bool_false"
+
+-- | Replaces the characters of a number that cannot be used in a field name
+fieldSafe :: String -> String
+fieldSafe = map replace
+  where replace '-' = 'm' -- negative numbers and exponents
+        replace '.' = '_'
+        replace c = c
+
+-- | Generates the static fields holding the constants and the precomputed values of the program
+constantFields :: [Constant] -> [Precomputed] -> [Line]
+constantFields constants precomputed = [jfield [FieldPrivate, FieldStatic, FieldFinal] field runtimeValue | field <- fields]
+  where fields = map constantField constants ++ [field | (Precomputed field _ _) <- precomputed]
+        runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
+
+-- | Generates the static initializer of the class
+-- | It creates the runtime value of each constant and stores it in its field.
+-- | Then it evaluates each precomputed value from the constants, makes it
+-- | immutable and stores it in its field.
+classInitMethod :: Program -> [Constant] -> [Precomputed] -> [Line]
+classInitMethod (Program name _ _) constants precomputed = concat [[jmethod [MethodStatic] (Method "<clinit>" [] TypeVoid)],
+                                                                   [jstack (maxStackSize stack)],
+                                                                   indent body,
+                                                                   [jmethodend]]
+  where (body, stack) = runInstruction (exec (map initConstant constants ++ map initPrecomputed precomputed ++ [instr (jinstr "return") id]))
+        initConstant constant = exec [compileConstant constant, -- load the boxed constant
+                                      createDiscreteSample, -- create its runtime value
+                                      instr (jinstrargs "putstatic" [name ++ "/" ++ constantField constant, show runtimeValue]) (shrinkStack 1)] -- store it in the field
+        initPrecomputed (Precomputed field expression _) = exec [compileExpression expression (Environment name [] 0), -- evaluate the value from the constant fields
+                                                                 instr (jinstrargs "invokestatic" [show share]) id, -- make it immutable
+                                                                 instr (jinstrargs "putstatic" [name ++ "/" ++ field, show runtimeValue]) (shrinkStack 1)]
+        share = Method "episcopal/runtime/Runtime/share" [runtimeValue] runtimeValue
+        runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
+
 -- | Generates the main method of the class
 -- | This method is called when the program is run. It simply creates a new
 -- | instance of the program class, runs the program and prints out the result.
@@ -146,57 +727,188 @@ initMethod = concat [[jmethod [MethodPublic] (Method "<init>" [] TypeVoid)],
                      [jmethodend]]
 
 -- | Generates methods for all queries in the program
-queryMethods :: Program -> [Line]
-queryMethods program@(Program _ _ queries) = concat $ map (queryMethod program) queries
+queryMethods :: Program -> [Query] -> [Precomputed] -> [Id] -> [Line]
+queryMethods program@(Program _ _ queries) helpers precomputed tasks = concat $ map (queryMethod program helpers precomputed tasks observing) queries
+  where observing = observingQueries (queries ++ helpers)
 
 -- | Generates a method for the program query
--- | The method evaluates the query's expression and returns the resulting value
-queryMethod :: Program -> Query -> [Line]
-queryMethod program (Query qname parameters expressions) = compileMethod prototype locals body
-  where prototype = method qname (length parameters) -- method prototype with the query's name and number of parameters
-        locals = (length parameters) + 1 -- we need locals for each argument, plus one for this
-        body = exec [compileExpression (head expressions) environment, -- compile the query's expression using the query environment
-                     instr (jinstr "areturn") (shrinkStack 1)] -- return the resulting value
-        environment = Environment pname functions' -- query environment contains all program queries plus query parameters
+-- | The method evaluates the query's expression and returns the resulting value.
+-- | Queries that cannot make observations are memoized when the program enables
+-- | it: the method first looks up a cached result for its arguments, and stores
+-- | the result after evaluating the expression.
+queryMethod :: Program
+            -> [Query] -- | Helpers of the program
+            -> [Precomputed] -- | Precomputed values of the program
+            -> [Id] -- | Names of the operand tasks
+            -> [Id] -- | Names of the queries and helpers that can make observations
+            -> Query
+            -> [Line]
+queryMethod program helpers precomputed tasks observing (Query qname parameters expressions) = compileMethod [MethodPublic] prototype locals body
+  where prototype = method qname arity -- method prototype with the query's name and number of parameters
+        arity = length parameters
+        locals = arity + 2 + expressionLocals (head expressions) -- we need locals for each argument, plus one for this, one for the memoization key and the values of let expressions
+        key = arity + 1 -- local with the array of arguments
+        body
+          | qname `elem` observing = exec [compileExpression (head expressions) environment, -- compile the query's expression using the query environment
+                                                          instr (jinstr "areturn") (shrinkStack 1)] -- return the resulting value
+          | otherwise = exec [storeArguments,
+                              lookupResult,
+                              compileExpression (head expressions) environment, -- evaluate the query if there is no cached result
+                              storeResult]
+        storeArguments = exec ([instr (jinstrargs "ldc" [show arity]) (expandStack 1), -- create an array with the arguments
+                                instr (jinstrargs "anewarray" ["episcopal/runtime/RuntimeValue"]) id] ++
+                               concat [[instr (jinstr "dup") (expandStack 1),
+                                        instr (jinstrargs "ldc" [show (index - 1)]) (expandStack 1),
+                                        instr (jinstrargs "aload" [show index]) (expandStack 1),
+                                        instr (jinstr "aastore") (shrinkStack 3)] | index <- [1..arity]] ++
+                               [instr (jinstrargs "astore" [show key]) (shrinkStack 1)])
+        lookupResult = exec [loadKey,
+                             instr (jinstrargs "invokevirtual" [show cachedQuery]) (expandStack 1 . shrinkStack 3), -- look up a cached result
+                             instr (jinstr "dup") (expandStack 1),
+                             instr (jinstrargs "ifnull" ["Evaluate"]) (shrinkStack 1),
+                             instr (jinstr "areturn") id, -- return the cached result, the null stays on the stack when jumping to the label
+                             instr "Evaluate:" id,
+                             instr (jinstr "pop") (shrinkStack 1),
+                             loadKey] -- keep this and the key on the stack for storing the result
+        storeResult = exec [instr (jinstrargs "invokevirtual" [show cacheQuery]) (expandStack 1 . shrinkStack 4), -- store the result
+                            instr (jinstr "areturn") (shrinkStack 1)] -- return the resulting value
+        loadKey = exec [instr (jinstr "aload_0") (expandStack 1),
+                        instr (jinstrargs "ldc" [show qname]) (expandStack 1),
+                        instr (jinstrargs "aload" [show key]) (expandStack 1)]
+        cachedQuery = Method "episcopal/runtime/Program/cachedQuery" [string, arguments] runtimeValue
+        cacheQuery = Method "episcopal/runtime/Program/cacheQuery" [string, arguments, runtimeValue] runtimeValue
+        string = TypeObject "java/lang/String"
+        arguments = TypeArray runtimeValue
+        runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
+        environment = Environment pname functions' (arity + 2) -- query environment contains all program queries plus query parameters
         functions' = [QueryParameter fname index | (fname, index) <- zip parameters [1..]] ++ functions
-        (Environment pname functions) = programEnvironment program
+        (Environment pname functions _) = programEnvironment program helpers precomputed tasks
+
+-- | Generates methods for all helpers of the program
+helperMethods :: Program -> [Query] -> [Precomputed] -> [Id] -> [Line]
+helperMethods program helpers precomputed tasks = concat $ map (helperMethod program helpers precomputed tasks) helpers
+
+-- | Generates a private method for a helper
+-- | The method takes the values captured by the helper and the used parameters
+-- | of its local function, evaluates the helper's expression and returns the
+-- | resulting value.
+helperMethod :: Program -> [Query] -> [Precomputed] -> [Id] -> Query -> [Line]
+helperMethod program helpers precomputed tasks (Query name parameters expressions) = compileMethod [MethodPrivate] prototype locals body
+  where prototype = method name arity
+        arity = length parameters
+        locals = arity + 1 + expressionLocals (head expressions) -- locals for each argument, this and the values of let expressions
+        body = exec [compileExpression (head expressions) environment,
+                     instr (jinstr "areturn") (shrinkStack 1)]
+        environment = Environment pname functions' (arity + 1) -- parameters are read like the parameters of queries
+        functions' = [QueryParameter fname index | (fname, index) <- zip parameters [1..]] ++ functions
+        (Environment pname functions _) = programEnvironment program helpers precomputed tasks
+
+-- | Finds the queries that can make observations, directly or through the queries they call
+-- | Their results depend on the random generator, so they are never memoized.
+observingQueries :: [Query] -> [Id]
+observingQueries queries = grow []
+  where grow names
+          | length names' == length names = names -- no more queries observe through calls
+          | otherwise = grow names'
+          where names' = [name | (Query name _ expressions) <- queries, any (observes names) expressions]
+
+-- | Checks if an expression can make an observation, given the names of the observing queries
+observes :: [Id] -> Expression -> Bool
+observes _ (ExpConst _) = False
+observes _ (ExpObserve _ _) = True
+observes names (ExpOp _ left right) = observes names left || observes names right
+observes names (ExpDist distribution) = any (observes names) (distributionArguments distribution)
+observes names (ExpSample expression) = observes names expression
+observes names (ExpCall name arguments) = name `elem` names || any (observes names) arguments
+observes names (ExpLet definitions expression) = any (observes names) (expression : [e | (Definition _ _ expressions) <- definitions, e <- expressions])
+
+-- | Lists the parameter expressions of a distribution
+distributionArguments :: Distribution -> [Expression]
+distributionArguments (Bernoulli p) = [p]
+distributionArguments (Beta a b) = [a, b]
+distributionArguments (Normal m sd) = [m, sd]
+distributionArguments (Flip p) = [p]
+
+-- | Generates the method evaluating the operand tasks for the runtime
+-- | The method jumps to the helper of a task by its index and calls it with
+-- | the arguments from the array. Programs without tasks inherit the method of
+-- | the Program class.
+operandMethod :: Program -> [Query] -> [Id] -> [Line]
+operandMethod _ _ [] = []
+operandMethod (Program name _ _) helpers tasks = compileMethod [MethodProtected] prototype 3 body
+  where prototype = Method "evaluateOperand" [TypeInt, arguments] runtimeValue
+        body = exec ([instr (jinstr "iload_1") (expandStack 1),
+                      instr (jinstrargs "tableswitch" ["0", show (length tasks - 1)]) (shrinkStack 1)] ++ -- the indexes of the tasks are consecutive
+                     [instr ("  " ++ label index) id | index <- [0 .. length tasks - 1]] ++
+                     [instr "  default : Inherited" id] ++
+                     zipWith callTask [0 ..] tasks ++
+                     [instr "Inherited:" id, inherited])
+        callTask index task = exec ([instr (label index ++ ":") id,
+                                     instr (jinstr "aload_0") (expandStack 1)] ++
+                                    concat [[instr (jinstr "aload_2") (expandStack 1),
+                                             instr (jinstrargs "ldc" [show argument]) (expandStack 1),
+                                             instr (jinstr "aaload") (shrinkStack 1)] | argument <- [0 .. arity - 1]] ++ -- load each argument from the array
+                                    [instr (jinstrargs "invokenonvirtual" [show (method (name ++ "/" ++ task) arity)]) (expandStack 1 . shrinkStack (arity + 1)),
+                                     instr (jinstr "areturn") (shrinkStack 1)])
+          where arity = head [length parameters | (Query helper parameters _) <- helpers, helper == task]
+        label index = "Task" ++ show (index :: Int)
+        inherited = exec [instr (jinstr "aload_0") (expandStack 1), -- unknown indexes are handled by the Program class
+                          instr (jinstr "iload_1") (expandStack 1),
+                          instr (jinstr "aload_2") (expandStack 1),
+                          instr (jinstrargs "invokenonvirtual" [show (Method "episcopal/runtime/Program/evaluateOperand" [TypeInt, arguments] runtimeValue)]) (expandStack 1 . shrinkStack 3),
+                          instr (jinstr "areturn") (shrinkStack 1)]
+        arguments = TypeArray runtimeValue
+        runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
 
 -- | Generates the run method
 -- | This method executes the program's expression and returns its value
-runMethod :: Program -> [Line]
-runMethod program@(Program _ body _) = compileMethod methodPrototype 1 methodBody
+runMethod :: Program -> [Query] -> [Precomputed] -> [Id] -> [Line]
+runMethod program@(Program _ body _) helpers precomputed tasks = compileMethod [MethodPublic] methodPrototype (1 + expressionLocals body) methodBody
   where methodPrototype = Method "run" [] (TypeObject "episcopal/runtime/RuntimeValue") -- method called "run" with no parameters, returning a value
-        methodBody = exec [compileExpression body (programEnvironment program), -- compile the program expression using the program scope
+        methodBody = exec [compileExpression body (programEnvironment program helpers precomputed tasks), -- compile the program expression using the program scope
                            instr (jinstr "areturn") (shrinkStack 1)] -- return the resulting value
 
 -- | Generates the Jasmin directives defining the specified method
-compileMethod :: Method -- | Method descriptor (includes name, parameters and return type)
+compileMethod :: [MethodSpec] -- | Method attributes
+              -> Method -- | Method descriptor (includes name, parameters and return type)
               -> Int -- | Number of local variables needed for the method
               -> Instruction -- | Function that generates the body of the method and the stack
               -> [Line] -- | Bytecode for the method
-compileMethod prototype locals instruction = concat [[jmethod [MethodPublic] prototype], -- public method with the specified params
+compileMethod specs prototype locals instruction = concat [[jmethod specs prototype], -- method with the specified attributes and params
                                                      [jstack (maxStackSize stack)], -- stack size is the maximum stack size used by the instructions
                                                      [jlocals locals], -- number of local variables
                                                      indent body, -- method body
                                                      [jmethodend]]
-  where (Output body stack) = instruction emptyOutput -- apply the instruction to empty output, returning method instructions and stack
+  where (body, stack) = runInstruction instruction -- apply the instruction to empty output, returning method instructions and stack
 
 -- | Generates Jasmin instructions for the specified expression in the specified environment
 compileExpression :: Expression -> Environment -> Instruction
-compileExpression (ExpConst constant) _ = exec [compileConstant constant,
-                                                createDiscreteSample]
-compileExpression (ExpOp operator left right) env = exec [compileExpression left env,
-                                                          compileExpression right env,
-                                                          compileOperator operator]
+compileExpression (ExpConst constant) env = loadConstant constant env
+compileExpression (ExpOp operator (ExpCall name arguments) right) env
+  | (Just task@(OperandTask _ _ _ _)) <- lookupFunction name env = compileForkedOperator operator task arguments right env
+compileExpression (ExpOp operator left right) env
+  | integerChain operator left right env = compileChainOperator operator left right env
+compileExpression (ExpOp operator left right) env = case typedOperator operator (inferType left env) (inferType right env) of
+                                                      (Just types@(_, resultType)) -> exec [compileTypedOperator operator types left right env, -- call the typed operator
+                                                                                           wrapSample resultType] -- and wrap its result in a runtime value
+                                                      Nothing -> exec [compileExpression left env, -- operand types are only known at run time
+                                                                       compileExpression right env,
+                                                                       compileOperator operator]
 compileExpression (ExpDist distribution) env = compileDistribution distribution env
 compileExpression (ExpSample expression) env = exec [compileExpression expression env,
                                                      sampleDistribution]
 compileExpression (ExpCall name arguments) env = compileCall name arguments env
-compileExpression (ExpLet definitions expression) env = compileLet definitions expression env
+compileExpression (ExpLet definitions expression) env = compileLet compileExpression definitions expression env
 compileExpression (ExpObserve sample expression) env = exec [compileExpression sample env,
                                                              compileExpression expression env,
                                                              observeSample]
 
+-- | Loads the runtime value of a constant from its static field
+loadConstant :: Constant -> Environment -> Instruction
+loadConstant constant (Environment program _ _) = instr (jinstrargs "getstatic" [field, show runtimeValue]) (expandStack 1)
+  where field = program ++ "/" ++ constantField constant
+        runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
+
 -- | Creates a discrete sample from a constant
 -- | The constant should be on the stack and an instance of Integer, Float or Boolean
 createDiscreteSample :: Instruction
@@ -240,6 +952,156 @@ compileOperator operator = instr instruction (expandStack 1 . shrinkStack 2)
   where instruction = jinstrargs "invokestatic" [show (method methodName 2)] -- calls the corresponding method
         methodName = "episcopal/runtime/Runtime/" ++ (operatorMethodName operator) -- get the Runtime method name for the operator
 
+-- | Generates Jasmin instructions for an operator whose left operand is an operand task
+-- | The task is forked with its arguments, the right operand is evaluated on
+-- | the current thread, and the result of the task is joined below it before
+-- | the operator is called. When the parallel evaluation is disabled, the
+-- | helper of the task is called directly instead of forking it, and its value
+-- | is joined in the same way. The operator is typed if the types of the
+-- | operands are known.
+compileForkedOperator :: Operator
+                      -> Function -- | Operand task
+                      -> [Expression] -- | Arguments of the task
+                      -> Expression -- | Right operand
+                      -> Environment
+                      -> Instruction
+compileForkedOperator operator (OperandTask name arity index leftType) arguments right env = exec [instr (jinstr "aload_0") (expandStack 1),
+                                                                                                  instr (jinstrargs "invokevirtual" [show parallel]) id,
+                                                                                                  instr (jinstrargs "ifeq" [sequential]) (shrinkStack 1),
+                                                                                                  instr (jinstr "aload_0") (expandStack 1),
+                                                                                                  instr (jinstrargs "ldc" [show index]) (expandStack 1),
+                                                                                                  argumentArray,
+                                                                                                  instr (jinstrargs "invokevirtual" [show fork]) (expandStack 1 . shrinkStack 3), -- fork the task
+                                                                                                  instr (jinstrargs "goto" [joined]) (shrinkStack 1), -- the other branch starts without the operand
+                                                                                                  instr (sequential ++ ":") id,
+                                                                                                  compileMethodCall "invokenonvirtual" name arity arguments env, -- evaluate the task right away
+                                                                                                  instr (jinstrargs "invokestatic" [show evaluated]) id,
+                                                                                                  instr (joined ++ ":") id,
+                                                                                                  compileRight, -- evaluate the right operand meanwhile
+                                                                                                  instr (jinstr "swap") id,
+                                                                                                  instr (jinstrargs "invokevirtual" [show result]) id, -- join the task
+                                                                                                  compileLeft,
+                                                                                                  instr (jinstr "swap") id, -- the left operand goes below the right one
+                                                                                                  compileCombine]
+  where (compileRight, compileLeft, compileCombine) = case typed of
+                                                        (Just (operandType, resultType)) -> (compileSample operandType right env,
+                                                                                            unwrapSample operandType,
+                                                                                            exec [instr (jinstrargs "invokestatic" [show (typedMethod operandType resultType)]) (shrinkStack 1),
+                                                                                                  wrapSample resultType])
+                                                        Nothing -> (compileExpression right env, id, compileOperator operator)
+        typed
+          | integerChain operator (ExpCall name arguments) right env = Nothing -- chains stay lazy
+          | otherwise = typedOperator operator leftType (inferType right env)
+        typedMethod operandType resultType = Method ("episcopal/runtime/Runtime/" ++ operatorMethodName operator) [sampleClass operandType, sampleClass operandType] (sampleClass resultType)
+        sequential = "Sequential" ++ show index -- each task is used by one operator, so its index names the labels
+        joined = "Joined" ++ show index
+        parallel = Method "episcopal/runtime/Program/isParallelOperands" [] TypeBoolean
+        evaluated = Method "episcopal/runtime/Operand/evaluated" [runtimeValue] (TypeObject "episcopal/runtime/Operand")
+        argumentArray = exec ([instr (jinstrargs "ldc" [show (length arguments)]) (expandStack 1),
+                               instr (jinstrargs "anewarray" ["episcopal/runtime/RuntimeValue"]) id] ++
+                              concat [[instr (jinstr "dup") (expandStack 1),
+                                       instr (jinstrargs "ldc" [show position]) (expandStack 1),
+                                       compileExpression argument env,
+                                       instr (jinstr "aastore") (shrinkStack 3)] | (argument, position) <- zip arguments [0 :: Int ..]])
+        fork = Method "episcopal/runtime/Program/forkOperand" [TypeInt, TypeArray runtimeValue] (TypeObject "episcopal/runtime/Operand")
+        result = Method "episcopal/runtime/Operand/result" [] runtimeValue
+        runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
+compileForkedOperator _ function _ _ _ = error $ show function ++ " is not an operand task"
+
+-- | Checks if an expression calls an operand task
+-- | An operator with such a left operand is compiled by compileForkedOperator.
+operandTask :: Expression -> Environment -> Bool
+operandTask (ExpCall name _) env = case lookupFunction name env of
+                                     (Just (OperandTask _ _ _ _)) -> True
+                                     _ -> False
+operandTask _ _ = False
+
+-- | Checks if an operator on two integers continues a chain of integer arithmetic
+-- | Chains are compiled to the operators dispatched at run time instead of the
+-- | typed overloads, so that the runtime can build and reduce them lazily when
+-- | its lazy mode is enabled (see Runtime.setLazy). A comparison of the result
+-- | of a chain is part of it, so that the runtime can fuse it into a sum.
+integerChain :: Operator -> Expression -> Expression -> Environment -> Bool
+integerChain operator left right env = chainOperator operator && integerOperands left right env &&
+                                       (integerArithmetic left env || integerArithmetic right env)
+  where chainOperator OpOver = False
+        chainOperator op = case operatorKind op of
+                            Arithmetic -> True
+                            Comparison -> True
+                            _ -> False
+
+-- | Checks if an expression is an addition, subtraction or multiplication of two integers
+-- | Operators forking their left operand are not part of a chain.
+integerArithmetic :: Expression -> Environment -> Bool
+integerArithmetic (ExpOp operator left right) env = lazyOperator operator && not (operandTask left env) && integerOperands left right env
+  where lazyOperator OpPlus = True
+        lazyOperator OpMinus = True
+        lazyOperator OpTimes = True
+        lazyOperator _ = False
+integerArithmetic _ _ = False
+
+-- | Checks if both operands of an operator are integer samples
+integerOperands :: Expression -> Expression -> Environment -> Bool
+integerOperands left right env = inferType left env == IntValue && inferType right env == IntValue
+
+-- | Generates Jasmin instructions for an operator of a chain of integer arithmetic
+-- | The integer arithmetic operands are compiled as part of the chain, both
+-- | operands are left on the stack as runtime values.
+compileChainOperator :: Operator -> Expression -> Expression -> Environment -> Instruction
+compileChainOperator operator left right env = exec [compileChainOperand left,
+                                                     compileChainOperand right,
+                                                     compileOperator operator]
+  where compileChainOperand (ExpOp op l r) | integerArithmetic (ExpOp op l r) env = compileChainOperator op l r env
+        compileChainOperand expression = compileExpression expression env
+
+-- | Generates Jasmin instructions for an operator with operands of statically known types
+-- | The operands are compiled to primitive discrete samples and passed to the Runtime method overload for their types,
+-- | which leaves the primitive discrete sample of the result on the stack.
+compileTypedOperator :: Operator
+                     -> (ValueType, ValueType) -- | Types of the operands and of the result
+                     -> Expression -- | Left operand
+                     -> Expression -- | Right operand
+                     -> Environment
+                     -> Instruction
+compileTypedOperator operator (operandType, resultType) left right env = exec [compileSample operandType left env,
+                                                                               compileSample operandType right env,
+                                                                               instr instruction (expandStack 1 . shrinkStack 2)]
+  where instruction = jinstrargs "invokestatic" [show (Method methodName [operand, operand] (sampleClass resultType))]
+        methodName = "episcopal/runtime/Runtime/" ++ (operatorMethodName operator)
+        operand = sampleClass operandType
+
+-- | Generates Jasmin instructions for an expression of a discrete type inferred at compile time
+-- | Leaves the primitive discrete sample on the stack instead of a runtime value. Typed operators and the expressions
+-- | of lets are compiled without runtime values, other expressions are compiled as usual and unwrapped.
+compileSample :: ValueType -- | Inferred type of the expression
+              -> Expression
+              -> Environment
+              -> Instruction
+compileSample valueType (ExpConst constant) env = exec [loadConstant constant env, unwrapSample valueType]
+compileSample valueType expression@(ExpOp operator left right) env
+  | integerChain operator left right env || operandTask left env = exec [compileExpression expression env, unwrapSample valueType]
+compileSample valueType expression@(ExpOp operator left right) env = case typedOperator operator (inferType left env) (inferType right env) of
+                                                                       (Just types) -> compileTypedOperator operator types left right env
+                                                                       Nothing -> exec [compileExpression expression env, unwrapSample valueType]
+compileSample valueType (ExpLet definitions expression) env = compileLet (compileSample valueType) definitions expression env
+compileSample valueType expression env = exec [compileExpression expression env, unwrapSample valueType]
+
+-- | Generates Jasmin instruction for wrapping the primitive discrete sample on the stack in a runtime value
+wrapSample :: ValueType -> Instruction
+wrapSample valueType = instr (jinstrargs "invokestatic" [show wrap]) id -- call RuntimeValue.of
+  where wrap = Method "episcopal/runtime/RuntimeValue/of" [sampleClass valueType] (TypeObject (valueClass valueType))
+        valueClass IntValue = "episcopal/runtime/RuntimeValue$IntSampleValue"
+        valueClass FloatValue = "episcopal/runtime/RuntimeValue$FloatSampleValue"
+        valueClass _ = "episcopal/runtime/RuntimeValue$BoolSampleValue"
+
+-- | Generates Jasmin instruction for reading the primitive discrete sample of the runtime value on the stack
+unwrapSample :: ValueType -> Instruction
+unwrapSample valueType = instr (jinstrargs "invokevirtual" [show getter]) id -- call the getter of the sample type
+  where getter = Method ("episcopal/runtime/RuntimeValue/" ++ getterName valueType) [] (sampleClass valueType)
+        getterName IntValue = "getDiscreteIntSample"
+        getterName FloatValue = "getDiscreteFloatSample"
+        getterName _ = "getDiscreteBoolSample"
+
 -- | Generates Jasmin instructions for instantiating a distribution of the specified type
 -- | Calls one of bernoulli, beta, normal or flip methods of the Runtime class
 compileDistribution :: Distribution -> Environment -> Instruction
@@ -265,53 +1127,69 @@ compileCall :: Id -- | Name of the function
             -> Instruction
 compileCall name arguments env = case lookupFunction name env of -- try to find the function by its name
                                    (Just function) -> case function of -- function exists
-                                     (QueryFunction _ _) -> compileQueryCall function arguments env
-                                     (QueryParameter _ _) -> compileQueryParameter function
-                                     (LocalFunction _ _ _ _) -> compileLocalCall function arguments env
+                                     (QueryFunction _ arity) -> compileMethodCall "invokevirtual" name arity arguments env
+                                     (HelperFunction _ arity) -> compileMethodCall "invokenonvirtual" name arity arguments env -- helpers are private methods
+                                     (OperandTask _ arity _ _) -> compileMethodCall "invokenonvirtual" name arity arguments env -- evaluated right away outside of operators
+                                     (QueryParameter _ index) -> loadLocal index
+                                     (LocalValue _ index _) -> loadLocal index
+                                     (PrecomputedValue field _) -> loadPrecomputed field env
                                    Nothing -> error $ "Function " ++ name ++ " does not exist" -- function does not exist
 
--- | Compiles a call to the specified query function
-compileQueryCall :: Function -- | Query function
-                 -> [Expression] -- | Arguments for the function
-                 -> Environment -- | Current environment
-                 -> Instruction
-compileQueryCall function arguments env = exec [object, operands, call] -- load function operands and this onto the stack, call the method
+-- | Compiles a call to the method of a query or a helper
+compileMethodCall :: String -- | Invoke instruction
+                  -> Id -- | Name of the method
+                  -> Int -- | Number of parameters of the method
+                  -> [Expression] -- | Arguments for the method
+                  -> Environment -- | Current environment
+                  -> Instruction
+compileMethodCall invoke name arity arguments env = exec [object, operands, call] -- load function operands and this onto the stack, call the method
   where operands = exec [compileExpression argument env | argument <- arguments] -- compile expression of each argument
         object = instr (jinstr "aload_0") (expandStack 1) -- load this onto the stack
-        call = instr (jinstrargs "invokevirtual" [show query]) (expandStack 1 . shrinkStack 1) -- call the query method
-        query = method (program ++ "/" ++ name) arity -- query method is defined in the program class
-        (QueryFunction name arity) = function
-        (Environment program _) = env
+        call = instr (jinstrargs invoke [show query]) (expandStack 1 . shrinkStack (length arguments + 1)) -- call the method, which takes this and the arguments
+        query = method (program ++ "/" ++ name) arity -- the method is defined in the program class
+        (Environment program _ _) = env
 
--- | Compiles a call to the specified query parameter
-compileQueryParameter :: Function -- | Query parameter
-                      -> Instruction
-compileQueryParameter function = instr (jinstrargs "aload" [show index]) (expandStack 1) -- load local variable onto the stack
-  where (QueryParameter _ index) = function
-
--- | Compiles a call to the specified local function
-compileLocalCall :: Function  -- | Local function
-                 -> [Expression] -- | Arguments for the function
-                 -> Environment -- | Current environment
-                 -> Instruction
-compileLocalCall function arguments env = compileExpression expression env' -- compile the expression in the local function, using the modified environment
-  where env' = Environment program functions' -- the modified environment is based on the environment of the let expression that defined the function
-        functions' = (zipWith bind parameters arguments) ++ functions -- it contains all the functions in the environment, plus call arguments defined as new local functions
-        bind parameter argument = LocalFunction parameter [] argument env -- arguments are bound to the environment of the call expression, not the let expression
-        (LocalFunction _ parameters expression fenv) = function
-        (Environment program functions) = fenv
+-- | Loads the value of a local variable, which holds a query parameter or the value of a local definition
+loadLocal :: Int -- | Index of the local variable
+          -> Instruction
+loadLocal index = instr (jinstrargs "aload" [show index]) (expandStack 1) -- load local variable onto the stack
+
+-- | Loads a precomputed value from its static field
+loadPrecomputed :: Id -- | Name of the field
+                -> Environment
+                -> Instruction
+loadPrecomputed field (Environment program _ _) = instr (jinstrargs "getstatic" [program ++ "/" ++ field, show runtimeValue]) (expandStack 1)
+  where runtimeValue = TypeObject "episcopal/runtime/RuntimeValue"
 
 -- | Compiles a local definition expression
-compileLet :: [Definition] -- | Defined functions
+-- | The value of each definition is evaluated once and stored in a local
+-- | variable, then the contained expression is compiled in an environment
+-- | reading the values from the variables.
+compileLet :: (Expression -> Environment -> Instruction) -- | Compiles the contained expression
+           -> [Definition] -- | Defined values
            -> Expression -- | Expression that can use the definitions
            -> Environment -- | Parent environment for the expression
            -> Instruction
-compileLet definitions expression env = compileExpression expression env' -- let expression modifies the environment of the contained expression
-  where env' = Environment program functions' -- the new environment contains all previously defined functions, plus the function defined by let
-        functions' = defined ++ functions'
-        defined = [LocalFunction name arguments (head expressions) env | -- for each definition in the let expression a new function is created, capturing the
-                   (Definition name arguments expressions) <- definitions] -- environment of the let expression so that it can be reused when calling the defined function
-        (Environment program functions) = env
+compileLet compileBody definitions expression env = exec (map store (zip definitions [first..]) ++ [compileBody expression (letEnvironment definitions env)])
+  where store (Definition _ _ expressions, index) = exec [compileExpression (head expressions) (definitionEnvironment definitions env), -- evaluate the value in the parent scope
+                                                          instr (jinstrargs "astore" [show index]) (shrinkStack 1)] -- and store it in its local variable
+        (Environment _ _ first) = env
+
+-- | Creates the environment in which the values of a local definition expression are evaluated
+-- | This is the parent environment, with the local variables of the values reserved.
+definitionEnvironment :: [Definition] -- | Defined values
+                      -> Environment -- | Parent environment
+                      -> Environment
+definitionEnvironment definitions (Environment program functions first) = Environment program functions (first + length definitions)
+
+-- | Creates the environment for the expression of a local definition expression
+letEnvironment :: [Definition] -- | Defined values
+               -> Environment -- | Parent environment
+               -> Environment
+letEnvironment definitions env = Environment program (values ++ functions) (first + length definitions) -- the new environment contains all previously defined functions, plus the values defined by let
+  where values = [LocalValue name index (inferType (head expressions) (definitionEnvironment definitions env)) | -- each value is read from its own local variable
+                  (Definition name _ expressions, index) <- zip definitions [first..]]
+        (Environment program functions first) = env
 
 -- | Generates an instruction for observing a sample
 observeSample :: Instruction
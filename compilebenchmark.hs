@@ -0,0 +1,38 @@
+import Syntax
+import Compiler
+import System.CPUTime
+import Text.Printf
+
+-- | Measures the compile time of generated programs of increasing size
+-- | Each program sums a chain of constants and of samples of Bernoulli
+-- | distributions in the program expression and in queries calling each other,
+-- | so the time per expression node should stay about the same as the programs
+-- | grow. The samples have different constant probabilities, so each of them
+-- | becomes a precomputed value.
+main = mapM_ measure [1000 * 2 ^ n | n <- [0 .. 6]]
+
+measure :: Int -> IO ()
+measure size = do
+  start <- getCPUTime
+  let output = compile (generate size)
+  let characters = sum (map length output) -- forces the whole output
+  characters `seq` return ()
+  end <- getCPUTime
+  let seconds = fromIntegral (end - start) / 1e12 :: Double
+  printf "%d nodes: %d lines, %.3f s, %.2f us/node\n" size (length output) seconds (seconds * 1e6 / fromIntegral size)
+
+-- | Generates a program with about the specified number of expression nodes
+generate :: Int -> Program
+generate size = Program "compilebenchmark" (chain (ExpCall (queryName 0) [ExpConst (ConstInt 0)]) (size `div` 2)) queries
+  where queries = [Query (queryName n) ["x"] [chain (next n) (size `div` (2 * count))] | n <- [0 .. count - 1]]
+        next n = if n + 1 < count then ExpCall (queryName (n + 1)) [ExpCall "x" []] else ExpCall "x" []
+        count = 10
+        queryName n = "query" ++ show n
+
+-- | Adds a number of constants and samples to an expression
+chain :: Expression -> Int -> Expression
+chain expression 0 = expression
+chain expression n = chain (ExpOp OpPlus expression term) (n - 1)
+  where term
+          | even n = ExpConst (ConstInt n)
+          | otherwise = ExpSample (ExpDist (Bernoulli (ExpConst (ConstFloat (fromIntegral n / fromIntegral (n + 1))))))
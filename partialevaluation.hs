@@ -0,0 +1,10 @@
+import Syntax
+import Compiler
+
+main = putStr $ unlines $ compile program
+
+program = Program "partialevaluation" body [query]
+  where body = ExpLet [Definition "x" [] [ExpOp OpPlus (ExpConst (ConstInt 1)) (ExpConst (ConstInt 2))]] result
+        result = ExpCall "query" [ExpCall "x" []]
+        query = Query "query" ["n"] [ExpOp OpPlus (ExpCall "n" []) (ExpOp OpPlus coin coin)]
+        coin = ExpSample (ExpDist (Bernoulli (ExpConst (ConstFloat 0.5))))
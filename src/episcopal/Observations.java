@@ -1,26 +1,67 @@
 package episcopal;
 
+import episcopal.discrete.BoolDiscreteSample;
 import episcopal.discrete.DiscreteSample;
 
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
 public class Observations {
     /**
      * Randomly selects one value from the sample. The probabilities of the values are considered when selecting a value.
+     * The values are drawn by the sampler cached on the sample (see {@link DiscreteSample#sampler()}), which takes
+     * constant time.
      * @param sample Sample containing values to be selected
      * @param <T> Type of the discrete sample values
      * @return Selected value
      */
     public static <T> T select(DiscreteSample<T> sample) {
-        double targetWeight = Math.random();
-        double totalWeight = 0;
+        return sample.sampler().select(ThreadLocalRandom.current());
+    }
 
-        for (T value : sample.values()) {
-            totalWeight += sample.get(value);
+    /**
+     * Randomly selects one value from the sample using the specified random generator
+     * @param sample Sample containing values to be selected
+     * @param random Random generator
+     * @param <T> Type of the discrete sample values
+     * @return Selected value
+     */
+    public static <T> T select(DiscreteSample<T> sample, RandomGenerator random) {
+        return sample.sampler().select(random);
+    }
 
-            if (totalWeight >= targetWeight) {
-                return value;
-            }
-        }
+    /**
+     * Randomly selects one value from a boolean sample using the specified random generator. The value is drawn
+     * directly, see {@link BoolDiscreteSample#select(RandomGenerator)}.
+     * @param sample Sample containing values to be selected
+     * @param random Random generator
+     * @return Selected value
+     */
+    public static boolean select(BoolDiscreteSample sample, RandomGenerator random) {
+        return sample.select(random);
+    }
 
-        throw new RuntimeException("Failed to select a sample from distribution");
+    /**
+     * Randomly selects multiple values from the sample, each of them independently
+     * @param sample Sample containing values to be selected
+     * @param count Number of values to select
+     * @param <T> Type of the discrete sample values
+     * @return Selected values
+     */
+    public static <T> List<T> select(DiscreteSample<T> sample, int count) {
+        return sample.sampler().select(ThreadLocalRandom.current(), count);
+    }
+
+    /**
+     * Randomly selects multiple values from the sample using the specified random generator
+     * @param sample Sample containing values to be selected
+     * @param count Number of values to select
+     * @param random Random generator
+     * @param <T> Type of the discrete sample values
+     * @return Selected values
+     */
+    public static <T> List<T> select(DiscreteSample<T> sample, int count, RandomGenerator random) {
+        return sample.sampler().select(random, count);
     }
 }
@@ -3,6 +3,8 @@ package episcopal;
 import episcopal.discrete.DiscreteSample;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class ObservationsTest {
@@ -17,4 +19,17 @@ public class ObservationsTest {
         assertTrue(n == 123 || n == 456);
     }
 
+    @Test
+    public void selectMany() throws Exception {
+        DiscreteSample<Integer> s = new DiscreteSample<>();
+        s.add(123, 0.3f);
+        s.add(456, 0.7f);
+
+        List<Integer> values = Observations.select(s, 1000);
+
+        assertEquals(1000, values.size());
+        assertTrue(values.contains(123));
+        assertTrue(values.contains(456));
+    }
+
 }
\ No newline at end of file
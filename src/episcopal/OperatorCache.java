@@ -0,0 +1,177 @@
+package episcopal;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.DiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import episcopal.discrete.Interner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded cache of operator results, keyed by the operator and the identifiers of the canonical operands
+ *
+ * The operands are interned (see {@link Interner}), so equal operands have the same identifier and an operator applied
+ * again to equal samples gets the result of the first application. Results are interned too, so operands that are
+ * results of earlier operators are canonical already and do not have to be hashed. Interning freezes the operands and
+ * the results.
+ *
+ * When the cache is full, the least recently used result is evicted. The operators may be applied concurrently, so
+ * the methods are synchronized. The operator itself is applied outside of the lock.
+ */
+public class OperatorCache {
+    private final Interner interner = new Interner();
+    private final Map<Key, DiscreteSample<?>> results;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Largest number of cached results
+     */
+    public OperatorCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        results = new LinkedHashMap<Key, DiscreteSample<?>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, DiscreteSample<?>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return Interner of the operands and results
+     */
+    public Interner getInterner() {
+        return interner;
+    }
+
+    /**
+     * @return Number of cached results
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return Number of operator applications that got a cached result
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of operator applications that had to compute the result
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    IntDiscreteSample applyIntegers(String operator, IntDiscreteSample left, IntDiscreteSample right,
+                                    BiFunction<IntDiscreteSample, IntDiscreteSample, IntDiscreteSample> function) {
+        left = interner.intern(left);
+        right = interner.intern(right);
+        return apply(new Key(operator, left, right), left, right, function, interner::intern);
+    }
+
+    FloatDiscreteSample applyFloats(String operator, FloatDiscreteSample left, FloatDiscreteSample right,
+                                    BiFunction<FloatDiscreteSample, FloatDiscreteSample, FloatDiscreteSample> function) {
+        left = interner.intern(left);
+        right = interner.intern(right);
+        return apply(new Key(operator, left, right), left, right, function, interner::intern);
+    }
+
+    BoolDiscreteSample compareIntegers(String operator, IntDiscreteSample left, IntDiscreteSample right,
+                                       BiFunction<IntDiscreteSample, IntDiscreteSample, BoolDiscreteSample> function) {
+        left = interner.intern(left);
+        right = interner.intern(right);
+        return apply(new Key(operator, left, right), left, right, function, interner::intern);
+    }
+
+    BoolDiscreteSample compareFloats(String operator, FloatDiscreteSample left, FloatDiscreteSample right,
+                                     BiFunction<FloatDiscreteSample, FloatDiscreteSample, BoolDiscreteSample> function) {
+        left = interner.intern(left);
+        right = interner.intern(right);
+        return apply(new Key(operator, left, right), left, right, function, interner::intern);
+    }
+
+    BoolDiscreteSample applyBooleans(String operator, BoolDiscreteSample left, BoolDiscreteSample right,
+                                     BiFunction<BoolDiscreteSample, BoolDiscreteSample, BoolDiscreteSample> function) {
+        left = interner.intern(left);
+        right = interner.intern(right);
+        return apply(new Key(operator, left, right), left, right, function, interner::intern);
+    }
+
+    /**
+     * Returns the cached result of an operator, or applies the operator and caches its result
+     * @param key Key of the application
+     * @param left Canonical left operand
+     * @param right Canonical right operand
+     * @param function Operator
+     * @param intern Interns a result
+     * @param <S> Type of the operands
+     * @param <R> Type of the result
+     * @return Canonical result
+     */
+    @SuppressWarnings("unchecked")
+    private <S, R extends DiscreteSample<?>> R apply(Key key, S left, S right, BiFunction<S, S, R> function,
+                                                     UnaryOperator<R> intern) {
+        // each operator has results of a single type
+        R result = (R) get(key);
+
+        if (result == null) {
+            result = intern.apply(function.apply(left, right));
+            put(key, result);
+        }
+
+        return result;
+    }
+
+    private synchronized DiscreteSample<?> get(Key key) {
+        DiscreteSample<?> result = results.get(key);
+
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return result;
+    }
+
+    private synchronized void put(Key key, DiscreteSample<?> result) {
+        results.put(key, result);
+    }
+
+    private static class Key {
+        private final String operator;
+        private final long left;
+        private final long right;
+
+        Key(String operator, DiscreteSample<?> left, DiscreteSample<?> right) {
+            this.operator = operator;
+            this.left = left.getCanonicalId();
+            this.right = right.getCanonicalId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return left == other.left && right == other.right && operator.equals(other.operator);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * operator.hashCode() + Long.hashCode(left)) + Long.hashCode(right);
+        }
+    }
+}
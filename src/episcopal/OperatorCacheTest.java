@@ -0,0 +1,75 @@
+package episcopal;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OperatorCacheTest {
+    @Test
+    public void cachedResults() throws Exception {
+        OperatorCache cache = new OperatorCache(16);
+        IntDiscreteSample first;
+        IntDiscreteSample second;
+
+        try {
+            Operators.setCache(cache);
+            first = Operators.multiplyIntegers(sample(), sample());
+            second = Operators.multiplyIntegers(sample(), sample());
+        } finally {
+            Operators.setCache(null);
+        }
+
+        assertSame(first, second);
+        assertTrue(first.isFrozen());
+        assertEquals(Operators.multiplyIntegers(sample(), sample()), first);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void distinctOperators() throws Exception {
+        OperatorCache cache = new OperatorCache(16);
+
+        try {
+            Operators.setCache(cache);
+            assertEquals(0.25, Operators.lessThanIntegers(sample(), sample()).probability(true), 1e-9);
+            assertEquals(0.25, Operators.greaterThanIntegers(sample(), sample()).probability(true), 1e-9);
+            assertEquals(0.5, Operators.equalIntegers(sample(), sample()).probability(true), 1e-9);
+            assertEquals(5, Operators.addFloats(FloatDiscreteSample.point(2f), FloatDiscreteSample.point(3f)).pointValue(), 0);
+            assertEquals(-1, Operators.subtractFloats(FloatDiscreteSample.point(2f), FloatDiscreteSample.point(3f)).pointValue(), 0);
+            assertTrue(Operators.or(BoolDiscreteSample.point(true), BoolDiscreteSample.point(false)).pointValue());
+            assertFalse(Operators.and(BoolDiscreteSample.point(true), BoolDiscreteSample.point(false)).pointValue());
+        } finally {
+            Operators.setCache(null);
+        }
+
+        // greater than is cached as less than with swapped operands
+        assertEquals(1, cache.getHits());
+        assertEquals(6, cache.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        OperatorCache cache = new OperatorCache(1);
+
+        try {
+            Operators.setCache(cache);
+            Operators.addIntegers(sample(), sample());
+            Operators.subtractIntegers(sample(), sample());
+            Operators.addIntegers(sample(), sample());
+        } finally {
+            Operators.setCache(null);
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    private static IntDiscreteSample sample() {
+        return new IntDiscreteSample().add(1, 0.5).add(2, 0.5);
+    }
+}
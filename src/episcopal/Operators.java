@@ -1,13 +1,64 @@
 package episcopal;
 
 import episcopal.continuous.ContinuousSample;
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.Convolution;
 import episcopal.discrete.DiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import episcopal.discrete.SortedFloatSupport;
+import episcopal.discrete.SortedIntSupport;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
 
 /**
  * Implementations for Episcopal operators. If two discrete samples are used as operands, the operator is applied to
  * each combination of values in the sample and their probabilities are combined.
+ *
+ * The operands are converted to the primitive discrete samples, so that the values and probabilities are not boxed
+ * when combining them. Two point masses are combined into a point mass directly. Point masses of small integers and
+ * booleans are shared, so the results of the operators may be immutable.
+ *
+ * Comparisons of large samples do not enumerate the pairs of values. They use the sorted values of the samples with
+ * prefix sums of their probabilities instead (see {@link IntDiscreteSample#sorted()}).
+ *
+ * Integer and float operators with many value pairs are applied in parallel. Each task combines a slice of the left
+ * sample with the right sample, and the partial results are merged at the end.
+ *
+ * The results of the binary operators on discrete samples can be cached (see {@link #setCache(OperatorCache)}). The
+ * operands and the results of a cached operator are interned and immutable.
  */
 public class Operators {
+    private static final boolean[] BOOLEANS = {false, true};
+
+    /**
+     * Number of value pairs from which comparisons use the sorted values instead of enumerating the pairs
+     */
+    private static final long SORTED_MIN_PAIRS = 64;
+
+    /**
+     * Number of value pairs from which operators are applied in parallel on the common fork/join pool
+     */
+    private static final long PARALLEL_MIN_PAIRS = 1 << 16;
+
+    private static volatile OperatorCache cache;
+
+    /**
+     * Sets the cache of the results of the binary operators on discrete samples. By default, no results are cached.
+     * @param operatorCache Cache, or null to stop caching
+     */
+    public static void setCache(OperatorCache operatorCache) {
+        cache = operatorCache;
+    }
+
+    /**
+     * @return Cache of the results of the binary operators on discrete samples, or null if no results are cached
+     */
+    public static OperatorCache getCache() {
+        return cache;
+    }
 
     /**
      * AND of two boolean discrete samples
@@ -15,8 +66,9 @@ public class Operators {
      * @param right Right sample
      * @return ANDed sample
      */
-    public static DiscreteSample<Boolean> and(DiscreteSample<Boolean> left, DiscreteSample<Boolean> right) {
-        return combine(left, right, (a, b) -> a && b);
+    public static BoolDiscreteSample and(DiscreteSample<Boolean> left, DiscreteSample<Boolean> right) {
+        return applyBooleans("&&", BoolDiscreteSample.of(left), BoolDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a && b));
     }
 
     /**
@@ -25,8 +77,9 @@ public class Operators {
      * @param right Right sample
      * @return ORed sample
      */
-    public static DiscreteSample<Boolean> or(DiscreteSample<Boolean> left, DiscreteSample<Boolean> right) {
-        return combine(left, right, (a, b) -> a || b);
+    public static BoolDiscreteSample or(DiscreteSample<Boolean> left, DiscreteSample<Boolean> right) {
+        return applyBooleans("||", BoolDiscreteSample.of(left), BoolDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a || b));
     }
 
     /**
@@ -34,18 +87,42 @@ public class Operators {
      * @param sample Boolean sample
      * @return Negated sample
      */
-    public static DiscreteSample<Boolean> not(DiscreteSample<Boolean> sample) {
-        return new DiscreteSample<Boolean>().add(true, sample.get(false)).add(false, sample.get(true));
+    public static BoolDiscreteSample not(DiscreteSample<Boolean> sample) {
+        BoolDiscreteSample s = BoolDiscreteSample.of(sample);
+        return new BoolDiscreteSample().add(true, s.probability(false)).add(false, s.probability(true));
     }
 
     /**
-     * Addition of two integer discrete samples
+     * Addition of two integer discrete samples. If both samples cover contiguous ranges, their probabilities are
+     * convolved.
      * @param left Left sample
      * @param right Right sample
      * @return Added sample
      */
-    public static DiscreteSample<Integer> addIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, (a, b) -> a + b);
+    public static IntDiscreteSample addIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return applyIntegers("+", IntDiscreteSample.of(left), IntDiscreteSample.of(right), Operators::add);
+    }
+
+    /**
+     * Addition of two integer samples, convolving their probabilities if both samples cover contiguous ranges
+     * @param l Left sample
+     * @param r Right sample
+     * @return Result sample
+     */
+    private static IntDiscreteSample add(IntDiscreteSample l, IntDiscreteSample r) {
+        if (l.isPoint() && r.isPoint()) {
+            return combine(l, r, (a, b) -> a + b);
+        }
+
+        if (Convolution.applicable(l, r)) {
+            IntDiscreteSample result = Convolution.add(l, r);
+
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return combine(l, r, (a, b) -> a + b).compact();
     }
 
     /**
@@ -54,18 +131,42 @@ public class Operators {
      * @param right Right sample
      * @return Added sample
      */
-    public static DiscreteSample<Float> addFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, (a, b) -> a + b);
+    public static FloatDiscreteSample addFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return applyFloats("+", FloatDiscreteSample.of(left), FloatDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a + b));
     }
 
     /**
-     * Subtraction of two integer discrete samples
+     * Subtraction of two integer discrete samples. If both samples cover contiguous ranges, their probabilities are
+     * convolved.
      * @param left Left sample
      * @param right Right sample
      * @return Subtracted sample
      */
-    public static DiscreteSample<Integer> subtractIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, (a, b) -> a - b);
+    public static IntDiscreteSample subtractIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return applyIntegers("-", IntDiscreteSample.of(left), IntDiscreteSample.of(right), Operators::subtract);
+    }
+
+    /**
+     * Subtraction of two integer samples, convolving their probabilities if both samples cover contiguous ranges
+     * @param l Left sample
+     * @param r Right sample
+     * @return Result sample
+     */
+    private static IntDiscreteSample subtract(IntDiscreteSample l, IntDiscreteSample r) {
+        if (l.isPoint() && r.isPoint()) {
+            return combine(l, r, (a, b) -> a - b);
+        }
+
+        if (Convolution.applicable(l, r)) {
+            IntDiscreteSample result = Convolution.subtract(l, r);
+
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return combine(l, r, (a, b) -> a - b).compact();
     }
 
     /**
@@ -74,8 +175,9 @@ public class Operators {
      * @param right Right sample
      * @return Subtracted sample
      */
-    public static DiscreteSample<Float> subtractFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, (a, b) -> a - b);
+    public static FloatDiscreteSample subtractFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return applyFloats("-", FloatDiscreteSample.of(left), FloatDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a - b));
     }
 
     /**
@@ -84,8 +186,9 @@ public class Operators {
      * @param right Right sample
      * @return Multiplied sample
      */
-    public static DiscreteSample<Integer> multiplyIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, (a, b) -> a * b);
+    public static IntDiscreteSample multiplyIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return applyIntegers("*", IntDiscreteSample.of(left), IntDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a * b));
     }
 
     /**
@@ -94,8 +197,9 @@ public class Operators {
      * @param right Right sample
      * @return Multiplied sample
      */
-    public static DiscreteSample<Float> multiplyFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, (a, b) -> a * b);
+    public static FloatDiscreteSample multiplyFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return applyFloats("*", FloatDiscreteSample.of(left), FloatDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a * b));
     }
 
     /**
@@ -104,8 +208,9 @@ public class Operators {
      * @param right Right sample
      * @return Divided sample
      */
-    public static DiscreteSample<Integer> divideIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, (a, b) -> a / b);
+    public static IntDiscreteSample divideIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return applyIntegers("/", IntDiscreteSample.of(left), IntDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a / b));
     }
 
     /**
@@ -114,8 +219,9 @@ public class Operators {
      * @param right Right sample
      * @return Divided sample
      */
-    public static DiscreteSample<Float> divideFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, (a, b) -> a / b);
+    public static FloatDiscreteSample divideFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return applyFloats("/", FloatDiscreteSample.of(left), FloatDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a / b));
     }
 
     /**
@@ -124,8 +230,22 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> equalIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, Integer::equals);
+    public static BoolDiscreteSample equalIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return compareIntegers("==", IntDiscreteSample.of(left), IntDiscreteSample.of(right), Operators::equal);
+    }
+
+    /**
+     * Comparison of two integer samples
+     * @param l Left sample
+     * @param r Right sample
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample equal(IntDiscreteSample l, IntDiscreteSample r) {
+        if ((long) l.size() * r.size() >= SORTED_MIN_PAIRS) {
+            return equal(l.sorted(), r.sorted());
+        }
+
+        return compare(l, r, (a, b) -> a == b);
     }
 
     /**
@@ -134,8 +254,22 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> equalFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, Float::equals);
+    public static BoolDiscreteSample equalFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return compareFloats("==", FloatDiscreteSample.of(left), FloatDiscreteSample.of(right), Operators::equal);
+    }
+
+    /**
+     * Comparison of two float samples
+     * @param l Left sample
+     * @param r Right sample
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample equal(FloatDiscreteSample l, FloatDiscreteSample r) {
+        if ((long) l.size() * r.size() >= SORTED_MIN_PAIRS) {
+            return equal(l.sorted(), r.sorted());
+        }
+
+        return compare(l, r, (a, b) -> Float.floatToIntBits(a) == Float.floatToIntBits(b));
     }
 
     /**
@@ -144,8 +278,9 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> equalBooleans(DiscreteSample<Boolean> left, DiscreteSample<Boolean> right) {
-        return combine(left, right, Boolean::equals);
+    public static BoolDiscreteSample equalBooleans(DiscreteSample<Boolean> left, DiscreteSample<Boolean> right) {
+        return applyBooleans("==", BoolDiscreteSample.of(left), BoolDiscreteSample.of(right),
+                (l, r) -> combine(l, r, (a, b) -> a == b));
     }
 
     /**
@@ -154,8 +289,8 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> lessThanIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, (a, b) -> a < b);
+    public static BoolDiscreteSample lessThanIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return compareIntegers("<", IntDiscreteSample.of(left), IntDiscreteSample.of(right), Operators::lessThan);
     }
 
     /**
@@ -164,8 +299,8 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> lessThanFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, (a, b) -> a < b);
+    public static BoolDiscreteSample lessThanFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return compareFloats("<", FloatDiscreteSample.of(left), FloatDiscreteSample.of(right), Operators::lessThan);
     }
 
     /**
@@ -174,18 +309,19 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> lessThanContinuous(ContinuousSample left, DiscreteSample<Float> right) {
-        DiscreteSample<Boolean> result = new DiscreteSample<Boolean>();
-
-        for (Float a : right.values()) {
-            DiscreteSample<Boolean> c = left.cumulative(a);
-
-            for (Boolean b : c.values()) {
-                result.add(b, right.get(a) * c.get(b));
-            }
-        }
+    public static BoolDiscreteSample lessThanContinuous(ContinuousSample left, DiscreteSample<Float> right) {
+        return compareContinuous(left, FloatDiscreteSample.of(right), true);
+    }
 
-        return result;
+    /**
+     * Comparison of a discrete float and continuous sample, the opposite of
+     * {@link #lessThanContinuous(ContinuousSample, DiscreteSample)}
+     * @param left Left sample
+     * @param right Right sample
+     * @return Boolean sample
+     */
+    public static BoolDiscreteSample greaterThanContinuous(ContinuousSample left, DiscreteSample<Float> right) {
+        return compareContinuous(left, FloatDiscreteSample.of(right), false);
     }
 
     /**
@@ -194,8 +330,8 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> greaterThanIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
-        return combine(left, right, (a, b) -> a > b);
+    public static BoolDiscreteSample greaterThanIntegers(DiscreteSample<Integer> left, DiscreteSample<Integer> right) {
+        return compareIntegers("<", IntDiscreteSample.of(right), IntDiscreteSample.of(left), Operators::lessThan);
     }
 
     /**
@@ -204,41 +340,581 @@ public class Operators {
      * @param right Right sample
      * @return Boolean sample
      */
-    public static DiscreteSample<Boolean> greaterThanFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
-        return combine(left, right, (a, b) -> a > b);
+    public static BoolDiscreteSample greaterThanFloats(DiscreteSample<Float> left, DiscreteSample<Float> right) {
+        return compareFloats("<", FloatDiscreteSample.of(right), FloatDiscreteSample.of(left), Operators::lessThan);
+    }
+
+    /**
+     * Calculates the probability of a value of the left sample being less than a value of the right sample. Small
+     * samples are compared pairwise, otherwise each left value is looked up in the sorted right values.
+     * @param left Left sample
+     * @param right Right sample
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample lessThan(IntDiscreteSample left, IntDiscreteSample right) {
+        if ((long) left.size() * right.size() < SORTED_MIN_PAIRS) {
+            return compare(left, right, (a, b) -> a < b);
+        }
+
+        SortedIntSupport support = right.sorted();
+        double t = 0;
+        double f = 0;
+        boolean hasTrue = false;
+        boolean hasFalse = false;
+
+        for (int i = 0; i < left.size(); i++) {
+            int index = support.upperBound(left.keyAt(i));
+            double p = left.weightAt(i);
+
+            t += p * support.probabilityFrom(index);
+            f += p * support.probabilityBefore(index);
+            hasTrue |= index < support.size();
+            hasFalse |= index > 0;
+        }
+
+        return booleans(hasTrue, t, hasFalse, f);
+    }
+
+    /**
+     * Calculates the probability of a value of the left sample being less than a value of the right sample
+     * @param left Left sample
+     * @param right Right sample
+     * @return Boolean sample
+     * @see #lessThan(IntDiscreteSample, IntDiscreteSample)
+     */
+    private static BoolDiscreteSample lessThan(FloatDiscreteSample left, FloatDiscreteSample right) {
+        if ((long) left.size() * right.size() < SORTED_MIN_PAIRS) {
+            return compare(left, right, (a, b) -> a < b);
+        }
+
+        SortedFloatSupport support = right.sorted();
+        double t = 0;
+        double f = 0;
+        boolean hasTrue = false;
+        boolean hasFalse = false;
+
+        for (int i = 0; i < left.size(); i++) {
+            int index = support.upperBound(left.keyAt(i));
+            double p = left.weightAt(i);
+            double greater = support.probabilityFrom(index);
+
+            t += p * greater;
+            f += p * (support.total() - greater);
+            hasTrue |= index < support.nanStart();
+            hasFalse |= support.nanStart() - index < support.size();
+        }
+
+        return booleans(hasTrue, t, hasFalse, f);
+    }
+
+    /**
+     * Calculates the probability of two samples being equal by joining their sorted values
+     * @param left Sorted left sample
+     * @param right Sorted right sample
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample equal(SortedIntSupport left, SortedIntSupport right) {
+        double t = 0;
+        boolean hasTrue = false;
+
+        for (int i = 0, j = 0; i < left.size() && j < right.size(); ) {
+            int a = left.keyAt(i);
+            int b = right.keyAt(j);
+
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                t += left.weightAt(i++) * right.weightAt(j++);
+                hasTrue = true;
+            }
+        }
+
+        return equalBooleans(left.size(), left.total(), right.size(), right.total(), hasTrue, t);
+    }
+
+    /**
+     * Calculates the probability of two samples being equal by joining their sorted values
+     * @param left Sorted left sample
+     * @param right Sorted right sample
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample equal(SortedFloatSupport left, SortedFloatSupport right) {
+        double t = 0;
+        boolean hasTrue = false;
+
+        for (int i = 0, j = 0; i < left.size() && j < right.size(); ) {
+            int order = Float.compare(left.keyAt(i), right.keyAt(j));
+
+            if (order < 0) {
+                i++;
+            } else if (order > 0) {
+                j++;
+            } else {
+                t += left.weightAt(i++) * right.weightAt(j++);
+                hasTrue = true;
+            }
+        }
+
+        return equalBooleans(left.size(), left.total(), right.size(), right.total(), hasTrue, t);
+    }
+
+    /**
+     * Creates the result of an equality comparison. There is an unequal pair of values unless both samples contain
+     * the same single value.
+     * @param leftSize Number of left values
+     * @param leftTotal Total probability of the left values
+     * @param rightSize Number of right values
+     * @param rightTotal Total probability of the right values
+     * @param hasTrue True if an equal pair of values exists
+     * @param t Probability of the equal pairs
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample equalBooleans(int leftSize, double leftTotal, int rightSize, double rightTotal,
+                                                    boolean hasTrue, double t) {
+        boolean hasFalse = leftSize > 0 && rightSize > 0 && !(leftSize == 1 && rightSize == 1 && hasTrue);
+        return booleans(hasTrue, t, hasFalse, Math.max(0, leftTotal * rightTotal - t));
+    }
+
+    /**
+     * Creates a boolean sample with the specified values
+     * @param hasTrue True if the sample contains true
+     * @param t Probability of true
+     * @param hasFalse True if the sample contains false
+     * @param f Probability of false
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample booleans(boolean hasTrue, double t, boolean hasFalse, double f) {
+        BoolDiscreteSample result = new BoolDiscreteSample();
+
+        if (hasFalse) {
+            result.add(false, f);
+        }
+
+        if (hasTrue) {
+            result.add(true, t);
+        }
+
+        return result;
+    }
+
+    /**
+     * Compares a continuous sample with all values of a discrete sample. The cumulative probabilities of all values are
+     * calculated in one batch and accumulated directly into the probabilities of true and false.
+     * @param left Continuous sample
+     * @param right Discrete sample
+     * @param less True if the continuous sample has to be less than the values, false if it has to be greater
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample compareContinuous(ContinuousSample left, FloatDiscreteSample right, boolean less) {
+        int size = right.size();
+        BoolDiscreteSample result = new BoolDiscreteSample();
+
+        if (size == 0) {
+            return result;
+        }
+
+        float[] values = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            values[i] = right.keyAt(i);
+        }
+
+        float[] cumulative = left.cumulative(values);
+        double lessThan = 0;
+        double greaterThan = 0;
+
+        for (int i = 0; i < size; i++) {
+            double p = right.weightAt(i);
+            float c = cumulative[i];
+
+            lessThan += p * c;
+            greaterThan += p * (1 - c);
+        }
+
+        return result.add(less, lessThan).add(!less, greaterThan);
+    }
+
+    /**
+     * Applies an operator on integer samples, using the cache if there is one
+     * @param operator Name of the operator in the cache
+     * @param left Left sample
+     * @param right Right sample
+     * @param function Operator
+     * @return Result sample
+     */
+    private static IntDiscreteSample applyIntegers(String operator, IntDiscreteSample left, IntDiscreteSample right,
+                                                   BiFunction<IntDiscreteSample, IntDiscreteSample, IntDiscreteSample> function) {
+        OperatorCache results = cache;
+        return results == null ? function.apply(left, right) : results.applyIntegers(operator, left, right, function);
+    }
+
+    /**
+     * @see #applyIntegers(String, IntDiscreteSample, IntDiscreteSample, BiFunction)
+     */
+    private static FloatDiscreteSample applyFloats(String operator, FloatDiscreteSample left, FloatDiscreteSample right,
+                                                   BiFunction<FloatDiscreteSample, FloatDiscreteSample, FloatDiscreteSample> function) {
+        OperatorCache results = cache;
+        return results == null ? function.apply(left, right) : results.applyFloats(operator, left, right, function);
+    }
+
+    /**
+     * @see #applyIntegers(String, IntDiscreteSample, IntDiscreteSample, BiFunction)
+     */
+    private static BoolDiscreteSample applyBooleans(String operator, BoolDiscreteSample left, BoolDiscreteSample right,
+                                                    BiFunction<BoolDiscreteSample, BoolDiscreteSample, BoolDiscreteSample> function) {
+        OperatorCache results = cache;
+        return results == null ? function.apply(left, right) : results.applyBooleans(operator, left, right, function);
+    }
+
+    /**
+     * @see #applyIntegers(String, IntDiscreteSample, IntDiscreteSample, BiFunction)
+     */
+    private static BoolDiscreteSample compareIntegers(String operator, IntDiscreteSample left, IntDiscreteSample right,
+                                                      BiFunction<IntDiscreteSample, IntDiscreteSample, BoolDiscreteSample> function) {
+        OperatorCache results = cache;
+        return results == null ? function.apply(left, right) : results.compareIntegers(operator, left, right, function);
+    }
+
+    /**
+     * @see #applyIntegers(String, IntDiscreteSample, IntDiscreteSample, BiFunction)
+     */
+    private static BoolDiscreteSample compareFloats(String operator, FloatDiscreteSample left, FloatDiscreteSample right,
+                                                    BiFunction<FloatDiscreteSample, FloatDiscreteSample, BoolDiscreteSample> function) {
+        OperatorCache results = cache;
+        return results == null ? function.apply(left, right) : results.compareFloats(operator, left, right, function);
     }
 
     /**
-     * Interface for a binary operator
-     * @param <T> Operator return type
-     * @param <U> Left operand type
-     * @param <V> Right operand type
+     * Binary operator on integers
      */
-    interface Operator<T, U, V> {
-        T combine(U a, V b);
+    interface IntOperator {
+        int combine(int a, int b);
     }
 
     /**
-     * Applies a binary operator to two discrete samples. Creates combinations of values from both samples, applies the
+     * Binary operator on floats
+     */
+    interface FloatOperator {
+        float combine(float a, float b);
+    }
+
+    /**
+     * Binary operator on booleans
+     */
+    interface BoolOperator {
+        boolean combine(boolean a, boolean b);
+    }
+
+    /**
+     * Comparison of two integers
+     */
+    interface IntComparison {
+        boolean combine(int a, int b);
+    }
+
+    /**
+     * Comparison of two floats
+     */
+    interface FloatComparison {
+        boolean combine(float a, float b);
+    }
+
+    /**
+     * Applies a binary operator to two integer samples. Creates combinations of values from both samples, applies the
      * operator to them and calculates the probability of the operator result.
-     * @param left Left operand discrete sample
-     * @param right Right operand discrete sample
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @param operator Binary operator
+     * @return Sample with operator results
+     */
+    private static IntDiscreteSample combine(IntDiscreteSample left, IntDiscreteSample right, IntOperator operator) {
+        if (left.isPoint() && right.isPoint()) {
+            return IntDiscreteSample.point(operator.combine(left.keyAt(0), right.keyAt(0)), left.weightAt(0) * right.weightAt(0));
+        }
+
+        int[] keys = new int[right.size()];
+        double[] weights = new double[right.size()];
+
+        for (int j = 0; j < keys.length; j++) {
+            keys[j] = right.keyAt(j);
+            weights[j] = right.weightAt(j);
+        }
+
+        if ((long) left.size() * keys.length < PARALLEL_MIN_PAIRS) {
+            return combine(left, 0, left.size(), keys, weights, operator);
+        }
+
+        return ForkJoinPool.commonPool().invoke(new IntCombineTask(left, 0, left.size(), keys, weights, operator));
+    }
+
+    /**
+     * Applies a binary operator to a slice of the left sample and all values of the right sample
+     * @param left Left operand sample
+     * @param from First position in the left sample
+     * @param to Position after the last one in the left sample
+     * @param keys Values of the right sample
+     * @param weights Probabilities of the values of the right sample
+     * @param operator Binary operator
+     * @return Sample with operator results
+     */
+    private static IntDiscreteSample combine(IntDiscreteSample left, int from, int to, int[] keys, double[] weights,
+                                             IntOperator operator) {
+        long pairs = (long) (to - from) * keys.length;
+        IntDiscreteSample result = IntDiscreteSample.allocate(Math.max(to - from, keys.length), pairs);
+        double[] row = new double[keys.length];
+
+        for (int i = from; i < to; i++) {
+            int a = left.keyAt(i);
+            outerProduct(left.weightAt(i), weights, row);
+
+            for (int j = 0; j < keys.length; j++) {
+                result.add(operator.combine(a, keys[j]), row[j]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Applies a binary operator to two float samples
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @param operator Binary operator
+     * @return Sample with operator results
+     * @see #combine(IntDiscreteSample, IntDiscreteSample, IntOperator)
+     */
+    private static FloatDiscreteSample combine(FloatDiscreteSample left, FloatDiscreteSample right, FloatOperator operator) {
+        if (left.isPoint() && right.isPoint()) {
+            return FloatDiscreteSample.point(operator.combine(left.keyAt(0), right.keyAt(0)), left.weightAt(0) * right.weightAt(0));
+        }
+
+        float[] keys = new float[right.size()];
+        double[] weights = new double[right.size()];
+
+        for (int j = 0; j < keys.length; j++) {
+            keys[j] = right.keyAt(j);
+            weights[j] = right.weightAt(j);
+        }
+
+        if ((long) left.size() * keys.length < PARALLEL_MIN_PAIRS) {
+            return combine(left, 0, left.size(), keys, weights, operator);
+        }
+
+        return ForkJoinPool.commonPool().invoke(new FloatCombineTask(left, 0, left.size(), keys, weights, operator));
+    }
+
+    /**
+     * Applies a binary operator to a slice of the left sample and all values of the right sample
+     * @param left Left operand sample
+     * @param from First position in the left sample
+     * @param to Position after the last one in the left sample
+     * @param keys Values of the right sample
+     * @param weights Probabilities of the values of the right sample
+     * @param operator Binary operator
+     * @return Sample with operator results
+     */
+    private static FloatDiscreteSample combine(FloatDiscreteSample left, int from, int to, float[] keys,
+                                               double[] weights, FloatOperator operator) {
+        FloatDiscreteSample result = new FloatDiscreteSample(Math.max(to - from, keys.length));
+        double[] row = new double[keys.length];
+
+        for (int i = from; i < to; i++) {
+            float a = left.keyAt(i);
+            outerProduct(left.weightAt(i), weights, row);
+
+            for (int j = 0; j < keys.length; j++) {
+                result.add(operator.combine(a, keys[j]), row[j]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes one row of the outer product of the probabilities. The loop has no dependencies between iterations, so
+     * the JIT compiler turns it into SIMD instructions.
+     * @param p Probability of a value of the left sample
+     * @param weights Probabilities of the values of the right sample
+     * @param row Array for the products
+     */
+    private static void outerProduct(double p, double[] weights, double[] row) {
+        for (int j = 0; j < weights.length; j++) {
+            row[j] = p * weights[j];
+        }
+    }
+
+    /**
+     * Applies a binary operator to two boolean samples
+     * @param left Left operand sample
+     * @param right Right operand sample
      * @param operator Binary operator
-     * @param <T> Operator return type
-     * @param <U> Left operand type
-     * @param <V> Right operand type
-     * @return Discrete sample with operator results
+     * @return Sample with operator results
+     */
+    private static BoolDiscreteSample combine(BoolDiscreteSample left, BoolDiscreteSample right, BoolOperator operator) {
+        if (left.isPoint() && right.isPoint()) {
+            boolean a = left.pointValue();
+            boolean b = right.pointValue();
+            return BoolDiscreteSample.point(operator.combine(a, b), left.probability(a) * right.probability(b));
+        }
+
+        BoolDiscreteSample result = new BoolDiscreteSample();
+
+        for (boolean a : BOOLEANS) {
+            if (!left.contains(a)) {
+                continue;
+            }
+
+            for (boolean b : BOOLEANS) {
+                if (right.contains(b)) {
+                    result.add(operator.combine(a, b), left.probability(a) * right.probability(b));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Compares values from two integer samples. The result contains the probabilities of the comparison being true
+     * and false.
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @param comparison Comparison
+     * @return Boolean sample
      */
-    private static <T, U, V> DiscreteSample<T> combine(DiscreteSample<U> left, DiscreteSample<V> right, Operator<T, U, V> operator) {
-        DiscreteSample<T> result = new DiscreteSample<T>();
+    private static BoolDiscreteSample compare(IntDiscreteSample left, IntDiscreteSample right, IntComparison comparison) {
+        if (left.isPoint() && right.isPoint()) {
+            return BoolDiscreteSample.point(comparison.combine(left.keyAt(0), right.keyAt(0)), left.weightAt(0) * right.weightAt(0));
+        }
+
+        BoolDiscreteSample result = new BoolDiscreteSample();
 
-        for (U a : left.values()) {
-            for (V b : right.values()) {
-                result.add(operator.combine(a, b), left.get(a) * right.get(b));
+        for (int i = 0; i < left.size(); i++) {
+            int a = left.keyAt(i);
+            double p = left.weightAt(i);
+
+            for (int j = 0; j < right.size(); j++) {
+                result.add(comparison.combine(a, right.keyAt(j)), p * right.weightAt(j));
             }
         }
 
         return result;
     }
 
+    /**
+     * Compares values from two float samples
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @param comparison Comparison
+     * @return Boolean sample
+     * @see #compare(IntDiscreteSample, IntDiscreteSample, IntComparison)
+     */
+    private static BoolDiscreteSample compare(FloatDiscreteSample left, FloatDiscreteSample right, FloatComparison comparison) {
+        if (left.isPoint() && right.isPoint()) {
+            return BoolDiscreteSample.point(comparison.combine(left.keyAt(0), right.keyAt(0)), left.weightAt(0) * right.weightAt(0));
+        }
+
+        BoolDiscreteSample result = new BoolDiscreteSample();
+
+        for (int i = 0; i < left.size(); i++) {
+            float a = left.keyAt(i);
+            double p = left.weightAt(i);
+
+            for (int j = 0; j < right.size(); j++) {
+                result.add(comparison.combine(a, right.keyAt(j)), p * right.weightAt(j));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Combines a slice of the left sample with the right sample in parallel. The slice is split in halves until it is
+     * small enough, and the partial result of the second half is merged into the result of the first half. This keeps
+     * the values in the same order as a sequential combination.
+     */
+    @SuppressWarnings("serial")
+    private static class IntCombineTask extends RecursiveTask<IntDiscreteSample> {
+        private final IntDiscreteSample left;
+        private final int from;
+        private final int to;
+        private final int[] keys;
+        private final double[] weights;
+        private final IntOperator operator;
+
+        IntCombineTask(IntDiscreteSample left, int from, int to, int[] keys, double[] weights, IntOperator operator) {
+            this.left = left;
+            this.from = from;
+            this.to = to;
+            this.keys = keys;
+            this.weights = weights;
+            this.operator = operator;
+        }
+
+        @Override
+        protected IntDiscreteSample compute() {
+            if (to - from < 2 || (long) (to - from) * keys.length < PARALLEL_MIN_PAIRS) {
+                return combine(left, from, to, keys, weights, operator);
+            }
+
+            int middle = (from + to) >>> 1;
+            IntCombineTask first = new IntCombineTask(left, from, middle, keys, weights, operator);
+            first.fork();
+
+            IntDiscreteSample second = new IntCombineTask(left, middle, to, keys, weights, operator).compute();
+            IntDiscreteSample result = first.join();
+
+            for (int i = 0; i < second.size(); i++) {
+                result.add(second.keyAt(i), second.weightAt(i));
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Combines a slice of the left sample with the right sample in parallel
+     * @see IntCombineTask
+     */
+    @SuppressWarnings("serial")
+    private static class FloatCombineTask extends RecursiveTask<FloatDiscreteSample> {
+        private final FloatDiscreteSample left;
+        private final int from;
+        private final int to;
+        private final float[] keys;
+        private final double[] weights;
+        private final FloatOperator operator;
+
+        FloatCombineTask(FloatDiscreteSample left, int from, int to, float[] keys, double[] weights,
+                         FloatOperator operator) {
+            this.left = left;
+            this.from = from;
+            this.to = to;
+            this.keys = keys;
+            this.weights = weights;
+            this.operator = operator;
+        }
+
+        @Override
+        protected FloatDiscreteSample compute() {
+            if (to - from < 2 || (long) (to - from) * keys.length < PARALLEL_MIN_PAIRS) {
+                return combine(left, from, to, keys, weights, operator);
+            }
+
+            int middle = (from + to) >>> 1;
+            FloatCombineTask first = new FloatCombineTask(left, from, middle, keys, weights, operator);
+            first.fork();
+
+            FloatDiscreteSample second = new FloatCombineTask(left, middle, to, keys, weights, operator).compute();
+            FloatDiscreteSample result = first.join();
+
+            for (int i = 0; i < second.size(); i++) {
+                result.add(second.keyAt(i), second.weightAt(i));
+            }
+
+            return result;
+        }
+    }
 }
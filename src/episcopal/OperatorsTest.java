@@ -2,7 +2,16 @@ package episcopal;
 
 import episcopal.continuous.ContinuousSample;
 import episcopal.continuous.NormalDistribution;
+import episcopal.discrete.BernoulliDistribution;
+import episcopal.discrete.BoolDiscreteSample;
 import episcopal.discrete.DiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -72,4 +81,230 @@ public class OperatorsTest {
         assertEquals(0.3092, result.get(false), 0.001);
     }
 
-}
\ No newline at end of file
+    @org.junit.Test
+    public void testAddIntegers() throws Exception {
+        DiscreteSample<Integer> left = new DiscreteSample<Integer>().add(10, 0.4f).add(20, 0.6f);
+        DiscreteSample<Integer> right = new DiscreteSample<Integer>().add(30, 0.3f).add(40, 0.7f);
+        DiscreteSample<Integer> result = Operators.addIntegers(left, right);
+
+        assertEquals(0.12, result.get(40), 0.001);
+        assertEquals(0.46, result.get(50), 0.001);
+        assertEquals(0.42, result.get(60), 0.001);
+        assertEquals(3, result.values().size());
+    }
+
+    @org.junit.Test
+    public void testAddStridedIntegers() throws Exception {
+        IntDiscreteSample even = new IntDiscreteSample();
+        IntDiscreteSample expected = new IntDiscreteSample();
+
+        for (int i = 0; i < 100; i++) {
+            even.add(2 * i, 0.01);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                expected.add(2 * (i + j), 0.01 * 0.01);
+            }
+        }
+
+        IntDiscreteSample result = Operators.addIntegers(even, even);
+
+        assertEquals(199, result.size());
+        assertEquals(199, result.values().size());
+        assertFalse(result.contains(1));
+        assertEquals(0, result.probability(1), 0);
+        assertEquals(expected, result);
+        assertEquals(expected.hashCode(), result.hashCode());
+
+        for (int i = 0; i < result.size(); i++) {
+            assertTrue(result.weightAt(i) > 0);
+        }
+    }
+
+    @org.junit.Test
+    public void testLessThanIntegers() throws Exception {
+        DiscreteSample<Integer> left = new DiscreteSample<Integer>().add(1, 0.5f).add(3, 0.5f);
+        DiscreteSample<Integer> right = DiscreteSample.create(2);
+        DiscreteSample<Boolean> result = Operators.lessThanIntegers(left, right);
+
+        assertEquals(0.5, result.get(true), 0.001);
+        assertEquals(0.5, result.get(false), 0.001);
+    }
+
+    @org.junit.Test
+    public void testAddManyBernoullis() throws Exception {
+        DiscreteSample<Integer> coin = new BernoulliDistribution(0.5f).sample();
+        DiscreteSample<Integer> sum = coin;
+
+        for (int i = 1; i < 1000; i++) {
+            sum = Operators.addIntegers(sum, coin);
+        }
+
+        assertEquals(1001, sum.values().size());
+        assertEquals(0.0252, sum.get(500), 0.0001);
+    }
+
+    @org.junit.Test
+    public void testSubtractIntegers() throws Exception {
+        DiscreteSample<Integer> left = new DiscreteSample<Integer>().add(5, 0.5f).add(6, 0.5f);
+        DiscreteSample<Integer> right = DiscreteSample.create(2);
+        DiscreteSample<Integer> result = Operators.subtractIntegers(left, right);
+
+        assertEquals(0.5, result.get(3), 0.001);
+        assertEquals(0.5, result.get(4), 0.001);
+        assertEquals(2, result.values().size());
+    }
+
+    @org.junit.Test
+    public void testPointMasses() throws Exception {
+        DiscreteSample<Integer> result = Operators.multiplyIntegers(IntDiscreteSample.point(6), IntDiscreteSample.point(7));
+
+        assertSame(IntDiscreteSample.point(42), result);
+        assertSame(IntDiscreteSample.point(7), Operators.addIntegers(IntDiscreteSample.point(3), IntDiscreteSample.point(4)));
+        assertSame(IntDiscreteSample.point(-1), Operators.subtractIntegers(IntDiscreteSample.point(3), IntDiscreteSample.point(4)));
+        assertSame(BoolDiscreteSample.point(true), Operators.lessThanIntegers(IntDiscreteSample.point(1), IntDiscreteSample.point(2)));
+        assertEquals(1.5f, Operators.addFloats(FloatDiscreteSample.point(1), FloatDiscreteSample.point(0.5f)).single(), 0.001);
+    }
+
+    @org.junit.Test
+    public void testSortedIntegerComparisons() throws Exception {
+        Random random = new Random(3);
+        IntDiscreteSample left = new IntDiscreteSample();
+        IntDiscreteSample right = new IntDiscreteSample();
+
+        for (int i = 0; i < 50; i++) {
+            left.add(random.nextInt(100), 0.02);
+            right.add(random.nextInt(100), 0.02);
+        }
+
+        double less = 0;
+        double greater = 0;
+        double equal = 0;
+
+        for (int i = 0; i < left.size(); i++) {
+            for (int j = 0; j < right.size(); j++) {
+                double p = left.weightAt(i) * right.weightAt(j);
+                less += left.keyAt(i) < right.keyAt(j) ? p : 0;
+                greater += left.keyAt(i) > right.keyAt(j) ? p : 0;
+                equal += left.keyAt(i) == right.keyAt(j) ? p : 0;
+            }
+        }
+
+        assertEquals(less, Operators.lessThanIntegers(left, right).get(true), 1e-6);
+        assertEquals(1 - less, Operators.lessThanIntegers(left, right).get(false), 1e-6);
+        assertEquals(greater, Operators.greaterThanIntegers(left, right).get(true), 1e-6);
+        assertEquals(equal, Operators.equalIntegers(left, right).get(true), 1e-6);
+        assertEquals(1 - equal, Operators.equalIntegers(left, right).get(false), 1e-6);
+    }
+
+    @org.junit.Test
+    public void testSortedFloatComparisons() throws Exception {
+        FloatDiscreteSample left = new FloatDiscreteSample();
+        FloatDiscreteSample right = new FloatDiscreteSample();
+        float[] values = {-2.5f, -0f, 0f, 1f, 3.5f, Float.NaN, 7f, -1f, 2f, 0.5f};
+
+        for (float value : values) {
+            left.add(value, 0.1);
+            right.add(value * 2, 0.1);
+        }
+
+        double less = 0;
+        double equal = 0;
+
+        for (int i = 0; i < left.size(); i++) {
+            for (int j = 0; j < right.size(); j++) {
+                double p = left.weightAt(i) * right.weightAt(j);
+                less += left.keyAt(i) < right.keyAt(j) ? p : 0;
+                equal += Float.valueOf(left.keyAt(i)).equals(right.keyAt(j)) ? p : 0;
+            }
+        }
+
+        assertEquals(less, Operators.lessThanFloats(left, right).get(true), 1e-6);
+        assertEquals(1 - less, Operators.lessThanFloats(left, right).get(false), 1e-6);
+        assertEquals(equal, Operators.equalFloats(left, right).get(true), 1e-6);
+    }
+
+    @org.junit.Test
+    public void testSortedComparisonValues() throws Exception {
+        IntDiscreteSample left = new IntDiscreteSample();
+        IntDiscreteSample right = new IntDiscreteSample();
+
+        for (int i = 0; i < 10; i++) {
+            left.add(i, 0.1);
+            right.add(i + 100, 0.1);
+        }
+
+        assertEquals(Collections.singleton(true), Operators.lessThanIntegers(left, right).values());
+        assertEquals(Collections.singleton(false), Operators.equalIntegers(left, right).values());
+    }
+
+    @org.junit.Test
+    public void testParallelMultiply() throws Exception {
+        IntDiscreteSample left = new IntDiscreteSample();
+        IntDiscreteSample right = new IntDiscreteSample();
+
+        for (int i = 1; i <= 400; i++) {
+            left.add(i, 1.0 / 400);
+            right.add(i * 3, 1.0 / 400);
+        }
+
+        IntDiscreteSample product = Operators.multiplyIntegers(left, right);
+        Map<Integer, Double> expected = new HashMap<>();
+
+        for (int i = 0; i < left.size(); i++) {
+            for (int j = 0; j < right.size(); j++) {
+                expected.merge(left.keyAt(i) * right.keyAt(j), left.weightAt(i) * right.weightAt(j), Double::sum);
+            }
+        }
+
+        assertEquals(expected.size(), product.size());
+
+        for (Map.Entry<Integer, Double> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), product.probability(entry.getKey()), 1e-9);
+        }
+
+        assertEquals(3, product.keyAt(0));
+    }
+
+    @org.junit.Test
+    public void testParallelAddFloats() throws Exception {
+        FloatDiscreteSample left = new FloatDiscreteSample();
+        FloatDiscreteSample right = new FloatDiscreteSample();
+
+        for (int i = 0; i < 300; i++) {
+            left.add(i * 0.5f, 1.0 / 300);
+            right.add(i * 0.25f, 1.0 / 300);
+        }
+
+        FloatDiscreteSample sum = Operators.addFloats(left, right);
+        double total = 0;
+
+        for (int i = 0; i < sum.size(); i++) {
+            total += sum.weightAt(i);
+        }
+
+        assertEquals(1, total, 1e-9);
+        assertEquals(0f, sum.keyAt(0), 0);
+        assertEquals(1.0 / 300 / 300, sum.probability(224.25f), 1e-12);
+    }
+
+    @org.junit.Test
+    public void testGreaterThanContinuous() throws Exception {
+        ContinuousSample left = new NormalDistribution(0, 1).sample();
+        FloatDiscreteSample right = new FloatDiscreteSample();
+
+        for (int i = 0; i < 10000; i++) {
+            right.add(-5 + i * 0.001f, 0.0001);
+        }
+
+        BoolDiscreteSample less = Operators.lessThanContinuous(left, right);
+        BoolDiscreteSample greater = Operators.greaterThanContinuous(left, right);
+
+        assertEquals(less.probability(true), greater.probability(false), 1e-9);
+        assertEquals(less.probability(false), greater.probability(true), 1e-9);
+        assertEquals(1, greater.probability(true) + greater.probability(false), 1e-6);
+        assertEquals(0.5, greater.probability(true), 0.01);
+    }
+
+}
@@ -1,5 +1,7 @@
 package episcopal.continuous;
 
+import java.util.Objects;
+
 /**
  * Beta distribution
  *
@@ -9,6 +11,7 @@ package episcopal.continuous;
  */
 public class BetaDistribution extends ContinuousDistribution {
     private float a, b;
+    private final CumulativeFunction function;
 
     /**
      * Creates a new beta distribution with the specified pseudocounts
@@ -18,6 +21,7 @@ public class BetaDistribution extends ContinuousDistribution {
     public BetaDistribution(float a, float b) {
         this.a = a;
         this.b = b;
+        this.function = new CumulativeFunction(x -> SpecialFunctions.betaCumulative(x, a, b), 0, 1);
     }
 
     /**
@@ -25,12 +29,49 @@ public class BetaDistribution extends ContinuousDistribution {
      */
     @Override
     public float cumulative(float n) {
-        org.apache.commons.math3.distribution.BetaDistribution d = new org.apache.commons.math3.distribution.BetaDistribution(a, b);
-        return (float) d.cumulativeProbability(n);
+        return function.evaluate(n);
+    }
+
+    /**
+     * @see ContinuousDistribution#cumulative(float[])
+     */
+    @Override
+    public float[] cumulative(float[] values) {
+        return function.evaluate(values);
+    }
+
+    /**
+     * The table covers the values between 0 and 1. Distributions with a or b below 1 have an infinite slope at the
+     * boundaries and may not reach small tolerances.
+     * @see ContinuousDistribution#tabulate(double)
+     */
+    @Override
+    public void tabulate(double tolerance) {
+        function.tabulate(tolerance);
     }
 
     @Override
     public String toString() {
         return String.format("BetaDistribution{a=%f b=%f}", a, b);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        BetaDistribution other = (BetaDistribution) o;
+        return Float.compare(a, other.a) == 0 &&
+                Float.compare(b, other.b) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(a, b);
+    }
 }
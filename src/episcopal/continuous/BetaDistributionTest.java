@@ -11,4 +11,15 @@ public class BetaDistributionTest {
         assertEquals(0.91, d.cumulative(0.7f), 0.001);
     }
 
+    @Test
+    public void tabulate() throws Exception {
+        BetaDistribution exact = new BetaDistribution(2, 5);
+        BetaDistribution d = new BetaDistribution(2, 5);
+        d.tabulate(1e-5);
+
+        for (float n = -0.5f; n <= 1.5f; n += 0.013f) {
+            assertEquals(exact.cumulative(n), d.cumulative(n), 2e-5);
+        }
+    }
+
 }
\ No newline at end of file
@@ -25,4 +25,27 @@ public abstract class ContinuousDistribution implements Distribution {
      * @return Cumulative probability
      */
     abstract public float cumulative(float n);
+
+    /**
+     * Calculates the cumulative probabilities of multiple values at once
+     * @param values Values
+     * @return Cumulative probability of each value
+     */
+    public float[] cumulative(float[] values) {
+        float[] result = new float[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            result[i] = cumulative(values[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Precomputes a lookup table of the cumulative probability, which is then interpolated instead of computing the
+     * probability exactly. Distributions without a lookup table ignore this.
+     * @param tolerance Largest error of the interpolated cumulative probability
+     */
+    public void tabulate(double tolerance) {
+    }
 }
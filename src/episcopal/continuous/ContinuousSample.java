@@ -1,7 +1,9 @@
 package episcopal.continuous;
 
 import episcopal.Sample;
-import episcopal.discrete.DiscreteSample;
+import episcopal.discrete.BoolDiscreteSample;
+
+import java.util.Objects;
 
 /**
  * Continuous sample does not contain any discrete values, but is able to work with the cumulative probability of
@@ -62,12 +64,46 @@ public class ContinuousSample implements Sample {
      * @param n Value
      * @return Cumulative probability for the value
      */
-    public DiscreteSample<Boolean> cumulative(float n) {
+    public BoolDiscreteSample cumulative(float n) {
         float p = distribution.cumulative(n * b + a);
-        return new DiscreteSample<Boolean>().add(true, p).add(false, 1 - p);
+        return new BoolDiscreteSample().add(true, p).add(false, 1 - p);
+    }
+
+    /**
+     * Calculates cumulative probabilities of multiple values at once, after shifting and multiplying them
+     * @param values Values
+     * @return Cumulative probability of each value
+     */
+    public float[] cumulative(float[] values) {
+        float[] transformed = new float[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            transformed[i] = values[i] * b + a;
+        }
+
+        return distribution.cumulative(transformed);
     }
 
     public String toString() {
         return String.format("ContinuousSample{%s %f + %fx}", distribution, a, b);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ContinuousSample other = (ContinuousSample) o;
+        return Float.compare(a, other.a) == 0 && Float.compare(b, other.b) == 0 && distribution.equals(other.distribution);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(distribution, a, b);
+    }
 }
@@ -6,6 +6,16 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 public class ContinuousSampleTest {
+    @Test
+    public void structuralEquality() throws Exception {
+        ContinuousSample sample = new ContinuousSample(new NormalDistribution(0, 1)).add(2);
+
+        assertEquals(sample, new ContinuousSample(new NormalDistribution(0, 1)).add(2));
+        assertEquals(sample.hashCode(), new ContinuousSample(new NormalDistribution(0, 1)).add(2).hashCode());
+        assertNotEquals(sample, new ContinuousSample(new NormalDistribution(0, 1)).multiply(2));
+        assertNotEquals(sample, new ContinuousSample(new BetaDistribution(1, 1)).add(2));
+    }
+
     @Test
     public void add() throws Exception {
         ContinuousSample cs = new TestDistribution().sample().add(0.2f);
@@ -33,6 +43,17 @@ public class ContinuousSampleTest {
         assertEquals(0.3f, ds.get(false), 0.1f);
     }
 
+    @Test
+    public void cumulativeBatch() throws Exception {
+        ContinuousSample cs = new TestDistribution().sample().multiply(2).add(0.1f);
+        float[] result = cs.cumulative(new float[]{0.1f, 0.2f, 0.3f});
+
+        assertEquals(3, result.length);
+        assertEquals(0.3f, result[0], 0.0001f);
+        assertEquals(0.5f, result[1], 0.0001f);
+        assertEquals(0.7f, result[2], 0.0001f);
+    }
+
     private class TestDistribution extends ContinuousDistribution {
         @Override
         public float cumulative(float n) {
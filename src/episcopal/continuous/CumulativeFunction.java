@@ -0,0 +1,167 @@
+package episcopal.continuous;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Cumulative distribution function of a continuous distribution
+ *
+ * The function remembers the most recent results in a small cache, so that comparisons evaluating the same values
+ * repeatedly compute each of them once. It can also be replaced by a lookup table with linear interpolation between
+ * the precomputed points (see {@link #tabulate(double)}). Values outside of the table range are computed exactly.
+ */
+class CumulativeFunction {
+    /**
+     * The cache holds 2^CACHE_BITS results
+     */
+    private static final int CACHE_BITS = 6;
+    private static final int CACHE_SIZE = 1 << CACHE_BITS;
+
+    /**
+     * Largest number of intervals in a lookup table
+     */
+    private static final int MAX_INTERVALS = 1 << 16;
+
+    /**
+     * Cache entry that matches no value. Keys are looked up by {@link Float#floatToIntBits(float)}, which never
+     * returns this non-canonical NaN.
+     */
+    private static final long EMPTY = entry(0x7fc00001, 0);
+
+    private final DoubleUnaryOperator exact;
+    private final double min;
+    private final double max;
+
+    /**
+     * Recent results, each packed with its argument into one long
+     */
+    private final AtomicLongArray cache = new AtomicLongArray(CACHE_SIZE);
+
+    private volatile Table table;
+
+    /**
+     * @param exact Exact cumulative probability
+     * @param min Smallest value covered by a lookup table
+     * @param max Largest value covered by a lookup table
+     */
+    CumulativeFunction(DoubleUnaryOperator exact, double min, double max) {
+        this.exact = exact;
+        this.min = min;
+        this.max = max;
+
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            cache.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * @param n Value
+     * @return Cumulative probability of the value
+     */
+    float evaluate(float n) {
+        Table t = table;
+
+        if (t != null && n >= min && n <= max) {
+            return t.interpolate(n);
+        }
+
+        int key = Float.floatToIntBits(n);
+        int slot = key * 0x9e3779b9 >>> (32 - CACHE_BITS);
+        long entry = cache.get(slot);
+
+        if ((int) (entry >>> 32) == key) {
+            return Float.intBitsToFloat((int) entry);
+        }
+
+        float p = (float) exact.applyAsDouble(n);
+        cache.set(slot, entry(key, Float.floatToIntBits(p)));
+        return p;
+    }
+
+    /**
+     * Evaluates the function for multiple values. With a lookup table, the values in its range are interpolated in one
+     * pass over the array.
+     * @param values Values
+     * @return Cumulative probability of each value
+     */
+    float[] evaluate(float[] values) {
+        float[] result = new float[values.length];
+        Table t = table;
+
+        for (int i = 0; i < values.length; i++) {
+            float n = values[i];
+            result[i] = t != null && n >= min && n <= max ? t.interpolate(n) : evaluate(n);
+        }
+
+        return result;
+    }
+
+    /**
+     * Precomputes a lookup table. The number of points is doubled until the interpolation error, checked in the
+     * middle of every interval, is within the tolerance.
+     * @param tolerance Largest error of the interpolated cumulative probability
+     * @throws IllegalArgumentException Thrown if the tolerance cannot be reached with the largest table
+     */
+    void tabulate(double tolerance) {
+        for (int intervals = 256; intervals <= MAX_INTERVALS; intervals *= 2) {
+            Table t = new Table(intervals);
+
+            if (t.error() <= tolerance) {
+                table = t;
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException("Lookup table cannot reach the tolerance");
+    }
+
+    /**
+     * @return True if the function uses a lookup table
+     */
+    boolean isTabulated() {
+        return table != null;
+    }
+
+    private static long entry(int key, int value) {
+        return (long) key << 32 | value & 0xffffffffL;
+    }
+
+    /**
+     * Cumulative probabilities at evenly spaced points between the minimum and the maximum
+     */
+    private class Table {
+        private final double step;
+        private final float[] points;
+
+        Table(int intervals) {
+            step = (max - min) / intervals;
+            points = new float[intervals + 1];
+
+            for (int i = 0; i <= intervals; i++) {
+                points[i] = (float) exact.applyAsDouble(min + i * step);
+            }
+        }
+
+        float interpolate(float n) {
+            double position = (n - min) / step;
+            int i = Math.min((int) position, points.length - 2);
+            double fraction = position - i;
+            return (float) (points[i] + (points[i + 1] - points[i]) * fraction);
+        }
+
+        /**
+         * @return Largest difference from the exact cumulative probability in the middle of an interval
+         */
+        double error() {
+            double error = 0;
+
+            for (int i = 0; i + 1 < points.length; i++) {
+                double middle = min + (i + 0.5) * step;
+                double interpolated = (points[i] + points[i + 1]) / 2.0;
+                error = Math.max(error, Math.abs(interpolated - exact.applyAsDouble(middle)));
+            }
+
+            return error;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package episcopal.continuous;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CumulativeFunctionTest {
+    @Test
+    public void cache() throws Exception {
+        int[] calls = new int[1];
+        CumulativeFunction f = new CumulativeFunction(x -> {
+            calls[0]++;
+            return x / 10;
+        }, 0, 10);
+
+        assertEquals(0.5f, f.evaluate(5), 0);
+        assertEquals(0.5f, f.evaluate(5), 0);
+        assertEquals(1, calls[0]);
+
+        assertEquals(0.25f, f.evaluate(2.5f), 0);
+        assertEquals(2, calls[0]);
+    }
+
+    @Test
+    public void tabulate() throws Exception {
+        CumulativeFunction f = new CumulativeFunction(x -> x * x / 100, 0, 10);
+        f.tabulate(1e-4);
+
+        assertTrue(f.isTabulated());
+        assertEquals(0.5625, f.evaluate(7.5f), 1e-4);
+        assertEquals(1, f.evaluate(10), 1e-6);
+        assertEquals(1.21, f.evaluate(11), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unreachableTolerance() throws Exception {
+        new CumulativeFunction(Math::sqrt, 0, 1).tabulate(1e-9);
+    }
+}
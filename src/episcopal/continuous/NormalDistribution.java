@@ -1,5 +1,7 @@
 package episcopal.continuous;
 
+import java.util.Objects;
+
 /**
  * Normal distribution
  *
@@ -8,8 +10,14 @@ package episcopal.continuous;
  * @see ContinuousDistribution
  */
 public class NormalDistribution extends ContinuousDistribution {
+    /**
+     * Number of standard deviations around the mean covered by a lookup table
+     */
+    private static final int TABLE_WIDTH = 8;
+
     private float m;
     private float sd;
+    private final CumulativeFunction function;
 
     /**
      * @param m Mean
@@ -18,6 +26,8 @@ public class NormalDistribution extends ContinuousDistribution {
     public NormalDistribution(float m, float sd) {
         this.m = m;
         this.sd = sd;
+        this.function = new CumulativeFunction(
+                x -> SpecialFunctions.normalCumulative(x, m, sd), m - TABLE_WIDTH * sd, m + TABLE_WIDTH * sd);
     }
 
     /**
@@ -25,12 +35,48 @@ public class NormalDistribution extends ContinuousDistribution {
      */
     @Override
     public float cumulative(float n) {
-        org.apache.commons.math3.distribution.NormalDistribution d = new org.apache.commons.math3.distribution.NormalDistribution(m, sd);
-        return (float) d.cumulativeProbability(n);
+        return function.evaluate(n);
+    }
+
+    /**
+     * @see ContinuousDistribution#cumulative(float[])
+     */
+    @Override
+    public float[] cumulative(float[] values) {
+        return function.evaluate(values);
+    }
+
+    /**
+     * The table covers the values within eight standard deviations from the mean
+     * @see ContinuousDistribution#tabulate(double)
+     */
+    @Override
+    public void tabulate(double tolerance) {
+        function.tabulate(tolerance);
     }
 
     @Override
     public String toString() {
         return String.format("NormalDistribution{m=%f sd=%f}", m, sd);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        NormalDistribution other = (NormalDistribution) o;
+        return Float.compare(m, other.m) == 0 &&
+                Float.compare(sd, other.sd) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(m, sd);
+    }
 }
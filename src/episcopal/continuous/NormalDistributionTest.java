@@ -11,4 +11,20 @@ public class NormalDistributionTest {
         assertEquals(0.0968, d.cumulative(5.5f), 0.0001);
     }
 
+    @Test
+    public void tabulate() throws Exception {
+        NormalDistribution exact = new NormalDistribution(12, 5);
+        NormalDistribution d = new NormalDistribution(12, 5);
+        d.tabulate(1e-6);
+
+        for (float n = -40; n <= 60; n += 0.37f) {
+            assertEquals(exact.cumulative(n), d.cumulative(n), 2e-6);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDeviation() throws Exception {
+        new NormalDistribution(0, -1).cumulative(0.5f);
+    }
+
 }
\ No newline at end of file
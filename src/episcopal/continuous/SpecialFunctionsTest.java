@@ -0,0 +1,68 @@
+package episcopal.continuous;
+
+import org.apache.commons.math3.special.Beta;
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.special.Gamma;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpecialFunctionsTest {
+    private static final double TOLERANCE = 1e-13;
+
+    @Test
+    public void erfc() throws Exception {
+        for (double x = -6; x <= 27; x += 0.01) {
+            double expected = Erf.erfc(x);
+            assertEquals(expected, SpecialFunctions.erfc(x), TOLERANCE + Math.abs(expected) * 1e-12);
+        }
+
+        assertEquals(0, SpecialFunctions.erfc(30), 0);
+        assertEquals(2, SpecialFunctions.erfc(-30), 0);
+    }
+
+    @Test
+    public void logGamma() throws Exception {
+        for (double x = 0.05; x < 200; x *= 1.1) {
+            assertEquals(Gamma.logGamma(x), SpecialFunctions.logGamma(x), 1e-12 * Math.max(1, Math.abs(Gamma.logGamma(x))));
+        }
+    }
+
+    @Test
+    public void regularizedBeta() throws Exception {
+        double[] parameters = {0.3, 0.5, 1, 2, 3.7, 10, 50};
+
+        for (double a : parameters) {
+            for (double b : parameters) {
+                for (double x = 0.001; x < 1; x += 0.0123) {
+                    assertEquals(Beta.regularizedBeta(x, a, b), SpecialFunctions.regularizedBeta(x, a, b), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void normalCumulative() throws Exception {
+        org.apache.commons.math3.distribution.NormalDistribution d =
+                new org.apache.commons.math3.distribution.NormalDistribution(12, 5);
+
+        for (double x = -250; x <= 250; x += 0.25) {
+            assertEquals(d.cumulativeProbability(x), SpecialFunctions.normalCumulative(x, 12, 5), TOLERANCE);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void normalCumulativeWithoutDeviation() throws Exception {
+        SpecialFunctions.normalCumulative(1, 0, 0);
+    }
+
+    @Test
+    public void betaCumulative() throws Exception {
+        org.apache.commons.math3.distribution.BetaDistribution d =
+                new org.apache.commons.math3.distribution.BetaDistribution(2.5, 0.8);
+
+        for (double x = -0.5; x <= 1.5; x += 0.01) {
+            assertEquals(d.cumulativeProbability(x), SpecialFunctions.betaCumulative(x, 2.5, 0.8), 1e-12);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package episcopal.discrete;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws random values from a discrete sample using Vose's alias method
+ *
+ * The probabilities are split into equally likely columns. Each column holds at most two values: its own value and an
+ * alias that fills the rest of the column. A draw picks a column and then one of its two values, so it takes constant
+ * time regardless of the size of the sample.
+ *
+ * When the probabilities add up to less than one, the missing probability is an extra outcome for which no value can
+ * be selected, so the draws keep the probabilities of the sample.
+ *
+ * The sampler is built by {@link DiscreteSample#sampler()} and cached on the sample until it changes.
+ *
+ * @param <T> Type of the values
+ */
+public class AliasSampler<T> {
+    private final List<T> values;
+
+    /**
+     * Probability of choosing the own value of each column instead of its alias
+     */
+    private final double[] threshold;
+
+    /**
+     * Alias of each column. The column after the last value stands for the missing probability.
+     */
+    private final int[] alias;
+
+    /**
+     * Builds the alias table
+     * @param values Values of the sample
+     * @param weights Probabilities of the values
+     */
+    AliasSampler(List<T> values, double[] weights) {
+        this.values = values;
+
+        double total = 0;
+
+        for (double weight : weights) {
+            total += weight;
+        }
+
+        // a column for the missing probability, if there is any
+        int n = total < 1 ? weights.length + 1 : weights.length;
+        double scale = n / Math.max(total, 1);
+        double[] scaled = new double[n];
+
+        for (int i = 0; i < weights.length; i++) {
+            scaled[i] = weights[i] * scale;
+        }
+
+        if (n > weights.length) {
+            scaled[weights.length] = (1 - total) * scale;
+        }
+
+        threshold = new double[n];
+        alias = new int[n];
+
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+
+            threshold[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1;
+
+            if (scaled[l] < 1) {
+                small[smallCount++] = l;
+            } else {
+                large[largeCount++] = l;
+            }
+        }
+
+        // columns left over due to rounding errors are full
+        while (largeCount > 0) {
+            int l = large[--largeCount];
+            threshold[l] = 1;
+            alias[l] = l;
+        }
+
+        while (smallCount > 0) {
+            int s = small[--smallCount];
+            threshold[s] = 1;
+            alias[s] = s;
+        }
+    }
+
+    /**
+     * @return Number of values the sampler draws from
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Draws one value
+     * @param random Random generator
+     * @return Drawn value
+     * @throws IllegalStateException Thrown if the draw falls into the missing probability
+     */
+    public T select(RandomGenerator random) {
+        int index = draw(random);
+
+        if (index >= values.size()) {
+            throw new IllegalStateException("Failed to select a sample from distribution");
+        }
+
+        return values.get(index);
+    }
+
+    /**
+     * Draws multiple values
+     * @param random Random generator
+     * @param count Number of draws
+     * @return Drawn values in the order they were drawn
+     * @throws IllegalStateException Thrown if a draw falls into the missing probability
+     */
+    public List<T> select(RandomGenerator random, int count) {
+        List<T> result = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            result.add(select(random));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param random Random generator
+     * @return Position of the drawn value, or the number of values for the missing probability
+     */
+    private int draw(RandomGenerator random) {
+        if (threshold.length == 0) {
+            throw new IllegalStateException("Failed to select a sample from distribution");
+        }
+
+        int column = random.nextInt(threshold.length);
+        return random.nextDouble() < threshold[column] ? column : alias[column];
+    }
+}
@@ -0,0 +1,69 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class AliasSamplerTest {
+    @Test
+    public void frequencies() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(1, 0.1).add(2, 0.2).add(3, 0.3).add(4, 0.4);
+        AliasSampler<Integer> sampler = s.sampler();
+        SplittableRandom random = new SplittableRandom(42);
+        int[] counts = new int[5];
+
+        for (int i = 0; i < 100000; i++) {
+            counts[sampler.select(random)]++;
+        }
+
+        assertEquals(4, sampler.size());
+        assertEquals(10000, counts[1], 500);
+        assertEquals(20000, counts[2], 500);
+        assertEquals(30000, counts[3], 500);
+        assertEquals(40000, counts[4], 500);
+    }
+
+    @Test
+    public void batch() throws Exception {
+        BoolDiscreteSample s = new BoolDiscreteSample().add(true, 0.25).add(false, 0.75);
+        List<Boolean> draws = s.sampler().select(new SplittableRandom(7), 10000);
+        int trues = 0;
+
+        for (boolean draw : draws) {
+            trues += draw ? 1 : 0;
+        }
+
+        assertEquals(10000, draws.size());
+        assertEquals(2500, trues, 200);
+    }
+
+    @Test
+    public void cached() throws Exception {
+        FloatDiscreteSample s = new FloatDiscreteSample().add(1.5f, 1);
+        AliasSampler<Float> sampler = s.sampler();
+
+        assertSame(sampler, s.sampler());
+
+        s.add(2.5f, 0);
+        assertNotSame(sampler, s.sampler());
+        assertEquals(2, s.sampler().size());
+    }
+
+    @Test
+    public void point() throws Exception {
+        assertEquals(Integer.valueOf(5), IntDiscreteSample.point(5).sampler().select(new SplittableRandom(1)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingProbability() throws Exception {
+        AliasSampler<Integer> sampler = new IntDiscreteSample().add(1, 0.001).sampler();
+        SplittableRandom random = new SplittableRandom(3);
+
+        for (int i = 0; i < 100; i++) {
+            sampler.select(random);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package episcopal.discrete;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Policy bounding the size of discrete samples
+ *
+ * Every operator on two discrete samples can multiply the number of values, so long chains of operators grow
+ * exponentially. An approximation keeps the samples small by dropping improbable values:
+ *
+ * - values with probability below epsilon are dropped,
+ * - only the most probable values up to the maximum size are kept,
+ * - float values are rounded to a grid, so that nearly equal results like 0.3 and 0.30000001 are merged.
+ *
+ * The probabilities of the kept values are not changed, and the probability of the dropped values is added up, so the
+ * error of the approximation is known. The most probable value is always kept.
+ */
+public class Approximation {
+    /**
+     * Policy that keeps all values
+     */
+    public static final Approximation EXACT = new Approximation(0, Integer.MAX_VALUE, 0);
+
+    private final double epsilon;
+    private final int maxSize;
+    private final float grid;
+
+    /**
+     * Grid spacing as the decimal number the float stands for, so that 0.01f gives exactly the values 0.3f, 0.31f...
+     */
+    private final double step;
+
+    private final DoubleAdder discarded = new DoubleAdder();
+
+    /**
+     * @param epsilon Smallest probability of a kept value
+     * @param maxSize Largest number of values in a sample
+     * @param grid Spacing of the grid float values are rounded to, or 0 to keep the float values
+     */
+    public Approximation(double epsilon, int maxSize, float grid) {
+        if (epsilon < 0 || maxSize < 1 || !(grid >= 0)) {
+            throw new IllegalArgumentException("Invalid approximation parameters");
+        }
+
+        this.epsilon = epsilon;
+        this.maxSize = maxSize;
+        this.grid = grid;
+        this.step = Double.parseDouble(Float.toString(grid));
+    }
+
+    /**
+     * @return Smallest probability of a kept value
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @return Largest number of values in a sample
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Spacing of the grid float values are rounded to, or 0 if the float values are kept
+     */
+    public float getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return True if the policy keeps all values
+     */
+    public boolean isExact() {
+        return epsilon == 0 && maxSize == Integer.MAX_VALUE && grid == 0;
+    }
+
+    /**
+     * @return Total probability of the values dropped by this policy so far
+     */
+    public double getDiscardedMass() {
+        return discarded.sum();
+    }
+
+    /**
+     * Resets the total probability of the dropped values
+     */
+    public void resetDiscardedMass() {
+        discarded.reset();
+    }
+
+    /**
+     * Approximates an integer sample
+     * @param sample Sample
+     * @return The same sample if no value has to be dropped, otherwise a new sample with the kept values
+     */
+    public IntDiscreteSample apply(IntDiscreteSample sample) {
+        int size = sample.size();
+        double[] weights = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            weights[i] = sample.weightAt(i);
+        }
+
+        boolean[] kept = select(weights);
+
+        if (kept == null) {
+            return sample;
+        }
+
+        IntDiscreteSample result = new IntDiscreteSample(Math.min(size, maxSize));
+
+        for (int i = 0; i < size; i++) {
+            if (kept[i]) {
+                result.add(sample.keyAt(i), weights[i]);
+            }
+        }
+
+        return result.compact();
+    }
+
+    /**
+     * Approximates a float sample. The values are rounded to the grid before the improbable ones are dropped.
+     * @param sample Sample
+     * @return The same sample if no value has to be rounded or dropped, otherwise a new sample
+     */
+    public FloatDiscreteSample apply(FloatDiscreteSample sample) {
+        FloatDiscreteSample rounded = round(sample);
+        int size = rounded.size();
+        double[] weights = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            weights[i] = rounded.weightAt(i);
+        }
+
+        boolean[] kept = select(weights);
+
+        if (kept == null) {
+            return rounded;
+        }
+
+        FloatDiscreteSample result = new FloatDiscreteSample(Math.min(size, maxSize));
+
+        for (int i = 0; i < size; i++) {
+            if (kept[i]) {
+                result.add(rounded.keyAt(i), weights[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Rounds the values of a float sample to the grid and merges the values that are rounded to the same one
+     * @param sample Sample
+     * @return The same sample if all values are on the grid, otherwise a new sample
+     */
+    private FloatDiscreteSample round(FloatDiscreteSample sample) {
+        if (grid == 0) {
+            return sample;
+        }
+
+        int size = sample.size();
+        int first = 0;
+
+        while (first < size && snap(sample.keyAt(first)) == sample.keyAt(first)) {
+            first++;
+        }
+
+        if (first == size) {
+            return sample;
+        }
+
+        FloatDiscreteSample result = new FloatDiscreteSample(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add(snap(sample.keyAt(i)), sample.weightAt(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param value Float value
+     * @return Nearest value on the grid. Infinities and NaN are kept.
+     */
+    private float snap(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return value;
+        }
+
+        return (float) (Math.rint(value / step) * step);
+    }
+
+    /**
+     * Decides which values are kept and adds the probability of the others to the discarded mass
+     * @param weights Probabilities of the values
+     * @return Kept values, or null if all values are kept
+     */
+    private boolean[] select(double[] weights) {
+        int n = weights.length;
+
+        if (n == 0) {
+            return null;
+        }
+
+        // probability of the least probable value that fits into the maximum size
+        double cutoff = epsilon;
+        int ties = Integer.MAX_VALUE;
+
+        if (n > maxSize) {
+            double[] sorted = weights.clone();
+            Arrays.sort(sorted);
+            double kth = sorted[n - maxSize];
+
+            if (kth >= cutoff) {
+                cutoff = kth;
+                ties = 0;
+
+                // values tied with the cutoff that still fit into the maximum size
+                for (int i = n - maxSize; i < n && sorted[i] == kth; i++) {
+                    ties++;
+                }
+            }
+        }
+
+        boolean[] kept = new boolean[n];
+        int count = 0;
+        int best = 0;
+        double dropped = 0;
+
+        for (int i = 0; i < n; i++) {
+            double weight = weights[i];
+
+            if (weight > cutoff || (weight == cutoff && ties-- > 0)) {
+                kept[i] = true;
+                count++;
+            } else {
+                dropped += weight;
+            }
+
+            if (weight > weights[best]) {
+                best = i;
+            }
+        }
+
+        if (count == 0) {
+            kept[best] = true;
+            dropped -= weights[best];
+            count = 1;
+        }
+
+        if (count == n) {
+            return null;
+        }
+
+        discarded.add(dropped);
+        return kept;
+    }
+}
@@ -0,0 +1,90 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ApproximationTest {
+    @Test
+    public void exact() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(1, 0.001).add(2, 0.999);
+
+        assertTrue(Approximation.EXACT.isExact());
+        assertSame(s, Approximation.EXACT.apply(s));
+        assertEquals(0, Approximation.EXACT.getDiscardedMass(), 0);
+    }
+
+    @Test
+    public void epsilon() throws Exception {
+        Approximation a = new Approximation(0.01, Integer.MAX_VALUE, 0);
+        IntDiscreteSample s = a.apply(new IntDiscreteSample().add(1, 0.005).add(2, 0.5).add(3, 0.495));
+
+        assertEquals(2, s.size());
+        assertFalse(s.contains(1));
+        assertEquals(0.5, s.probability(2), 0.001);
+        assertEquals(0.005, a.getDiscardedMass(), 0.0001);
+    }
+
+    @Test
+    public void maxSize() throws Exception {
+        Approximation a = new Approximation(0, 2, 0);
+        IntDiscreteSample s = a.apply(new IntDiscreteSample().add(1, 0.2).add(2, 0.5).add(3, 0.3).add(4, 0.0));
+
+        assertEquals(2, s.size());
+        assertTrue(s.contains(2));
+        assertTrue(s.contains(3));
+        assertEquals(0.2, a.getDiscardedMass(), 0.0001);
+
+        a.resetDiscardedMass();
+        assertEquals(0, a.getDiscardedMass(), 0);
+    }
+
+    @Test
+    public void ties() throws Exception {
+        Approximation a = new Approximation(0, 3, 0);
+        IntDiscreteSample s = new IntDiscreteSample();
+
+        for (int i = 0; i < 10; i++) {
+            s.add(i * 2, 0.1);
+        }
+
+        assertEquals(3, a.apply(s).size());
+        assertEquals(0.7, a.getDiscardedMass(), 0.0001);
+    }
+
+    @Test
+    public void keepsMostProbable() throws Exception {
+        Approximation a = new Approximation(0.5, 10, 0);
+        IntDiscreteSample s = a.apply(new IntDiscreteSample().add(1, 0.2).add(2, 0.4).add(3, 0.4 - 1e-9));
+
+        assertEquals(1, s.size());
+        assertTrue(s.contains(2));
+    }
+
+    @Test
+    public void grid() throws Exception {
+        Approximation a = new Approximation(0, Integer.MAX_VALUE, 0.01f);
+        FloatDiscreteSample s = new FloatDiscreteSample().add(0.3f, 0.5).add(Math.nextUp(0.3f), 0.25).add(0.7f, 0.25);
+        FloatDiscreteSample rounded = a.apply(s);
+
+        assertEquals(3, s.size());
+        assertEquals(2, rounded.size());
+        assertEquals(0.75, rounded.probability(0.3f), 0.001);
+        assertEquals(0, a.getDiscardedMass(), 0);
+    }
+
+    @Test
+    public void floatMaxSize() throws Exception {
+        Approximation a = new Approximation(0, 1, 0);
+        FloatDiscreteSample s = a.apply(new FloatDiscreteSample().add(1.5f, 0.25).add(2.5f, 0.75));
+
+        assertEquals(1, s.size());
+        assertEquals(0.75, s.probability(2.5f), 0.001);
+        assertEquals(0.25, a.getDiscardedMass(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() throws Exception {
+        new Approximation(0, 0, 0);
+    }
+}
@@ -2,6 +2,8 @@ package episcopal.discrete;
 
 import episcopal.Distribution;
 
+import java.util.Objects;
+
 /**
  * Bernoulli distribution
  *
@@ -22,10 +24,26 @@ public class BernoulliDistribution implements Distribution {
      * @return Sample of the distribution
      */
     @Override
-    public DiscreteSample<Integer> sample() {
-        DiscreteSample<Integer> result = new DiscreteSample<>();
-        result.add(1, p);
-        result.add(0, 1 - p);
-        return result;
+    public IntDiscreteSample sample() {
+        return new IntDiscreteSample(2).add(1, p).add(0, 1 - p);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        BernoulliDistribution other = (BernoulliDistribution) o;
+        return Float.compare(p, other.p) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(p);
     }
 }
@@ -0,0 +1,260 @@
+package episcopal.discrete;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * Discrete sample of boolean values
+ *
+ * A boolean sample has at most two values, so it is stored as two probabilities. The sample also remembers which of
+ * the values were added, even with zero probability, so that it contains the same values as a generic sample would.
+ *
+ * The immutable point masses of true and false returned by {@link #point(boolean)} are shared.
+ */
+public class BoolDiscreteSample extends DiscreteSample<Boolean> {
+    private static final BoolDiscreteSample TRUE = create(true).freeze();
+    private static final BoolDiscreteSample FALSE = create(false).freeze();
+
+    private double trueWeight;
+    private double falseWeight;
+    private boolean hasTrue;
+    private boolean hasFalse;
+
+    /**
+     * Creates an empty sample
+     */
+    public BoolDiscreteSample() {
+        super(null);
+    }
+
+    /**
+     * Creates a sample containing the specified value with 100% probability
+     * @param value Value
+     * @return Sample with the value
+     */
+    public static BoolDiscreteSample create(boolean value) {
+        return new BoolDiscreteSample().add(value, 1);
+    }
+
+    /**
+     * Returns the shared immutable sample containing the specified value with 100% probability
+     * @param value Value
+     * @return Immutable sample with the value
+     */
+    public static BoolDiscreteSample point(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Returns an immutable sample containing only the specified value
+     * @param value Value
+     * @param probability Probability of the value
+     * @return Immutable sample with the value
+     */
+    public static BoolDiscreteSample point(boolean value, double probability) {
+        if (probability == 1) {
+            return point(value);
+        }
+
+        return new BoolDiscreteSample().add(value, probability).freeze();
+    }
+
+    /**
+     * Converts a discrete sample of booleans to the primitive representation. Primitive samples are returned as they
+     * are, other samples are copied.
+     * @param sample Discrete sample of booleans
+     * @return Primitive sample with the same values
+     */
+    public static BoolDiscreteSample of(DiscreteSample<Boolean> sample) {
+        if (sample instanceof BoolDiscreteSample) {
+            return (BoolDiscreteSample) sample;
+        }
+
+        BoolDiscreteSample result = new BoolDiscreteSample();
+
+        for (Boolean value : sample.values()) {
+            result.add(value, sample.get(value));
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a new value to the sample with the specified probability
+     * @param value Value
+     * @param probability Probability of the value
+     * @return This instance
+     */
+    public BoolDiscreteSample add(boolean value, double probability) {
+        checkMutable();
+        modified();
+
+        if (value) {
+            trueWeight += probability;
+            hasTrue = true;
+        } else {
+            falseWeight += probability;
+            hasFalse = true;
+        }
+
+        return this;
+    }
+
+    /**
+     * @param value Value
+     * @return Probability of the value, or 0 if it is not in the sample
+     */
+    public double probability(boolean value) {
+        return value ? trueWeight : falseWeight;
+    }
+
+    /**
+     * @param value Value
+     * @return True if the value is in the sample
+     */
+    public boolean contains(boolean value) {
+        return value ? hasTrue : hasFalse;
+    }
+
+    /**
+     * Randomly selects one value with the probabilities of the sample. The sample has at most two values, so the value
+     * is drawn directly without building a sampler. As with {@link AliasSampler}, the probability missing to one is an
+     * outcome for which no value can be selected.
+     * @param random Random generator
+     * @return Selected value
+     * @throws IllegalStateException Thrown if the draw falls into the missing probability
+     */
+    public boolean select(RandomGenerator random) {
+        double total = trueWeight + falseWeight;
+        double draw = random.nextDouble() * Math.max(total, 1);
+
+        if (draw < trueWeight) {
+            return true;
+        }
+
+        if (draw < total) {
+            return false;
+        }
+
+        throw new IllegalStateException("Failed to select a sample from distribution");
+    }
+
+    @Override
+    public BoolDiscreteSample add(Boolean value, float probability) {
+        return add((boolean) value, probability);
+    }
+
+    @Override
+    public float get(Boolean value) {
+        return (float) probability(value);
+    }
+
+    @Override
+    public Set<Boolean> values() {
+        Set<Boolean> result = new HashSet<>();
+
+        if (hasFalse) {
+            result.add(false);
+        }
+
+        if (hasTrue) {
+            result.add(true);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Boolean single() {
+        if (hasTrue != hasFalse) {
+            return hasTrue;
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean isPoint() {
+        return hasTrue != hasFalse;
+    }
+
+    /**
+     * @return Value of a point mass sample
+     * @throws IllegalStateException Thrown if the sample does not contain exactly one value
+     */
+    public boolean pointValue() {
+        if (!isPoint()) {
+            throw new IllegalStateException("Sample is not a point mass");
+        }
+
+        return hasTrue;
+    }
+
+    @Override
+    public BoolDiscreteSample freeze() {
+        super.freeze();
+        return this;
+    }
+
+    @Override
+    protected AliasSampler<Boolean> createSampler() {
+        List<Boolean> values = new ArrayList<>(2);
+        double[] weights = new double[(hasFalse ? 1 : 0) + (hasTrue ? 1 : 0)];
+
+        if (hasFalse) {
+            weights[values.size()] = falseWeight;
+            values.add(false);
+        }
+
+        if (hasTrue) {
+            weights[values.size()] = trueWeight;
+            values.add(true);
+        }
+
+        return new AliasSampler<>(values, weights);
+    }
+
+    /**
+     * Samples are equal if they contain the same values with the same probabilities
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof BoolDiscreteSample)) {
+            return false;
+        }
+
+        BoolDiscreteSample other = (BoolDiscreteSample) o;
+        return hasTrue == other.hasTrue && hasFalse == other.hasFalse &&
+                Double.compare(trueWeight, other.trueWeight) == 0 && Double.compare(falseWeight, other.falseWeight) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hasTrue, hasFalse, trueWeight, falseWeight);
+    }
+
+    @Override
+    public String toString() {
+        if (hasFalse && hasTrue) {
+            return formatSample(formatValue(false, (float) falseWeight) + "; " + formatValue(true, (float) trueWeight));
+        }
+
+        if (hasFalse) {
+            return formatSample(formatValue(false, (float) falseWeight));
+        }
+
+        if (hasTrue) {
+            return formatSample(formatValue(true, (float) trueWeight));
+        }
+
+        return formatSample("");
+    }
+}
@@ -0,0 +1,91 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BoolDiscreteSampleTest {
+    @Test
+    public void add() throws Exception {
+        BoolDiscreteSample s = new BoolDiscreteSample().add(true, 0.2).add(true, 0.3).add(false, 0.5);
+
+        assertEquals(0.5, s.probability(true), 0.001);
+        assertEquals(0.5, s.probability(false), 0.001);
+    }
+
+    @Test
+    public void values() throws Exception {
+        assertEquals(Collections.singleton(true), BoolDiscreteSample.create(true).values());
+
+        BoolDiscreteSample s = new BoolDiscreteSample().add(false, 1).add(true, 0);
+        assertEquals(new HashSet<>(Arrays.asList(true, false)), s.values());
+    }
+
+    @Test
+    public void single() throws Exception {
+        assertEquals(false, BoolDiscreteSample.create(false).single());
+        assertNull(new BoolDiscreteSample().add(false, 1).add(true, 0).single());
+        assertNull(new BoolDiscreteSample().single());
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        BoolDiscreteSample s = new BoolDiscreteSample().add(true, 0.7f).add(false, 0.3f);
+        assertEquals("DiscreteSample{false 30%; true 70%}", s.toString());
+    }
+
+    @Test
+    public void point() throws Exception {
+        BoolDiscreteSample s = BoolDiscreteSample.point(true);
+
+        assertTrue(s.isPoint());
+        assertTrue(s.pointValue());
+        assertSame(s, BoolDiscreteSample.point(true));
+        assertFalse(new BoolDiscreteSample().add(true, 0.5).add(false, 0.5).isPoint());
+    }
+
+    @Test
+    public void select() throws Exception {
+        BoolDiscreteSample s = new BoolDiscreteSample().add(true, 0.25).add(false, 0.75);
+        Random random = new Random(1);
+        int count = 0;
+
+        for (int i = 0; i < 10000; i++) {
+            if (s.select(random)) {
+                count++;
+            }
+        }
+
+        assertEquals(0.25, count / 10000.0, 0.02);
+        assertTrue(BoolDiscreteSample.point(true).select(random));
+        assertFalse(BoolDiscreteSample.point(false).select(random));
+    }
+
+    @Test
+    public void selectIncomplete() throws Exception {
+        BoolDiscreteSample s = new BoolDiscreteSample().add(true, 0.25).add(false, 0.25);
+        Random random = new Random(1);
+        int failed = 0;
+
+        for (int i = 0; i < 10000; i++) {
+            try {
+                s.select(random);
+            } catch (IllegalStateException e) {
+                failed++;
+            }
+        }
+
+        assertEquals(0.5, failed / 10000.0, 0.02);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void selectEmpty() throws Exception {
+        new BoolDiscreteSample().select(new Random(1));
+    }
+
+}
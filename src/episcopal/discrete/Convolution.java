@@ -0,0 +1,287 @@
+package episcopal.discrete;
+
+import java.util.Arrays;
+
+/**
+ * Addition and subtraction of integer samples as convolution
+ *
+ * The probability of a sum of two independent integer samples is the convolution of their probabilities. When both
+ * samples cover ranges without gaps, the probabilities can be convolved as arrays instead of combining every pair of
+ * values through a hash table. The sums then cover a range without gaps as well. Small arrays are convolved directly,
+ * large ones using the fast Fourier transform.
+ */
+public class Convolution {
+    /**
+     * Shorter operand length from which the FFT is used instead of the direct convolution
+     */
+    private static final int FFT_MIN_SIZE = 64;
+
+    /**
+     * Relative precision of the probabilities computed by the FFT. Probabilities that the rounding errors of the FFT
+     * could make less precise are computed directly.
+     */
+    private static final double FFT_PRECISION = 1e-6;
+
+    /**
+     * Checks if two samples can be added or subtracted by convolution
+     * @param left Left sample
+     * @param right Right sample
+     * @return True if the values of both samples form ranges without gaps
+     */
+    public static boolean applicable(IntDiscreteSample left, IntDiscreteSample right) {
+        return left.fitsDense() && right.fitsDense();
+    }
+
+    /**
+     * Adds two samples. Both samples have to be {@link #applicable(IntDiscreteSample, IntDiscreteSample) applicable}.
+     * @param left Left sample
+     * @param right Right sample
+     * @return Dense sample with the sums, or null if the sums do not fit into integers
+     */
+    public static IntDiscreteSample add(IntDiscreteSample left, IntDiscreteSample right) {
+        double[] a = left.denseWeights();
+        double[] b = right.denseWeights();
+        long offset = (long) left.minKey() + right.minKey();
+
+        if (!inRange(offset, a.length + b.length - 1)) {
+            return null;
+        }
+
+        return sample((int) offset, convolve(a, b));
+    }
+
+    /**
+     * Subtracts two samples. This is an addition of the left sample and the negated right sample.
+     * @param left Left sample
+     * @param right Right sample
+     * @return Dense sample with the differences, or null if the differences do not fit into integers
+     */
+    public static IntDiscreteSample subtract(IntDiscreteSample left, IntDiscreteSample right) {
+        double[] a = left.denseWeights();
+        double[] b = reverse(right.denseWeights());
+        long offset = (long) left.minKey() - right.maxKey();
+
+        if (!inRange(offset, a.length + b.length - 1)) {
+            return null;
+        }
+
+        return sample((int) offset, convolve(a, b));
+    }
+
+    /**
+     * Convolves two arrays
+     * @param a First array
+     * @param b Second array
+     * @return Array of length a.length + b.length - 1
+     */
+    static double[] convolve(double[] a, double[] b) {
+        if (Math.min(a.length, b.length) < FFT_MIN_SIZE) {
+            return convolveDirect(a, b);
+        }
+
+        return convolveFft(a, b);
+    }
+
+    /**
+     * Convolves two arrays by multiplying every pair of elements
+     * @param a First array
+     * @param b Second array
+     * @return Convolution
+     */
+    static double[] convolveDirect(double[] a, double[] b) {
+        double[] result = new double[a.length + b.length - 1];
+
+        for (int i = 0; i < a.length; i++) {
+            double p = a[i];
+
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] += p * b[j];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Convolves two arrays using the FFT. Both arrays are transformed at once as the real and imaginary part of one
+     * complex signal. Squaring its transform gives a signal whose imaginary part is twice the convolution.
+     *
+     * The rounding errors of the FFT are about the length times the ulp of the largest result, regardless of the size
+     * of each result. Results that are not well above this bound, like the tails of sums of many samples, are computed
+     * directly.
+     * @param a First array
+     * @param b Second array
+     * @return Convolution
+     */
+    static double[] convolveFft(double[] a, double[] b) {
+        int length = a.length + b.length - 1;
+        int n = Integer.highestOneBit(length - 1) << 1;
+        double[] re = new double[n];
+        double[] im = new double[n];
+
+        System.arraycopy(a, 0, re, 0, a.length);
+        System.arraycopy(b, 0, im, 0, b.length);
+
+        fft(re, im, false);
+
+        for (int i = 0; i < n; i++) {
+            double r = re[i];
+            double m = im[i];
+            re[i] = r * r - m * m;
+            im[i] = 2 * r * m;
+        }
+
+        fft(re, im, true);
+
+        double[] result = new double[length];
+
+        double max = 0;
+
+        for (int i = 0; i < length; i++) {
+            // rounding errors can make zero probabilities slightly negative
+            result[i] = Math.max(0, im[i] / (2 * n));
+            max = Math.max(max, result[i]);
+        }
+
+        double bound = n * Math.ulp(max) / FFT_PRECISION;
+
+        for (int i = 0; i < length; i++) {
+            if (result[i] < bound) {
+                result[i] = convolveAt(a, b, i);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes one element of the convolution directly
+     * @param a First array
+     * @param b Second array
+     * @param k Position in the convolution
+     * @return Sum of the products of the elements whose positions add up to k
+     */
+    static double convolveAt(double[] a, double[] b, int k) {
+        double result = 0;
+
+        for (int i = Math.max(0, k - b.length + 1); i <= Math.min(k, a.length - 1); i++) {
+            result += a[i] * b[k - i];
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the sample of a convolution. Zero probabilities left by underflow are not part of the sample. They are
+     * cut off the ends of the range, and a range with zeros inside is stored sparsely.
+     * @param offset Value of the first probability
+     * @param weights Probabilities of the values starting with the offset
+     * @return Sample with the positive probabilities
+     */
+    private static IntDiscreteSample sample(int offset, double[] weights) {
+        int from = 0;
+        int to = weights.length;
+
+        while (from < to && weights[from] == 0) {
+            from++;
+        }
+
+        while (to > from && weights[to - 1] == 0) {
+            to--;
+        }
+
+        int count = 0;
+
+        for (int i = from; i < to; i++) {
+            count += weights[i] > 0 ? 1 : 0;
+        }
+
+        if (count == to - from) {
+            return IntDiscreteSample.range(offset + from,
+                    from == 0 && to == weights.length ? weights : Arrays.copyOfRange(weights, from, to));
+        }
+
+        IntDiscreteSample result = new IntDiscreteSample(count);
+
+        for (int i = from; i < to; i++) {
+            if (weights[i] > 0) {
+                result.add(offset + i, weights[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * In-place iterative radix-2 fast Fourier transform. The inverse transform is not scaled.
+     * @param re Real parts, length has to be a power of two
+     * @param im Imaginary parts
+     * @param inverse True for the inverse transform
+     */
+    private static void fft(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+
+            j ^= bit;
+
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        double[] cos = new double[n / 2];
+        double[] sin = new double[n / 2];
+
+        for (int k = 0; k < n / 2; k++) {
+            double angle = 2 * Math.PI * k / n;
+            cos[k] = Math.cos(angle);
+            sin[k] = inverse ? Math.sin(angle) : -Math.sin(angle);
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            int half = length >> 1;
+            int stride = n / length;
+
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < half; k++) {
+                    int p = start + k;
+                    int q = p + half;
+                    double wRe = cos[k * stride];
+                    double wIm = sin[k * stride];
+                    double xRe = re[q] * wRe - im[q] * wIm;
+                    double xIm = re[q] * wIm + im[q] * wRe;
+
+                    re[q] = re[p] - xRe;
+                    im[q] = im[p] - xIm;
+                    re[p] += xRe;
+                    im[p] += xIm;
+                }
+            }
+        }
+    }
+
+    private static double[] reverse(double[] a) {
+        double[] result = new double[a.length];
+
+        for (int i = 0; i < a.length; i++) {
+            result[a.length - 1 - i] = a[i];
+        }
+
+        return result;
+    }
+
+    private static boolean inRange(long offset, int length) {
+        return offset >= Integer.MIN_VALUE && offset + length - 1 <= Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,112 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ConvolutionTest {
+    @Test
+    public void add() throws Exception {
+        IntDiscreteSample left = new IntDiscreteSample().add(1, 0.4).add(2, 0.6);
+        IntDiscreteSample right = new IntDiscreteSample().add(3, 0.3).add(4, 0.7);
+
+        assertTrue(Convolution.applicable(left, right));
+
+        IntDiscreteSample result = Convolution.add(left, right);
+
+        assertTrue(result.isDense());
+        assertEquals(3, result.size());
+        assertEquals(0.12, result.probability(4), 0.001);
+        assertEquals(0.46, result.probability(5), 0.001);
+        assertEquals(0.42, result.probability(6), 0.001);
+    }
+
+    @Test
+    public void subtract() throws Exception {
+        IntDiscreteSample left = new IntDiscreteSample().add(1, 0.4).add(2, 0.6);
+        IntDiscreteSample right = new IntDiscreteSample().add(3, 0.3).add(4, 0.7);
+        IntDiscreteSample result = Convolution.subtract(left, right);
+
+        assertEquals(0.28, result.probability(-3), 0.001);
+        assertEquals(0.12 + 0.42, result.probability(-2), 0.001);
+        assertEquals(0.18, result.probability(-1), 0.001);
+    }
+
+    @Test
+    public void notApplicable() throws Exception {
+        IntDiscreteSample left = new IntDiscreteSample().add(1, 0.5).add(100, 0.5);
+        IntDiscreteSample right = IntDiscreteSample.create(1);
+
+        assertFalse(Convolution.applicable(left, right));
+    }
+
+    @Test
+    public void fft() throws Exception {
+        Random random = new Random(1);
+        double[] a = new double[300];
+        double[] b = new double[200];
+
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextDouble();
+        }
+
+        for (int i = 0; i < b.length; i++) {
+            b[i] = random.nextDouble();
+        }
+
+        assertArrayEquals(Convolution.convolveDirect(a, b), Convolution.convolveFft(a, b), 1e-9);
+    }
+
+    @Test
+    public void fftTails() throws Exception {
+        double[] coins = {1};
+
+        for (int i = 0; i < 300; i++) {
+            coins = Convolution.convolveDirect(coins, new double[]{0.5, 0.5});
+        }
+
+        double[] direct = Convolution.convolveDirect(coins, coins);
+        double[] fft = Convolution.convolveFft(coins, coins);
+
+        assertEquals(direct.length, fft.length);
+        assertEquals(Math.pow(0.5, 600), fft[0], 0);
+
+        for (int i = 0; i < direct.length; i++) {
+            assertTrue(direct[i] > 0);
+            assertEquals(direct[i], fft[i], direct[i] * 1e-6);
+        }
+    }
+
+    @Test
+    public void largeSumTails() throws Exception {
+        IntDiscreteSample coins = IntDiscreteSample.point(0);
+
+        for (int i = 0; i < 300; i++) {
+            coins = Convolution.add(coins, new IntDiscreteSample().add(0, 0.5).add(1, 0.5));
+        }
+
+        IntDiscreteSample sum = Convolution.add(coins, coins);
+
+        assertEquals(601, sum.size());
+        assertEquals(Math.pow(0.5, 600), sum.probability(0), 1e-190);
+        assertEquals(Math.pow(0.5, 600), sum.probability(600), 1e-190);
+
+        for (int i = 0; i < sum.size(); i++) {
+            assertTrue(sum.weightAt(i) > 0);
+        }
+    }
+
+    @Test
+    public void underflow() throws Exception {
+        IntDiscreteSample tiny = IntDiscreteSample.range(0, new double[]{1e-200, 1, 1e-200});
+        IntDiscreteSample sum = Convolution.add(tiny, tiny);
+
+        assertEquals(3, sum.size());
+        assertFalse(sum.contains(0));
+        assertEquals(1, sum.probability(2), 1e-9);
+        assertEquals(2e-200, sum.probability(1), 1e-210);
+    }
+
+}
@@ -7,21 +7,66 @@ import java.util.stream.Collectors;
 
 /**
  * Discrete sample contains a set of values with assigned probabilities.
+ *
+ * This generic implementation stores the values in a hash map. Samples of integers, floats and booleans have their own
+ * subclasses ({@link IntDiscreteSample}, {@link FloatDiscreteSample} and {@link BoolDiscreteSample}) that store the
+ * values in primitive arrays instead.
+ *
  * @param <T> Type of the values
  */
 public class DiscreteSample<T> implements Sample {
-    private Map<T, Float> values = new HashMap<>();
+    private Map<T, Float> values;
+    private boolean frozen;
 
     /**
-     * Creates a discrete sample containing the specified value with 100% probability.
+     * Identifier assigned by an {@link Interner} to a canonical sample, or 0 if the sample is not canonical
+     */
+    private volatile long canonicalId;
+
+    /**
+     * Sampler drawing random values, created on demand and discarded when the sample changes
+     */
+    private AliasSampler<T> sampler;
+
+    /**
+     * Creates an empty discrete sample
+     */
+    public DiscreteSample() {
+        this(new HashMap<>());
+    }
+
+    /**
+     * Creates a discrete sample backed by the specified map. Subclasses with their own storage pass null.
+     * @param values Map of values to their probabilities
+     */
+    protected DiscreteSample(Map<T, Float> values) {
+        this.values = values;
+    }
+
+    /**
+     * Creates a discrete sample containing the specified value with 100% probability. Integer, Float and Boolean
+     * values get the corresponding primitive sample.
      * @param value Value
      * @param <T> Type of the value
      * @return Discrete sample with the value
      */
+    @SuppressWarnings("unchecked")
     public static <T> DiscreteSample<T> create(T value) {
-      DiscreteSample<T> result = new DiscreteSample<>();
-      result.add(value, 1);
-      return result;
+        if (value instanceof Integer) {
+            return (DiscreteSample<T>) IntDiscreteSample.create((int) (Integer) value);
+        }
+
+        if (value instanceof Float) {
+            return (DiscreteSample<T>) FloatDiscreteSample.create((float) (Float) value);
+        }
+
+        if (value instanceof Boolean) {
+            return (DiscreteSample<T>) BoolDiscreteSample.create((boolean) (Boolean) value);
+        }
+
+        DiscreteSample<T> result = new DiscreteSample<>();
+        result.add(value, 1);
+        return result;
     }
 
     /**
@@ -31,6 +76,8 @@ public class DiscreteSample<T> implements Sample {
      * @return This instance
      */
     public DiscreteSample<T> add(T value, float probability) {
+        checkMutable();
+        modified();
         values.put(value, get(value) + probability);
         return this;
     }
@@ -40,7 +87,7 @@ public class DiscreteSample<T> implements Sample {
      * @return Returns the probability of the value, or 0% if it is not in the sample
      */
     public float get(T value) {
-    return values.getOrDefault(value, 0f);
+        return values.getOrDefault(value, 0f);
     }
 
     /**
@@ -57,13 +104,139 @@ public class DiscreteSample<T> implements Sample {
         return values.size() == 1 ? values.keySet().iterator().next() : null;
     }
 
+    /**
+     * @return True if the sample contains exactly one value
+     */
+    public boolean isPoint() {
+        return values.size() == 1;
+    }
+
+    /**
+     * Returns a sampler drawing random values with the probabilities of the sample. The sampler is cached until the
+     * sample changes.
+     * @return Sampler
+     */
+    public AliasSampler<T> sampler() {
+        AliasSampler<T> result = sampler;
+
+        if (result == null) {
+            result = createSampler();
+            sampler = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Makes the sample immutable, so that it can be shared. Adding values to a frozen sample throws an exception.
+     * @return This instance
+     */
+    public DiscreteSample<T> freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * @return True if the sample is immutable
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return Identifier of a canonical sample (see {@link Interner}), or 0 if the sample is not canonical
+     */
+    public long getCanonicalId() {
+        return canonicalId;
+    }
+
+    /**
+     * Makes the sample canonical. Canonical samples are always frozen.
+     * @param id Identifier of the canonical sample
+     */
+    void makeCanonical(long id) {
+        freeze();
+        canonicalId = id;
+    }
+
+    /**
+     * Throws an exception if the sample is frozen. Called before the sample is modified.
+     */
+    protected void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Sample is immutable");
+        }
+    }
+
+    /**
+     * Discards the cached data derived from the values. Called whenever the sample changes.
+     */
+    protected void modified() {
+        sampler = null;
+    }
+
+    /**
+     * Builds a sampler for the current values
+     * @return Sampler
+     */
+    protected AliasSampler<T> createSampler() {
+        List<T> keys = new ArrayList<>(values.keySet());
+        double[] weights = new double[keys.size()];
+
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = values.get(keys.get(i));
+        }
+
+        return new AliasSampler<>(keys, weights);
+    }
+
+    /**
+     * Formats one value of the sample the way it is printed in the program output
+     * @param value Value
+     * @param probability Probability of the value
+     * @return Formatted value
+     */
+    protected static String formatValue(Object value, float probability) {
+        return String.format("%s %d%%", value, (int) (probability * 100));
+    }
+
+    /**
+     * Wraps formatted values of the sample
+     * @param content Formatted values separated with semicolons
+     * @return Formatted sample
+     */
+    protected static String formatSample(String content) {
+        return String.format("DiscreteSample{%s}", content);
+    }
+
+    /**
+     * Samples are equal if they contain the same values with the same probabilities
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        return values.equals(((DiscreteSample<?>) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
     @Override
     public String toString() {
         String content = values
                 .entrySet().stream()
-                .map(entry -> String.format("%s %d%%", entry.getKey(), (int)(entry.getValue() * 100)))
+                .map(entry -> formatValue(entry.getKey(), entry.getValue()))
                 .collect(Collectors.joining("; "));
 
-        return String.format("DiscreteSample{%s}", content);
+        return formatSample(content);
     }
 }
@@ -2,6 +2,8 @@ package episcopal.discrete;
 
 import episcopal.Distribution;
 
+import java.util.Objects;
+
 /**
  * Flip distribution
  *
@@ -22,10 +24,26 @@ public class FlipDistribution implements Distribution {
      * @return Sample of the distribution
      */
     @Override
-    public DiscreteSample<Boolean> sample() {
-        DiscreteSample<Boolean> result = new DiscreteSample<>();
-        result.add(true, p);
-        result.add(false, 1 - p);
-        return result;
+    public BoolDiscreteSample sample() {
+        return new BoolDiscreteSample().add(true, p).add(false, 1 - p);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        FlipDistribution other = (FlipDistribution) o;
+        return Float.compare(p, other.p) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(p);
     }
 }
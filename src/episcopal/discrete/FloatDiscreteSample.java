@@ -0,0 +1,425 @@
+package episcopal.discrete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Discrete sample of floating point values
+ *
+ * The values and their probabilities are stored in two primitive arrays in the order they were added, so neither the
+ * values nor the probabilities are boxed. Samples with more than a few values index the arrays by an open-addressing
+ * hash table with linear probing, which stores the position of each value in the arrays. Small samples, like constants,
+ * are searched linearly and do not need any hashing.
+ *
+ * Values are compared by their bits, the same way as {@link Float#equals(Object)} compares them. This means that NaN
+ * equals NaN, and that 0.0 and -0.0 are different values.
+ *
+ * Samples containing a single value are point masses. {@link #point(float)} returns immutable point masses.
+ *
+ * The entries can be iterated with {@link #size()}, {@link #keyAt(int)} and {@link #weightAt(int)}.
+ */
+public class FloatDiscreteSample extends DiscreteSample<Float> {
+    private float[] keys;
+    private double[] weights;
+    private int size;
+
+    /**
+     * Hash table with positions of the values in the arrays, plus one. Zero marks an empty slot. The table exists only
+     * when the arrays have space for more than {@link Hashing#LINEAR_LIMIT} values.
+     */
+    private int[] table;
+
+    /**
+     * Sorted values with prefix sums, created on demand and discarded when the sample changes
+     */
+    private SortedFloatSupport sorted;
+
+    /**
+     * Creates an empty sample
+     */
+    public FloatDiscreteSample() {
+        this(Hashing.MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty sample with space for the specified number of values
+     * @param expectedSize Expected number of values
+     */
+    public FloatDiscreteSample(int expectedSize) {
+        super(null);
+        int capacity = Math.max(expectedSize, Hashing.MIN_CAPACITY);
+        keys = new float[capacity];
+        weights = new double[capacity];
+        rebuildTable();
+    }
+
+    /**
+     * Creates a sample with the specified values
+     * @param keys Values
+     * @param weights Probabilities of the values
+     */
+    private FloatDiscreteSample(float[] keys, double[] weights) {
+        super(null);
+        this.keys = keys;
+        this.weights = weights;
+        this.size = keys.length;
+        rebuildTable();
+    }
+
+    /**
+     * Creates a sample containing the specified value with 100% probability
+     * @param value Value
+     * @return Sample with the value
+     */
+    public static FloatDiscreteSample create(float value) {
+        return new FloatDiscreteSample(new float[]{value}, new double[]{1});
+    }
+
+    /**
+     * Returns an immutable sample containing the specified value with 100% probability
+     * @param value Value
+     * @return Immutable sample with the value
+     */
+    public static FloatDiscreteSample point(float value) {
+        return create(value).freeze();
+    }
+
+    /**
+     * Returns an immutable sample containing only the specified value
+     * @param value Value
+     * @param probability Probability of the value
+     * @return Immutable sample with the value
+     */
+    public static FloatDiscreteSample point(float value, double probability) {
+        return new FloatDiscreteSample(new float[]{value}, new double[]{probability}).freeze();
+    }
+
+    /**
+     * Converts a discrete sample of integers to the primitive representation. Primitive samples are returned as they
+     * are, other samples are copied.
+     * @param sample Discrete sample of integers
+     * @return Primitive sample with the same values
+     */
+    public static FloatDiscreteSample of(DiscreteSample<Float> sample) {
+        if (sample instanceof FloatDiscreteSample) {
+            return (FloatDiscreteSample) sample;
+        }
+
+        Set<Float> values = sample.values();
+        FloatDiscreteSample result = new FloatDiscreteSample(values.size());
+
+        for (Float value : values) {
+            result.add(value, sample.get(value));
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a new value to the sample with the specified probability
+     * @param value Value
+     * @param probability Probability of the value
+     * @return This instance
+     */
+    public FloatDiscreteSample add(float value, double probability) {
+        checkMutable();
+        modified();
+
+        if (table == null) {
+            return addLinear(value, probability);
+        }
+
+        int bits = Float.floatToIntBits(value);
+        int mask = table.length - 1;
+        int slot = Hashing.mix(bits) & mask;
+
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+
+            if (Float.floatToIntBits(keys[index]) == bits) {
+                weights[index] += probability;
+                return this;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            grow();
+            return add(value, probability);
+        }
+
+        keys[size] = value;
+        weights[size] = probability;
+        table[slot] = ++size;
+        return this;
+    }
+
+    /**
+     * @param value Value
+     * @return Probability of the value, or 0 if it is not in the sample
+     */
+    public double probability(float value) {
+        int index = indexOf(value);
+        return index < 0 ? 0 : weights[index];
+    }
+
+    /**
+     * @param value Value
+     * @return True if the value is in the sample
+     */
+    public boolean contains(float value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * @return Number of values in the sample
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Value of a point mass sample
+     * @throws IllegalStateException Thrown if the sample does not contain exactly one value
+     */
+    public float pointValue() {
+        if (size != 1) {
+            throw new IllegalStateException("Sample is not a point mass");
+        }
+
+        return keys[0];
+    }
+
+    /**
+     * @param index Position of the value, between 0 and {@link #size()}
+     * @return Value at the position
+     */
+    public float keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index Position of the value, between 0 and {@link #size()}
+     * @return Probability of the value at the position
+     */
+    public double weightAt(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Returns the values of the sample sorted in ascending order, with prefix sums of their probabilities. The sorted
+     * values are cached until the sample changes.
+     * @return Sorted values
+     */
+    public SortedFloatSupport sorted() {
+        SortedFloatSupport result = sorted;
+
+        if (result == null) {
+            result = new SortedFloatSupport(this);
+            sorted = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public FloatDiscreteSample add(Float value, float probability) {
+        return add((float) value, probability);
+    }
+
+    @Override
+    public float get(Float value) {
+        return (float) probability(value);
+    }
+
+    @Override
+    public Set<Float> values() {
+        Set<Float> result = new HashSet<>();
+
+        for (int i = 0; i < size; i++) {
+            result.add(keys[i]);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Float single() {
+        return size == 1 ? keys[0] : null;
+    }
+
+    @Override
+    public boolean isPoint() {
+        return size == 1;
+    }
+
+    @Override
+    public FloatDiscreteSample freeze() {
+        super.freeze();
+        return this;
+    }
+
+    @Override
+    protected void modified() {
+        super.modified();
+        sorted = null;
+    }
+
+    @Override
+    protected AliasSampler<Float> createSampler() {
+        List<Float> values = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            values.add(keys[i]);
+        }
+
+        return new AliasSampler<>(values, Arrays.copyOf(weights, size));
+    }
+
+    /**
+     * Samples are equal if they contain the same values with the same probabilities, regardless of their
+     * representation and of the order of the values
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof FloatDiscreteSample)) {
+            return false;
+        }
+
+        FloatDiscreteSample other = (FloatDiscreteSample) o;
+
+        if (size() != other.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < size(); i++) {
+            if (!other.contains(keyAt(i)) ||
+                    Double.doubleToLongBits(weightAt(i)) != Double.doubleToLongBits(other.probability(keyAt(i)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        // the sum does not depend on the order of the values
+        for (int i = 0; i < size(); i++) {
+            hash += Float.hashCode(keyAt(i)) ^ Double.hashCode(weightAt(i));
+        }
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        String content = IntStream.range(0, size).boxed()
+                .map(i -> formatValue(keys[i], (float) weights[i]))
+                .collect(Collectors.joining("; "));
+
+        return formatSample(content);
+    }
+
+    /**
+     * Finds the position of the value in the arrays
+     * @param value Value
+     * @return Position of the value, or -1 if it is not in the sample
+     */
+    private int indexOf(float value) {
+        int bits = Float.floatToIntBits(value);
+
+        if (table == null) {
+            for (int i = 0; i < size; i++) {
+                if (Float.floatToIntBits(keys[i]) == bits) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        int mask = table.length - 1;
+
+        for (int slot = Hashing.mix(bits) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+
+            if (Float.floatToIntBits(keys[index]) == bits) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a value to a small sample without a hash table
+     * @param value Value
+     * @param probability Probability of the value
+     * @return This instance
+     */
+    private FloatDiscreteSample addLinear(float value, double probability) {
+        int index = indexOf(value);
+
+        if (index >= 0) {
+            weights[index] += probability;
+            return this;
+        }
+
+        if (size == keys.length) {
+            grow();
+            return add(value, probability);
+        }
+
+        keys[size] = value;
+        weights[size++] = probability;
+        return this;
+    }
+
+    /**
+     * Doubles the capacity of the arrays and rebuilds the hash table
+     */
+    private void grow() {
+        int capacity = Math.max(keys.length * 2, Hashing.MIN_CAPACITY);
+        keys = Arrays.copyOf(keys, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        rebuildTable();
+    }
+
+    /**
+     * Creates a hash table for the current capacity of the arrays and indexes all values in it. Small samples are left
+     * without a table.
+     */
+    private void rebuildTable() {
+        if (keys.length <= Hashing.LINEAR_LIMIT) {
+            table = null;
+            return;
+        }
+
+        table = new int[Hashing.tableSize(keys.length)];
+
+        int mask = table.length - 1;
+
+        for (int i = 0; i < size; i++) {
+            int slot = Hashing.mix(Float.floatToIntBits(keys[i])) & mask;
+
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = i + 1;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FloatDiscreteSampleTest {
+    @Test
+    public void add() throws Exception {
+        FloatDiscreteSample s = new FloatDiscreteSample();
+        s.add(1.5f, 0.2);
+        s.add(1.5f, 0.4);
+        s.add(2.5f, 0.4);
+
+        assertEquals(0.6, s.probability(1.5f), 0.001);
+        assertEquals(0.4, s.probability(2.5f), 0.001);
+        assertEquals(2, s.size());
+    }
+
+    @Test
+    public void bitwiseEquality() throws Exception {
+        FloatDiscreteSample s = new FloatDiscreteSample().add(0f, 0.5).add(-0f, 0.5).add(Float.NaN, 0.1).add(Float.NaN, 0.1);
+
+        assertEquals(3, s.size());
+        assertEquals(0.5, s.probability(-0f), 0.001);
+        assertEquals(0.2, s.probability(Float.NaN), 0.001);
+    }
+
+    @Test
+    public void single() throws Exception {
+        assertEquals(1.5f, FloatDiscreteSample.create(1.5f).single(), 0.001f);
+        assertNull(new FloatDiscreteSample().add(1, 0.3).add(2, 0.7).single());
+    }
+
+}
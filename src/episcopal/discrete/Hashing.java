@@ -0,0 +1,44 @@
+package episcopal.discrete;
+
+/**
+ * Helpers shared by the open-addressing hash tables of the primitive discrete samples.
+ */
+class Hashing {
+    /**
+     * Smallest number of entries the primitive samples allocate space for
+     */
+    static final int MIN_CAPACITY = 4;
+
+    /**
+     * Largest capacity of a sample that is searched linearly instead of using a hash table
+     */
+    static final int LINEAR_LIMIT = 8;
+
+    /**
+     * Scrambles the bits of a hash code, so that consecutive values do not end up in consecutive slots
+     * @param h Hash code
+     * @return Mixed hash code
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Calculates the size of a hash table that can index the specified number of entries. The table is a power of two
+     * and is kept at most half full, which keeps the linear probe sequences short.
+     * @param entries Number of entries
+     * @return Number of slots in the table
+     */
+    static int tableSize(int entries) {
+        if (entries > 1 << 29) {
+            throw new IllegalArgumentException("Discrete sample is too large");
+        }
+
+        return Integer.highestOneBit(Math.max(entries, MIN_CAPACITY) * 2 - 1) << 1;
+    }
+}
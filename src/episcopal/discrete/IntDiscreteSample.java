@@ -0,0 +1,645 @@
+package episcopal.discrete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Discrete sample of integer values
+ *
+ * The values and their probabilities are stored in two primitive arrays in the order they were added, so neither the
+ * values nor the probabilities are boxed. Samples with more than a few values index the arrays by an open-addressing
+ * hash table with linear probing, which stores the position of each value in the arrays. Small samples, like constants
+ * and samples of Bernoulli distributions, are searched linearly and do not need any hashing.
+ *
+ * When the values cover a contiguous range of integers without gaps, the sample can switch to a dense representation
+ * (see {@link #compact()}). A dense sample stores only the smallest value and an array with the probability of each
+ * integer in the range.
+ *
+ * Samples containing a single value are point masses. {@link #point(int)} returns immutable point masses, which are
+ * shared for small values.
+ *
+ * The entries can be iterated with {@link #size()}, {@link #keyAt(int)} and {@link #weightAt(int)}.
+ */
+public class IntDiscreteSample extends DiscreteSample<Integer> {
+    /**
+     * Values of the sample, or null if the sample is dense
+     */
+    private int[] keys;
+    private double[] weights;
+    private int size;
+
+    /**
+     * Smallest value of a dense sample
+     */
+    private int offset;
+
+    /**
+     * Hash table with positions of the values in the arrays, plus one. Zero marks an empty slot. The table exists only
+     * when the arrays have space for more than {@link Hashing#LINEAR_LIMIT} values, and dense samples have no table.
+     */
+    private int[] table;
+
+    /**
+     * Sorted values with prefix sums, created on demand and discarded when the sample changes
+     */
+    private SortedIntSupport sorted;
+
+    /**
+     * Creates an empty sample
+     */
+    public IntDiscreteSample() {
+        this(Hashing.MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty sample with space for the specified number of values
+     * @param expectedSize Expected number of values
+     */
+    public IntDiscreteSample(int expectedSize) {
+        super(null);
+        int capacity = Math.max(expectedSize, Hashing.MIN_CAPACITY);
+        keys = new int[capacity];
+        weights = new double[capacity];
+        rebuildTable();
+    }
+
+    /**
+     * Creates a sample with the specified values. Also used by subclasses with their own storage, which pass empty
+     * arrays.
+     * @param keys Values
+     * @param weights Probabilities of the values
+     */
+    IntDiscreteSample(int[] keys, double[] weights) {
+        super(null);
+        this.keys = keys;
+        this.weights = weights;
+        this.size = keys.length;
+        rebuildTable();
+    }
+
+    /**
+     * Creates a dense sample
+     * @param offset Smallest value
+     * @param weights Probabilities of the values
+     */
+    private IntDiscreteSample(int offset, double[] weights) {
+        super(null);
+        this.offset = offset;
+        this.weights = weights;
+        this.size = weights.length;
+    }
+
+    /**
+     * Creates a sample containing the specified value with 100% probability
+     * @param value Value
+     * @return Sample with the value
+     */
+    public static IntDiscreteSample create(int value) {
+        return new IntDiscreteSample(new int[]{value}, new double[]{1});
+    }
+
+    /**
+     * Returns an immutable sample containing the specified value with 100% probability. Samples of small values are
+     * shared, so no memory is allocated for them.
+     * @param value Value
+     * @return Immutable sample with the value
+     */
+    public static IntDiscreteSample point(int value) {
+        if (value >= Points.MIN && value <= Points.MAX) {
+            return Points.CACHE[value - Points.MIN];
+        }
+
+        return create(value).freeze();
+    }
+
+    /**
+     * Returns an immutable sample containing only the specified value
+     * @param value Value
+     * @param probability Probability of the value
+     * @return Immutable sample with the value
+     */
+    public static IntDiscreteSample point(int value, double probability) {
+        if (probability == 1) {
+            return point(value);
+        }
+
+        return new IntDiscreteSample(new int[]{value}, new double[]{probability}).freeze();
+    }
+
+    /**
+     * Creates a dense sample of a contiguous range of integers
+     * @param offset Smallest value in the range
+     * @param weights Probability of each value in the range, starting with the smallest one. The probabilities have to
+     *                be positive, as every integer in the range is in the sample. The array is used by the sample, not
+     *                copied.
+     * @return Dense sample
+     */
+    public static IntDiscreteSample range(int offset, double[] weights) {
+        if ((long) offset + weights.length - 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Range exceeds the integer values");
+        }
+
+        return new IntDiscreteSample(offset, weights);
+    }
+
+    /**
+     * Creates an empty sample for a result that can grow to the specified number of values. Samples that can grow
+     * beyond the off-heap threshold of {@link SampleStorage} are stored off the heap.
+     * @param expectedSize Expected number of values
+     * @param maximumSize Largest number of values the sample can grow to
+     * @return Empty sample
+     */
+    public static IntDiscreteSample allocate(int expectedSize, long maximumSize) {
+        if (SampleStorage.useOffHeap(maximumSize)) {
+            return new OffHeapIntDiscreteSample(expectedSize);
+        }
+
+        return new IntDiscreteSample(expectedSize);
+    }
+
+    /**
+     * Converts a discrete sample of integers to the primitive representation. Primitive samples are returned as they
+     * are, other samples are copied.
+     * @param sample Discrete sample of integers
+     * @return Primitive sample with the same values
+     */
+    public static IntDiscreteSample of(DiscreteSample<Integer> sample) {
+        if (sample instanceof IntDiscreteSample) {
+            return (IntDiscreteSample) sample;
+        }
+
+        Set<Integer> values = sample.values();
+        IntDiscreteSample result = new IntDiscreteSample(values.size());
+
+        for (Integer value : values) {
+            result.add(value, sample.get(value));
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a new value to the sample with the specified probability
+     * @param value Value
+     * @param probability Probability of the value
+     * @return This instance
+     */
+    public IntDiscreteSample add(int value, double probability) {
+        checkMutable();
+        modified();
+
+        if (keys == null) {
+            long index = (long) value - offset;
+
+            if (index >= 0 && index < size) {
+                weights[(int) index] += probability;
+                return this;
+            }
+
+            sparsify();
+        }
+
+        if (table == null) {
+            return addLinear(value, probability);
+        }
+
+        int mask = table.length - 1;
+        int slot = Hashing.mix(value) & mask;
+
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+
+            if (keys[index] == value) {
+                weights[index] += probability;
+                return this;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            grow();
+            return add(value, probability);
+        }
+
+        keys[size] = value;
+        weights[size] = probability;
+        table[slot] = ++size;
+        return this;
+    }
+
+    /**
+     * @param value Value
+     * @return Probability of the value, or 0 if it is not in the sample
+     */
+    public double probability(int value) {
+        if (keys == null) {
+            long index = (long) value - offset;
+            return index >= 0 && index < size ? weights[(int) index] : 0;
+        }
+
+        int index = indexOf(value);
+        return index < 0 ? 0 : weights[index];
+    }
+
+    /**
+     * @param value Value
+     * @return True if the value is in the sample
+     */
+    public boolean contains(int value) {
+        if (keys == null) {
+            long index = (long) value - offset;
+            return index >= 0 && index < size;
+        }
+
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * @return True if the sample uses the dense representation
+     */
+    public boolean isDense() {
+        return keys == null;
+    }
+
+    /**
+     * Switches the sample to the dense representation if its values form a range without gaps
+     * @return This instance
+     */
+    public IntDiscreteSample compact() {
+        if (keys == null || size < 2 || isFrozen()) {
+            return this;
+        }
+
+        double[] dense = denseWeights();
+
+        if (dense == null) {
+            return this;
+        }
+
+        offset = minKey();
+        keys = null;
+        table = null;
+        weights = dense;
+        size = dense.length;
+        return this;
+    }
+
+    /**
+     * @return Number of values in the sample
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Value of a point mass sample
+     * @throws IllegalStateException Thrown if the sample does not contain exactly one value
+     */
+    public int pointValue() {
+        if (size() != 1) {
+            throw new IllegalStateException("Sample is not a point mass");
+        }
+
+        return keyAt(0);
+    }
+
+    /**
+     * @param index Position of the value, between 0 and {@link #size()}
+     * @return Value at the position
+     */
+    public int keyAt(int index) {
+        return keys == null ? offset + index : keys[index];
+    }
+
+    /**
+     * @param index Position of the value, between 0 and {@link #size()}
+     * @return Probability of the value at the position
+     */
+    public double weightAt(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Returns the values of the sample sorted in ascending order, with prefix sums of their probabilities. The sorted
+     * values are cached until the sample changes.
+     * @return Sorted values
+     */
+    public SortedIntSupport sorted() {
+        SortedIntSupport result = sorted;
+
+        if (result == null) {
+            result = new SortedIntSupport(this);
+            sorted = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public IntDiscreteSample add(Integer value, float probability) {
+        return add((int) value, probability);
+    }
+
+    @Override
+    public float get(Integer value) {
+        return (float) probability(value);
+    }
+
+    @Override
+    public Set<Integer> values() {
+        Set<Integer> result = new HashSet<>();
+
+        for (int i = 0; i < size(); i++) {
+            result.add(keyAt(i));
+        }
+
+        return result;
+    }
+
+    @Override
+    public Integer single() {
+        return size() == 1 ? keyAt(0) : null;
+    }
+
+    @Override
+    public boolean isPoint() {
+        return size() == 1;
+    }
+
+    @Override
+    public IntDiscreteSample freeze() {
+        super.freeze();
+        return this;
+    }
+
+    /**
+     * Samples are equal if they contain the same values with the same probabilities, regardless of their
+     * representation and of the order of the values
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof IntDiscreteSample)) {
+            return false;
+        }
+
+        IntDiscreteSample other = (IntDiscreteSample) o;
+
+        if (size() != other.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < size(); i++) {
+            if (!other.contains(keyAt(i)) ||
+                    Double.doubleToLongBits(weightAt(i)) != Double.doubleToLongBits(other.probability(keyAt(i)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        // the sum does not depend on the order of the values
+        for (int i = 0; i < size(); i++) {
+            hash += Integer.hashCode(keyAt(i)) ^ Double.hashCode(weightAt(i));
+        }
+
+        return hash;
+    }
+
+    /**
+     * Prints the values in ascending order, whatever the representation and the order in which they were added
+     */
+    @Override
+    public String toString() {
+        String content = IntStream.range(0, size()).boxed()
+                .sorted((a, b) -> Integer.compare(keyAt(a), keyAt(b)))
+                .map(i -> formatValue(keyAt(i), (float) weightAt(i)))
+                .collect(Collectors.joining("; "));
+
+        return formatSample(content);
+    }
+
+    @Override
+    protected void modified() {
+        super.modified();
+        sorted = null;
+    }
+
+    @Override
+    protected AliasSampler<Integer> createSampler() {
+        List<Integer> keys = new ArrayList<>(size());
+        double[] weights = new double[size()];
+
+        for (int i = 0; i < weights.length; i++) {
+            keys.add(keyAt(i));
+            weights[i] = weightAt(i);
+        }
+
+        return new AliasSampler<>(keys, weights);
+    }
+
+    /**
+     * @return Smallest value in the sample
+     */
+    int minKey() {
+        if (keys == null) {
+            return offset;
+        }
+
+        int min = Integer.MAX_VALUE;
+
+        for (int i = 0; i < size(); i++) {
+            min = Math.min(min, keyAt(i));
+        }
+
+        return min;
+    }
+
+    /**
+     * @return Largest value in the sample
+     */
+    int maxKey() {
+        if (keys == null) {
+            return offset + size - 1;
+        }
+
+        int max = Integer.MIN_VALUE;
+
+        for (int i = 0; i < size(); i++) {
+            max = Math.max(max, keyAt(i));
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns the probabilities of all integers between the smallest and the largest value of the sample. Dense
+     * samples return their own array, which must not be modified.
+     * @return Probabilities starting with the smallest value, or null if the values have gaps
+     */
+    double[] denseWeights() {
+        if (keys == null) {
+            return weights;
+        }
+
+        int count = size();
+
+        if (count == 0) {
+            return null;
+        }
+
+        int min = minKey();
+        long span = (long) maxKey() - min + 1;
+
+        // integers missing from the range would show up in a dense sample with zero probability
+        if (span != count) {
+            return null;
+        }
+
+        double[] dense = new double[(int) span];
+
+        for (int i = 0; i < count; i++) {
+            dense[keyAt(i) - min] = weightAt(i);
+        }
+
+        return dense;
+    }
+
+    /**
+     * @return True if the sample is not empty and is dense or its values form a range without gaps
+     */
+    boolean fitsDense() {
+        return keys == null ? size > 0 : size() > 0 && (long) maxKey() - minKey() + 1 == size();
+    }
+
+    /**
+     * Finds the position of the value in the arrays
+     * @param value Value
+     * @return Position of the value, or -1 if it is not in the sample
+     */
+    private int indexOf(int value) {
+        if (table == null) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == value) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        int mask = table.length - 1;
+
+        for (int slot = Hashing.mix(value) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+
+            if (keys[index] == value) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a value to a small sample without a hash table
+     * @param value Value
+     * @param probability Probability of the value
+     * @return This instance
+     */
+    private IntDiscreteSample addLinear(int value, double probability) {
+        int index = indexOf(value);
+
+        if (index >= 0) {
+            weights[index] += probability;
+            return this;
+        }
+
+        if (size == keys.length) {
+            grow();
+            return add(value, probability);
+        }
+
+        keys[size] = value;
+        weights[size++] = probability;
+        return this;
+    }
+
+    /**
+     * Switches a dense sample back to the hash table representation
+     */
+    private void sparsify() {
+        keys = new int[Math.max(size, Hashing.MIN_CAPACITY)];
+
+        for (int i = 0; i < size; i++) {
+            keys[i] = offset + i;
+        }
+
+        weights = Arrays.copyOf(weights, keys.length);
+        rebuildTable();
+    }
+
+    /**
+     * Doubles the capacity of the arrays and rebuilds the hash table
+     */
+    private void grow() {
+        int capacity = Math.max(keys.length * 2, Hashing.MIN_CAPACITY);
+        keys = Arrays.copyOf(keys, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        rebuildTable();
+    }
+
+    /**
+     * Creates a hash table for the current capacity of the arrays and indexes all values in it. Small samples are left
+     * without a table.
+     */
+    private void rebuildTable() {
+        if (keys.length <= Hashing.LINEAR_LIMIT) {
+            table = null;
+            return;
+        }
+
+        table = new int[Hashing.tableSize(keys.length)];
+
+        int mask = table.length - 1;
+
+        for (int i = 0; i < size; i++) {
+            int slot = Hashing.mix(keys[i]) & mask;
+
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Shared point masses of small values
+     */
+    private static class Points {
+        static final int MIN = -128;
+        static final int MAX = 127;
+        static final IntDiscreteSample[] CACHE = new IntDiscreteSample[MAX - MIN + 1];
+
+        static {
+            for (int i = 0; i < CACHE.length; i++) {
+                CACHE[i] = create(MIN + i).freeze();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class IntDiscreteSampleTest {
+    @Test
+    public void create() throws Exception {
+        IntDiscreteSample s = IntDiscreteSample.create(123);
+        assertEquals(1, s.probability(123), 0.001);
+        assertEquals(1, s.size());
+    }
+
+    @Test
+    public void add() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample();
+        s.add(123, 0.2);
+        s.add(123, 0.4);
+        s.add(456, 0.4);
+
+        assertEquals(0.6, s.probability(123), 0.001);
+        assertEquals(0.4, s.probability(456), 0.001);
+        assertEquals(0, s.probability(789), 0.001);
+        assertEquals(2, s.size());
+    }
+
+    @Test
+    public void grow() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample();
+
+        for (int i = -1000; i < 1000; i++) {
+            s.add(i, 0.0005);
+        }
+
+        assertEquals(2000, s.size());
+
+        for (int i = -1000; i < 1000; i++) {
+            assertTrue(s.contains(i));
+            assertEquals(0.0005, s.probability(i), 0.00001);
+        }
+
+        assertFalse(s.contains(1000));
+    }
+
+    @Test
+    public void entries() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(5, 0.3).add(7, 0.7);
+
+        assertEquals(5, s.keyAt(0));
+        assertEquals(0.3, s.weightAt(0), 0.001);
+        assertEquals(7, s.keyAt(1));
+        assertEquals(0.7, s.weightAt(1), 0.001);
+    }
+
+    @Test
+    public void values() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(123, 0.3).add(456, 0.6).add(789, 0.1);
+        assertEquals(new HashSet<>(Arrays.asList(123, 456, 789)), s.values());
+    }
+
+    @Test
+    public void single() throws Exception {
+        assertEquals(123, (int) IntDiscreteSample.create(123).single());
+        assertNull(new IntDiscreteSample().add(123, 0.3).add(456, 0.7).single());
+    }
+
+    @Test
+    public void of() throws Exception {
+        DiscreteSample<Integer> s = new DiscreteSample<Integer>().add(1, 0.25f).add(2, 0.75f);
+        IntDiscreteSample p = IntDiscreteSample.of(s);
+
+        assertEquals(0.25, p.probability(1), 0.001);
+        assertEquals(0.75, p.probability(2), 0.001);
+        assertSame(p, IntDiscreteSample.of(p));
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(2, 0.7f).add(1, 0.3f);
+        assertEquals("DiscreteSample{1 30%; 2 70%}", s.toString());
+    }
+
+    @Test
+    public void compact() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(3, 0.2).add(1, 0.3).add(2, 0.5).compact();
+
+        assertTrue(s.isDense());
+        assertEquals(3, s.size());
+        assertEquals(1, s.keyAt(0));
+        assertEquals(0.5, s.probability(2), 0.001);
+        assertEquals("DiscreteSample{1 30%; 2 50%; 3 20%}", s.toString());
+    }
+
+    @Test
+    public void compactWithGaps() throws Exception {
+        IntDiscreteSample s = new IntDiscreteSample().add(1, 0.5).add(3, 0.5).compact();
+        assertFalse(s.isDense());
+    }
+
+    @Test
+    public void addOutsideDenseRange() throws Exception {
+        IntDiscreteSample s = IntDiscreteSample.range(10, new double[]{0.25, 0.25});
+        s.add(11, 0.25);
+        assertTrue(s.isDense());
+
+        s.add(20, 0.25);
+        assertFalse(s.isDense());
+        assertEquals(3, s.size());
+        assertEquals(0.5, s.probability(11), 0.001);
+        assertEquals(0.25, s.probability(20), 0.001);
+    }
+
+    @Test
+    public void point() throws Exception {
+        IntDiscreteSample s = IntDiscreteSample.point(5);
+
+        assertTrue(s.isPoint());
+        assertTrue(s.isFrozen());
+        assertEquals(5, s.pointValue());
+        assertSame(s, IntDiscreteSample.point(5));
+        assertEquals(1000, IntDiscreteSample.point(1000).pointValue());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void addToPoint() throws Exception {
+        IntDiscreteSample.point(5).add(6, 0.5);
+    }
+
+    @Test
+    public void linearToHashed() throws Exception {
+        IntDiscreteSample s = IntDiscreteSample.create(0);
+
+        for (int i = 1; i < 20; i++) {
+            s.add(i * 7, 0.05);
+        }
+
+        assertEquals(20, s.size());
+        assertEquals(1, s.probability(0), 0.001);
+        assertEquals(0.05, s.probability(133), 0.001);
+        assertFalse(s.contains(1));
+    }
+
+    @Test
+    public void structuralEquality() throws Exception {
+        IntDiscreteSample sparse = new IntDiscreteSample().add(2, 0.25).add(1, 0.5).add(3, 0.25);
+        IntDiscreteSample dense = IntDiscreteSample.range(1, new double[]{0.5, 0.25, 0.25});
+        IntDiscreteSample other = new IntDiscreteSample().add(1, 0.5).add(2, 0.5);
+
+        assertEquals(sparse, dense);
+        assertEquals(sparse.hashCode(), dense.hashCode());
+        assertNotEquals(sparse, other);
+    }
+}
@@ -0,0 +1,84 @@
+package episcopal.discrete;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hash-consing of discrete samples
+ *
+ * The interner keeps one canonical instance of each distinct sample. Interning a sample returns the canonical sample
+ * equal to it, or makes the sample itself canonical if there is none. Canonical samples are frozen and get a unique
+ * identifier (see {@link DiscreteSample#getCanonicalId()}), so that they can be compared and used as keys by their
+ * identifiers instead of their contents. The content hash of a canonical sample is computed once, when it is interned,
+ * and it is stable because the sample cannot change.
+ *
+ * The canonical samples are held through weak references, so the interner does not keep alive samples that are not
+ * used anywhere else. Identifiers are unique across all interners and are never reused, even after their samples are
+ * collected.
+ */
+public class Interner {
+    private static final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * Canonical samples, mapped to weak references to themselves
+     */
+    private final Map<DiscreteSample<?>, WeakReference<DiscreteSample<?>>> samples = new WeakHashMap<>();
+
+    /**
+     * @param sample Integer sample
+     * @return Canonical sample equal to the sample
+     */
+    public IntDiscreteSample intern(IntDiscreteSample sample) {
+        return (IntDiscreteSample) canonical(sample);
+    }
+
+    /**
+     * @param sample Float sample
+     * @return Canonical sample equal to the sample
+     */
+    public FloatDiscreteSample intern(FloatDiscreteSample sample) {
+        return (FloatDiscreteSample) canonical(sample);
+    }
+
+    /**
+     * @param sample Boolean sample
+     * @return Canonical sample equal to the sample
+     */
+    public BoolDiscreteSample intern(BoolDiscreteSample sample) {
+        return (BoolDiscreteSample) canonical(sample);
+    }
+
+    /**
+     * @return Number of canonical samples that were not collected yet
+     */
+    public synchronized int size() {
+        return samples.size();
+    }
+
+    /**
+     * Finds the canonical sample equal to the sample. Equal samples are always of the same primitive sample class, so
+     * the result can be cast to the class of the sample.
+     * @param sample Sample
+     * @return Canonical sample, which is the sample itself if there was no equal canonical sample
+     */
+    private DiscreteSample<?> canonical(DiscreteSample<?> sample) {
+        if (sample.getCanonicalId() != 0) {
+            return sample;
+        }
+
+        synchronized (this) {
+            WeakReference<DiscreteSample<?>> reference = samples.get(sample);
+            DiscreteSample<?> canonical = reference == null ? null : reference.get();
+
+            if (canonical != null) {
+                return canonical;
+            }
+
+            sample.makeCanonical(lastId.incrementAndGet());
+            samples.put(sample, new WeakReference<>(sample));
+            return sample;
+        }
+    }
+}
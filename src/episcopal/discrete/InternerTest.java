@@ -0,0 +1,45 @@
+package episcopal.discrete;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InternerTest {
+    @Test
+    public void canonicalSample() throws Exception {
+        Interner interner = new Interner();
+        IntDiscreteSample first = interner.intern(new IntDiscreteSample().add(1, 0.5).add(2, 0.5));
+        IntDiscreteSample second = interner.intern(new IntDiscreteSample().add(2, 0.5).add(1, 0.5));
+
+        assertSame(first, second);
+        assertTrue(first.isFrozen());
+        assertNotEquals(0, first.getCanonicalId());
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    public void distinctSamples() throws Exception {
+        Interner interner = new Interner();
+        FloatDiscreteSample half = interner.intern(new FloatDiscreteSample().add(0.5f, 1));
+        FloatDiscreteSample quarter = interner.intern(new FloatDiscreteSample().add(0.25f, 1));
+        BoolDiscreteSample bool = interner.intern(new BoolDiscreteSample().add(true, 1));
+
+        assertNotSame(half, quarter);
+        assertNotEquals(half.getCanonicalId(), quarter.getCanonicalId());
+        assertNotEquals(half.getCanonicalId(), bool.getCanonicalId());
+        assertEquals(0, new IntDiscreteSample().getCanonicalId());
+    }
+
+    @Test
+    public void weakReferences() throws Exception {
+        Interner interner = new Interner();
+        interner.intern(new IntDiscreteSample().add(1, 1));
+
+        for (int i = 0; i < 100 && interner.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, interner.size());
+    }
+}
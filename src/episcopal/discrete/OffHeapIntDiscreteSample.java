@@ -0,0 +1,183 @@
+package episcopal.discrete;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Discrete sample of integer values stored outside of the Java heap
+ *
+ * The sample has the same layout as {@link IntDiscreteSample}: values and probabilities in insertion order, indexed
+ * by an open-addressing hash table. The three arrays are off-heap blocks allocated by {@link SampleStorage}, either
+ * in memory or in memory-mapped temporary files. The memory is returned to the budget when the sample grows or
+ * becomes unreachable.
+ *
+ * The operators create off-heap samples for results that may have more values than the off-heap threshold.
+ */
+public class OffHeapIntDiscreteSample extends IntDiscreteSample {
+    private final Allocation allocation = new Allocation();
+    private ByteBuffer keys;
+    private ByteBuffer weights;
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+
+    /**
+     * Creates an empty sample with space for the specified number of values
+     * @param expectedSize Expected number of values
+     */
+    public OffHeapIntDiscreteSample(int expectedSize) {
+        super(new int[0], new double[0]);
+        SampleStorage.onCleanup(this, allocation);
+        allocate(Math.max(expectedSize, Hashing.MIN_CAPACITY));
+    }
+
+    @Override
+    public OffHeapIntDiscreteSample add(int value, double probability) {
+        checkMutable();
+        modified();
+
+        int mask = capacity(table) - 1;
+        int slot = Hashing.mix(value) & mask;
+
+        while (table.getInt(slot * 4) != 0) {
+            int index = table.getInt(slot * 4) - 1;
+
+            if (keys.getInt(index * 4) == value) {
+                weights.putDouble(index * 8, weights.getDouble(index * 8) + probability);
+                return this;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == capacity) {
+            grow();
+            return add(value, probability);
+        }
+
+        keys.putInt(size * 4, value);
+        weights.putDouble(size * 8, probability);
+        table.putInt(slot * 4, ++size);
+        return this;
+    }
+
+    @Override
+    public double probability(int value) {
+        int index = indexOf(value);
+        return index < 0 ? 0 : weights.getDouble(index * 8);
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int keyAt(int index) {
+        return keys.getInt(index * 4);
+    }
+
+    @Override
+    public double weightAt(int index) {
+        return weights.getDouble(index * 8);
+    }
+
+    /**
+     * Off-heap samples keep their representation
+     * @return This instance
+     */
+    @Override
+    public OffHeapIntDiscreteSample compact() {
+        return this;
+    }
+
+    @Override
+    public OffHeapIntDiscreteSample freeze() {
+        super.freeze();
+        return this;
+    }
+
+    private int indexOf(int value) {
+        int mask = capacity(table) - 1;
+
+        for (int slot = Hashing.mix(value) & mask; table.getInt(slot * 4) != 0; slot = (slot + 1) & mask) {
+            int index = table.getInt(slot * 4) - 1;
+
+            if (keys.getInt(index * 4) == value) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Allocates new blocks for the specified capacity, copies the values into them and indexes them
+     * @param newCapacity Number of values the blocks can hold
+     */
+    private void allocate(int newCapacity) {
+        int slots = Hashing.tableSize(newCapacity);
+        SampleStorage.Block newKeys = SampleStorage.allocate(newCapacity * 4L);
+        SampleStorage.Block newWeights = SampleStorage.allocate(newCapacity * 8L);
+        SampleStorage.Block newTable = SampleStorage.allocate(slots * 4L);
+
+        int mask = slots - 1;
+
+        for (int i = 0; i < size; i++) {
+            int key = keys.getInt(i * 4);
+            newKeys.buffer.putInt(i * 4, key);
+            newWeights.buffer.putDouble(i * 8, weights.getDouble(i * 8));
+
+            int slot = Hashing.mix(key) & mask;
+
+            while (newTable.buffer.getInt(slot * 4) != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            newTable.buffer.putInt(slot * 4, i + 1);
+        }
+
+        allocation.replace(newKeys, newWeights, newTable);
+        keys = newKeys.buffer;
+        weights = newWeights.buffer;
+        table = newTable.buffer;
+        capacity = newCapacity;
+    }
+
+    private void grow() {
+        if (capacity > Integer.MAX_VALUE / 16) {
+            throw new IllegalArgumentException("Discrete sample is too large");
+        }
+
+        allocate(capacity * 2);
+    }
+
+    private static int capacity(ByteBuffer table) {
+        return table.capacity() / 4;
+    }
+
+    /**
+     * Blocks currently used by a sample. Released when the sample grows or is collected.
+     */
+    private static class Allocation implements Runnable {
+        private SampleStorage.Block[] blocks = new SampleStorage.Block[0];
+
+        synchronized void replace(SampleStorage.Block... replacement) {
+            run();
+            blocks = replacement;
+        }
+
+        @Override
+        public synchronized void run() {
+            for (SampleStorage.Block block : blocks) {
+                block.release();
+            }
+
+            blocks = new SampleStorage.Block[0];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package episcopal.discrete;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapIntDiscreteSampleTest {
+    private long threshold;
+    private long budget;
+
+    @Before
+    public void setUp() throws Exception {
+        threshold = SampleStorage.getOffHeapThreshold();
+        budget = SampleStorage.getMemoryBudget();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SampleStorage.setOffHeapThreshold(threshold);
+        SampleStorage.setMemoryBudget(budget);
+    }
+
+    @Test
+    public void add() throws Exception {
+        IntDiscreteSample s = new OffHeapIntDiscreteSample(4);
+        s.add(123, 0.2);
+        s.add(123, 0.4);
+        s.add(456, 0.4);
+
+        assertEquals(0.6, s.probability(123), 0.001);
+        assertEquals(0.4, s.probability(456), 0.001);
+        assertEquals(0, s.probability(789), 0.001);
+        assertEquals(2, s.size());
+        assertEquals("DiscreteSample{123 60%; 456 40%}", s.toString());
+    }
+
+    @Test
+    public void grow() throws Exception {
+        IntDiscreteSample s = new OffHeapIntDiscreteSample(4);
+
+        for (int i = -1000; i < 1000; i++) {
+            s.add(i, 0.0005);
+        }
+
+        assertEquals(2000, s.size());
+
+        for (int i = -1000; i < 1000; i++) {
+            assertTrue(s.contains(i));
+            assertEquals(0.0005, s.probability(i), 0.00001);
+        }
+
+        assertFalse(s.contains(1000));
+    }
+
+    @Test
+    public void spill() throws Exception {
+        SampleStorage.setMemoryBudget(0);
+        long used = SampleStorage.getMemoryUsed();
+        IntDiscreteSample s = new OffHeapIntDiscreteSample(16);
+
+        for (int i = 0; i < 100; i++) {
+            s.add(i % 10, 0.01);
+        }
+
+        assertEquals(10, s.size());
+        assertEquals(0.1, s.probability(3), 0.001);
+        assertEquals(used, SampleStorage.getMemoryUsed());
+    }
+
+    @Test
+    public void allocate() throws Exception {
+        SampleStorage.setOffHeapThreshold(100);
+
+        assertFalse(IntDiscreteSample.allocate(4, 99) instanceof OffHeapIntDiscreteSample);
+        assertTrue(IntDiscreteSample.allocate(4, 100) instanceof OffHeapIntDiscreteSample);
+    }
+
+    @Test
+    public void compact() throws Exception {
+        IntDiscreteSample s = new OffHeapIntDiscreteSample(4).add(1, 0.5).add(2, 0.5).compact();
+
+        assertFalse(s.isDense());
+        assertTrue(Convolution.applicable(s, s));
+        assertEquals(0.25, Convolution.add(s, s).probability(2), 0.001);
+    }
+}
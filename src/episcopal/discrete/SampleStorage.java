@@ -0,0 +1,173 @@
+package episcopal.discrete;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides where the values of large samples are stored and allocates the off-heap memory for them
+ *
+ * Samples that may grow beyond the off-heap threshold are stored outside of the Java heap (see
+ * {@link OffHeapIntDiscreteSample}), so they do not exhaust the heap or slow down the garbage collector. Off-heap
+ * memory is allocated as direct buffers until the memory budget is used up. After that, the buffers are memory-mapped
+ * temporary files, which the operating system can write out to disk.
+ *
+ * The settings can be changed at run time or with the system properties episcopal.offHeapThreshold (number of values),
+ * episcopal.memoryBudget (bytes) and episcopal.spillDirectory.
+ */
+public class SampleStorage {
+    private static volatile long offHeapThreshold = Long.getLong("episcopal.offHeapThreshold", 1 << 20);
+    private static volatile long memoryBudget = Long.getLong("episcopal.memoryBudget", 256L << 20);
+    private static volatile Path spillDirectory = spillDirectoryProperty();
+
+    /**
+     * Off-heap memory currently allocated in direct buffers
+     */
+    private static final AtomicLong memoryUsed = new AtomicLong();
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /**
+     * @param values Number of values from which integer samples are stored off the heap
+     */
+    public static void setOffHeapThreshold(long values) {
+        offHeapThreshold = values;
+    }
+
+    /**
+     * @return Number of values from which integer samples are stored off the heap
+     */
+    public static long getOffHeapThreshold() {
+        return offHeapThreshold;
+    }
+
+    /**
+     * @param bytes Off-heap memory that can be allocated before samples are spilled into temporary files
+     */
+    public static void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+    }
+
+    /**
+     * @return Off-heap memory that can be allocated before samples are spilled into temporary files
+     */
+    public static long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @param directory Directory for the temporary files, or null for the default temporary directory
+     */
+    public static void setSpillDirectory(Path directory) {
+        spillDirectory = directory;
+    }
+
+    /**
+     * @return Off-heap memory currently allocated in direct buffers, not including the memory-mapped files
+     */
+    public static long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    /**
+     * @param maximumSize Largest number of values the sample can grow to
+     * @return True if the sample should be stored off the heap
+     */
+    static boolean useOffHeap(long maximumSize) {
+        return maximumSize >= offHeapThreshold;
+    }
+
+    /**
+     * Allocates an off-heap block of memory, filled with zeros. The block is a direct buffer if it fits into the
+     * memory budget, otherwise it is a memory-mapped temporary file.
+     * @param bytes Size of the block
+     * @return Allocated block
+     */
+    static Block allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Sample is too large");
+        }
+
+        if (memoryUsed.addAndGet(bytes) <= memoryBudget) {
+            return new Block(ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()), bytes);
+        }
+
+        memoryUsed.addAndGet(-bytes);
+        return new Block(map(bytes).order(ByteOrder.nativeOrder()), 0);
+    }
+
+    /**
+     * Registers an action run when the object becomes unreachable. The action must not refer to the object.
+     * @param object Object
+     * @param action Action
+     */
+    static void onCleanup(Object object, Runnable action) {
+        cleaner.register(object, action);
+    }
+
+    /**
+     * Maps a new temporary file into memory. The file is deleted right away, the mapping stays valid until the buffer
+     * is collected.
+     * @param bytes Size of the file
+     * @return Mapped buffer
+     */
+    private static ByteBuffer map(long bytes) {
+        try {
+            Path directory = spillDirectory;
+            Path file = directory == null
+                    ? Files.createTempFile("episcopal", ".sample")
+                    : Files.createTempFile(directory, "episcopal", ".sample");
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            } finally {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    // some systems do not allow deleting mapped files
+                    file.toFile().deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to spill sample to disk", e);
+        }
+    }
+
+    private static Path spillDirectoryProperty() {
+        String directory = System.getProperty("episcopal.spillDirectory");
+        return directory == null ? null : Paths.get(directory);
+    }
+
+    /**
+     * Block of off-heap memory
+     */
+    static class Block {
+        final ByteBuffer buffer;
+
+        /**
+         * Bytes counted against the memory budget
+         */
+        private long counted;
+
+        Block(ByteBuffer buffer, long counted) {
+            this.buffer = buffer;
+            this.counted = counted;
+        }
+
+        /**
+         * Returns the memory of the block to the budget. The buffer itself is freed when it is collected.
+         */
+        synchronized void release() {
+            memoryUsed.addAndGet(-counted);
+            counted = 0;
+        }
+    }
+}
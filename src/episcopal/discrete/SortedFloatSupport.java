@@ -0,0 +1,151 @@
+package episcopal.discrete;
+
+import java.util.Arrays;
+
+/**
+ * Values of a float sample sorted in ascending order, with prefix sums of their probabilities
+ *
+ * The prefix sums give the probability of all values below or above a threshold with one binary search, which lets
+ * comparison operators avoid enumerating every pair of values. Instances are created and cached by
+ * {@link FloatDiscreteSample#sorted()}.
+ *
+ * The values are sorted the same way as {@link Float#compare(float, float)} sorts them, so -0.0 is placed before 0.0
+ * and NaN after all other values. NaN is never greater than any value, so the binary searches only look at the values
+ * before the first NaN.
+ */
+public class SortedFloatSupport {
+    private final float[] keys;
+    private final double[] weights;
+
+    /**
+     * Prefix sums of the probabilities. The element i contains the probability of the first i values, so the array is
+     * one element longer than the values.
+     */
+    private final double[] cumulative;
+
+    /**
+     * Position of the first NaN, or the number of values if there is no NaN
+     */
+    private final int nanStart;
+
+    SortedFloatSupport(FloatDiscreteSample sample) {
+        int size = sample.size();
+        keys = new float[size];
+        weights = new double[size];
+        cumulative = new double[size + 1];
+
+        // the upper half keeps the order of the values, the lower half holds the position of the value
+        long[] entries = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            entries[i] = ((long) sortableBits(sample.keyAt(i)) << 32) | i;
+        }
+
+        Arrays.sort(entries);
+
+        int nan = size;
+
+        for (int i = 0; i < size; i++) {
+            int index = (int) entries[i];
+            keys[i] = sample.keyAt(index);
+            weights[i] = sample.weightAt(index);
+            cumulative[i + 1] = cumulative[i] + weights[i];
+
+            if (Float.isNaN(keys[i]) && nan == size) {
+                nan = i;
+            }
+        }
+
+        nanStart = nan;
+    }
+
+    /**
+     * @return Number of values
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Value at the position
+     */
+    public float keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Probability of the value at the position
+     */
+    public double weightAt(int index) {
+        return weights[index];
+    }
+
+    /**
+     * @return Sum of all probabilities
+     */
+    public double total() {
+        return cumulative[keys.length];
+    }
+
+    /**
+     * Finds the first value greater than the specified value using binary search. All values from the returned
+     * position to {@link #nanStart()} are greater than the value.
+     * @param value Value
+     * @return Position of the first greater value, or {@link #nanStart()} if there is no such value
+     */
+    public int upperBound(float value) {
+        if (Float.isNaN(value)) {
+            return nanStart;
+        }
+
+        int low = 0;
+        int high = nanStart;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (keys[middle] > value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return Position of the first NaN, or the number of values if there is no NaN
+     */
+    public int nanStart() {
+        return nanStart;
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Probability of the values before the position
+     */
+    public double probabilityBefore(int index) {
+        return cumulative[index];
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Probability of the values from the position to the first NaN
+     */
+    public double probabilityFrom(int index) {
+        return cumulative[nanStart] - cumulative[index];
+    }
+
+    /**
+     * Maps a float to an integer with the same order as {@link Float#compare(float, float)}
+     * @param value Value
+     * @return Integer preserving the order of the values
+     */
+    static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits < 0 ? bits ^ 0x7fffffff : bits;
+    }
+}
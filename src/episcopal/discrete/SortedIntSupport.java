@@ -0,0 +1,121 @@
+package episcopal.discrete;
+
+import java.util.Arrays;
+
+/**
+ * Values of an integer sample sorted in ascending order, with prefix sums of their probabilities
+ *
+ * The prefix sums give the probability of all values below or above a threshold with one binary search, which lets
+ * comparison operators avoid enumerating every pair of values. Instances are created and cached by
+ * {@link IntDiscreteSample#sorted()}.
+ */
+public class SortedIntSupport {
+    private final int[] keys;
+    private final double[] weights;
+
+    /**
+     * Prefix sums of the probabilities. The element i contains the probability of the first i values, so the array is
+     * one element longer than the values.
+     */
+    private final double[] cumulative;
+
+    SortedIntSupport(IntDiscreteSample sample) {
+        int size = sample.size();
+        keys = new int[size];
+        weights = new double[size];
+        cumulative = new double[size + 1];
+
+        if (sample.isDense()) {
+            for (int i = 0; i < size; i++) {
+                keys[i] = sample.keyAt(i);
+                weights[i] = sample.weightAt(i);
+            }
+        } else {
+            // the value in the upper half keeps the order, the lower half holds the position of the value
+            long[] entries = new long[size];
+
+            for (int i = 0; i < size; i++) {
+                entries[i] = ((long) sample.keyAt(i) << 32) | i;
+            }
+
+            Arrays.sort(entries);
+
+            for (int i = 0; i < size; i++) {
+                keys[i] = (int) (entries[i] >> 32);
+                weights[i] = sample.weightAt((int) entries[i]);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            cumulative[i + 1] = cumulative[i] + weights[i];
+        }
+    }
+
+    /**
+     * @return Number of values
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Value at the position
+     */
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Probability of the value at the position
+     */
+    public double weightAt(int index) {
+        return weights[index];
+    }
+
+    /**
+     * @return Sum of all probabilities
+     */
+    public double total() {
+        return cumulative[keys.length];
+    }
+
+    /**
+     * Finds the first value greater than the specified value using binary search
+     * @param value Value
+     * @return Position of the first greater value, or the number of values if there is no such value
+     */
+    public int upperBound(int value) {
+        int low = 0;
+        int high = keys.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (keys[middle] > value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Probability of the values before the position
+     */
+    public double probabilityBefore(int index) {
+        return cumulative[index];
+    }
+
+    /**
+     * @param index Position in the sorted values
+     * @return Probability of the values from the position to the end
+     */
+    public double probabilityFrom(int index) {
+        return cumulative[keys.length] - cumulative[index];
+    }
+}
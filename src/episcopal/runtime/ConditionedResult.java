@@ -0,0 +1,110 @@
+package episcopal.runtime;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+
+/**
+ * Result of running a program with exact conditioning (see {@link Program#condition()})
+ *
+ * The distribution is the result of the program, normalized so that the probabilities of a discrete sample add up to
+ * one. The evidence is the probability that all observations of the program succeed.
+ */
+public class ConditionedResult {
+    private final RuntimeValue distribution;
+    private final double evidence;
+
+    ConditionedResult(RuntimeValue result, double evidence) {
+        this.distribution = normalize(result);
+        this.evidence = evidence;
+    }
+
+    /**
+     * @return Normalized result of the program
+     */
+    public RuntimeValue getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * @return Probability of all observations succeeding
+     */
+    public double getEvidence() {
+        return evidence;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (evidence %f)", distribution, evidence);
+    }
+
+    /**
+     * Scales a discrete sample so that its probabilities add up to one. Other values are returned as they are.
+     * @param value Runtime value
+     * @return Normalized value
+     */
+    private static RuntimeValue normalize(RuntimeValue value) {
+        switch (value.getType()) {
+            case DISCRETE_INT_SAMPLE: {
+                IntDiscreteSample sample = value.getDiscreteIntSample();
+                double total = 0;
+
+                for (int i = 0; i < sample.size(); i++) {
+                    total += sample.weightAt(i);
+                }
+
+                if (total == 1 || total == 0) {
+                    return value;
+                }
+
+                IntDiscreteSample result = new IntDiscreteSample(sample.size());
+
+                for (int i = 0; i < sample.size(); i++) {
+                    result.add(sample.keyAt(i), sample.weightAt(i) / total);
+                }
+
+                return RuntimeValue.of(value.getType(), result.compact());
+            }
+            case DISCRETE_FLOAT_SAMPLE: {
+                FloatDiscreteSample sample = value.getDiscreteFloatSample();
+                double total = 0;
+
+                for (int i = 0; i < sample.size(); i++) {
+                    total += sample.weightAt(i);
+                }
+
+                if (total == 1 || total == 0) {
+                    return value;
+                }
+
+                FloatDiscreteSample result = new FloatDiscreteSample(sample.size());
+
+                for (int i = 0; i < sample.size(); i++) {
+                    result.add(sample.keyAt(i), sample.weightAt(i) / total);
+                }
+
+                return RuntimeValue.of(value.getType(), result);
+            }
+            case DISCRETE_BOOL_SAMPLE: {
+                BoolDiscreteSample sample = value.getDiscreteBoolSample();
+                double total = sample.probability(false) + sample.probability(true);
+
+                if (total == 1 || total == 0) {
+                    return value;
+                }
+
+                BoolDiscreteSample result = new BoolDiscreteSample();
+
+                for (boolean b : new boolean[]{false, true}) {
+                    if (sample.contains(b)) {
+                        result.add(b, sample.probability(b) / total);
+                    }
+                }
+
+                return RuntimeValue.of(value.getType(), result);
+            }
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package episcopal.runtime;
+
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConditionedResultTest {
+    @Test
+    public void condition() throws Exception {
+        ConditionedResult result = new Program() {
+            @Override
+            public RuntimeValue run() throws RuntimeException {
+                RuntimeValue first = Runtime.sample(Runtime.flip(Runtime.constant(0.5f)));
+                RuntimeValue second = Runtime.sample(Runtime.flip(Runtime.constant(0.4f)));
+                RuntimeValue n = Runtime.sample(Runtime.bernoulli(Runtime.constant(0.25f)));
+                return Runtime.observe(first, Runtime.observe(second, n));
+            }
+        }.condition();
+
+        assertEquals(0.2, result.getEvidence(), 1e-6);
+        assertEquals(0.25, result.getDistribution().getDiscreteIntSample().probability(1), 1e-6);
+    }
+
+    @Test
+    public void normalize() throws Exception {
+        IntDiscreteSample sample = new IntDiscreteSample().add(1, 0.2).add(2, 0.6);
+        ConditionedResult result = new ConditionedResult(
+                RuntimeValue.of(sample), 0.5);
+
+        assertEquals(0.25, result.getDistribution().getDiscreteIntSample().probability(1), 1e-9);
+        assertEquals(0.75, result.getDistribution().getDiscreteIntSample().probability(2), 1e-9);
+    }
+
+    @Test(expected = ObservationFailedException.class)
+    public void impossible() throws Exception {
+        new Program() {
+            @Override
+            public RuntimeValue run() throws RuntimeException {
+                return Runtime.observe(Runtime.constant(false), Runtime.constant(1));
+            }
+        }.condition();
+    }
+}
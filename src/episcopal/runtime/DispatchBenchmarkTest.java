@@ -0,0 +1,93 @@
+package episcopal.runtime;
+
+import episcopal.Operators;
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.Test;
+
+/**
+ * Measures the overhead of dispatching an operator on runtime values
+ *
+ * The operands are point samples, so the operators themselves are cheap and the time is dominated by the dispatch.
+ * The direct calls of {@link Operators} give the cost of the operators without any dispatch. The benchmark is run
+ * from the test classes (see Readme.md), the test only checks that it runs.
+ */
+public class DispatchBenchmarkTest {
+    private static final int ROUNDS = 5;
+
+    /**
+     * Prevents the JIT from eliminating the measured calls
+     */
+    private static long sink;
+
+    @Test
+    public void run() throws Exception {
+        measure(1000, 1);
+    }
+
+    public static void main(String[] args) throws RuntimeException {
+        measure(args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000, ROUNDS);
+    }
+
+    /**
+     * Prints the time per operation of each round
+     * @param iterations Number of operations per round
+     * @param rounds Number of rounds, the first ones warm up the JIT compiler
+     */
+    private static void measure(int iterations, int rounds) throws RuntimeException {
+        RuntimeValue[] ints = {Runtime.constant(1), Runtime.constant(2), Runtime.constant(3), Runtime.constant(4)};
+        RuntimeValue[] floats = {Runtime.constant(0.5f), Runtime.constant(1.5f), Runtime.constant(2.5f)};
+        RuntimeValue[] bools = {Runtime.constant(true), Runtime.constant(false)};
+        IntDiscreteSample[] intSamples = new IntDiscreteSample[ints.length];
+
+        for (int i = 0; i < ints.length; i++) {
+            intSamples[i] = ints[i].getDiscreteIntSample();
+        }
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                sink += Operators.addIntegers(intSamples[i & 3], intSamples[(i + 1) & 3]).size();
+            }
+
+            long direct = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                sink += Runtime.add(ints[i & 3], ints[(i + 1) & 3]).getDiscreteIntSample().size();
+            }
+
+            long add = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                RuntimeValue left = floats[i % 3];
+                RuntimeValue right = floats[(i + 1) % 3];
+                sink += Runtime.lessThan(left, right).getDiscreteBoolSample().probability(true) > 0 ? 1 : 0;
+                sink += Runtime.multiply(left, right).getDiscreteFloatSample().size();
+            }
+
+            long mixed = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                sink += Runtime.and(bools[i & 1], bools[(i + 1) & 1]).getDiscreteBoolSample().probability(true) > 0 ? 1 : 0;
+                sink += Runtime.equal(ints[i & 3], ints[(i + 1) & 3]).getDiscreteBoolSample().probability(true) > 0 ? 1 : 0;
+            }
+
+            long logic = System.nanoTime() - start;
+
+            System.out.printf(
+                    "round %d: direct add %.1f ns/op, add %.1f ns/op, float compare and multiply %.1f ns/op, " +
+                            "and and equal %.1f ns/op%n",
+                    round,
+                    (double) direct / iterations,
+                    (double) add / iterations,
+                    (double) mixed / (2.0 * iterations),
+                    (double) logic / (2.0 * iterations)
+            );
+        }
+
+        System.out.println(sink == 42 ? "" : "done");
+    }
+}
@@ -0,0 +1,128 @@
+package episcopal.runtime;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Execution context of a program, carrying the random generator used by observations
+ *
+ * The compiled bytecode calls the static runtime methods, so the context of the running program is kept per thread
+ * (see {@link Program#run(ExecutionContext)}). Threads without a context get their own one with a random seed.
+ *
+ * A context with a fixed seed makes the runs reproducible, so a run can be replayed exactly. A context must be used
+ * by one thread only. Concurrent runs get independent contexts by {@link #split()}, so they do not contend on one
+ * generator.
+ *
+ * An exact context (see {@link #exact()}) does not draw random values. Its observations accumulate their probability
+ * of success as the evidence instead.
+ */
+public class ExecutionContext {
+    private static final ThreadLocal<ExecutionContext> current = ThreadLocal.withInitial(ExecutionContext::new);
+
+    private final RandomGenerator.SplittableGenerator random;
+
+    /**
+     * True if observations are conditioned exactly instead of rejecting runs
+     */
+    private final boolean exact;
+
+    /**
+     * Product of the success probabilities of the exact observations
+     */
+    private double evidence = 1;
+
+    /**
+     * Creates a context with a randomly seeded generator
+     */
+    public ExecutionContext() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Creates a context with a seeded generator
+     * @param seed Seed of the generator
+     */
+    public ExecutionContext(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    /**
+     * Creates a context with the specified generator, for example one created by
+     * {@code RandomGeneratorFactory.of("L64X128MixRandom")}
+     * @param random Random generator
+     */
+    public ExecutionContext(RandomGenerator.SplittableGenerator random) {
+        this(random, false);
+    }
+
+    private ExecutionContext(RandomGenerator.SplittableGenerator random, boolean exact) {
+        this.random = random;
+        this.exact = exact;
+    }
+
+    /**
+     * Creates a context conditioning the observations exactly. Instead of selecting a random value and rejecting the
+     * run, an observation multiplies the evidence by its probability of success and returns its result. Observations
+     * that cannot succeed still fail.
+     * @return Exact context
+     */
+    public static ExecutionContext exact() {
+        return new ExecutionContext(new SplittableRandom(), true);
+    }
+
+    /**
+     * @return Context of the program running in the current thread
+     */
+    public static ExecutionContext current() {
+        return current.get();
+    }
+
+    /**
+     * Makes the context the current one of this thread
+     * @param context New context
+     * @return Previous context
+     */
+    static ExecutionContext enter(ExecutionContext context) {
+        ExecutionContext previous = current.get();
+        current.set(context);
+        return previous;
+    }
+
+    /**
+     * @return Random generator of the context
+     */
+    public RandomGenerator getRandom() {
+        return random;
+    }
+
+    /**
+     * @return True if observations are conditioned exactly instead of rejecting runs
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return Product of the success probabilities of the observations made in this exact context
+     */
+    public double getEvidence() {
+        return evidence;
+    }
+
+    /**
+     * Records an exact observation
+     * @param probability Probability of the observation being successful
+     */
+    void observe(double probability) {
+        evidence *= probability;
+    }
+
+    /**
+     * Creates a new context with a generator that is independent of this one. The new generator is derived from this
+     * one, so splitting a seeded context gives reproducible contexts.
+     * @return New context
+     */
+    public ExecutionContext split() {
+        return new ExecutionContext(random.split(), exact);
+    }
+}
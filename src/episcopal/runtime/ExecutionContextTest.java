@@ -0,0 +1,74 @@
+package episcopal.runtime;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExecutionContextTest {
+    @Test
+    public void replay() throws Exception {
+        assertEquals(outcomes(new ExecutionContext(42)), outcomes(new ExecutionContext(42)));
+    }
+
+    @Test
+    public void split() throws Exception {
+        ExecutionContext first = new ExecutionContext(7);
+        ExecutionContext second = new ExecutionContext(7);
+
+        assertEquals(outcomes(first.split()), outcomes(second.split()));
+        assertNotEquals(outcomes(new ExecutionContext(7).split()), outcomes(new ExecutionContext(7)));
+    }
+
+    @Test
+    public void restoresContext() throws Exception {
+        ExecutionContext before = ExecutionContext.current();
+        new CoinProgram().tryRun(new ExecutionContext(1));
+
+        assertSame(before, ExecutionContext.current());
+    }
+
+    @Test
+    public void tryRun() throws Exception {
+        CoinProgram program = new CoinProgram();
+        ExecutionContext context = new ExecutionContext(5);
+        int rejected = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            rejected += program.tryRun(context) == null ? 1 : 0;
+        }
+
+        assertEquals(500, rejected, 60);
+    }
+
+    @Test
+    public void rejectionWithoutStackTrace() {
+        assertEquals(0, ObservationFailedException.INSTANCE.getStackTrace().length);
+    }
+
+    private static String outcomes(ExecutionContext context) throws Exception {
+        StringBuilder result = new StringBuilder();
+        CoinProgram program = new CoinProgram();
+
+        for (int i = 0; i < 64; i++) {
+            try {
+                program.run(context);
+                result.append('1');
+            } catch (RuntimeException e) {
+                result.append('0');
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Program observing a fair coin flip
+     */
+    private static class CoinProgram extends Program {
+        @Override
+        public RuntimeValue run() throws RuntimeException {
+            RuntimeValue coin = Runtime.sample(Runtime.flip(Runtime.constant(0.5f)));
+            return Runtime.observe(coin, Runtime.constant(1));
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package episcopal.runtime;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import episcopal.discrete.SortedIntSupport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy evaluation of integer arithmetic (see {@link Runtime#setLazy(boolean)})
+ *
+ * In the lazy mode, the integer operators of the runtime build a graph of {@link RuntimeValue.LazyIntValue} nodes
+ * instead of computing each intermediate sample. The graph is evaluated when a value is read:
+ *
+ * Chains of additions or multiplications are flattened into their terms, and the terms are reduced in a balanced tree
+ * of pairs. Equal terms are placed next to each other, so that equal pairs in a round are computed once.
+ *
+ * A comparison of a sum with another sample is fused into the sum. The largest term is not added, its sorted values
+ * with prefix sums of their probabilities are searched for each pair of the other terms and the compared sample.
+ *
+ * A node used by several nodes or comparisons is evaluated on its own, so that its result is shared. Integers wrap
+ * around as in the eager operators, but the approximation policy is applied to the pairs of the balanced tree instead
+ * of to each operator of the expression.
+ */
+final class LazyIntegers {
+    /**
+     * Largest depth of a graph. A node with a deeper graph is evaluated when it is created, which bounds the recursion
+     * of the evaluation.
+     */
+    static final int MAX_DEPTH = 256;
+
+    private LazyIntegers() {
+    }
+
+    /**
+     * @param left Left integer value
+     * @param right Right integer value
+     * @return Lazy sum of the values
+     */
+    static RuntimeValue add(RuntimeValue left, RuntimeValue right) {
+        return node('+', left, right);
+    }
+
+    /**
+     * @param left Left integer value
+     * @param right Right integer value
+     * @return Lazy difference of the values
+     */
+    static RuntimeValue subtract(RuntimeValue left, RuntimeValue right) {
+        return node('-', left, right);
+    }
+
+    /**
+     * @param left Left integer value
+     * @param right Right integer value
+     * @return Lazy product of the values
+     */
+    static RuntimeValue multiply(RuntimeValue left, RuntimeValue right) {
+        return node('*', left, right);
+    }
+
+    /**
+     * Compares two integer values. If one of them is an unevaluated sum that is not used by other nodes, the
+     * comparison is fused into it. The comparison counts as a use of its operands, so a sum that is also an operand of
+     * another node is evaluated on its own and its result is shared.
+     * @param left Left integer value
+     * @param right Right integer value
+     * @return Boolean sample of the left value being less than the right value
+     */
+    static BoolDiscreteSample lessThan(RuntimeValue left, RuntimeValue right) {
+        use(left);
+        use(right);
+
+        List<IntDiscreteSample> terms = sumTerms(left);
+
+        if (terms != null) {
+            return compareSum(terms, sample(right), true);
+        }
+
+        terms = sumTerms(right);
+
+        if (terms != null) {
+            return compareSum(terms, sample(left), false);
+        }
+
+        return Runtime.lessThan(sample(left), sample(right));
+    }
+
+    /**
+     * Evaluates a node
+     * @param operator Operator of the node
+     * @param left Left operand
+     * @param right Right operand
+     * @return Integer sample
+     */
+    static IntDiscreteSample evaluate(char operator, RuntimeValue left, RuntimeValue right) {
+        if (operator == '-') {
+            return Runtime.subtract(sample(left), sample(right));
+        }
+
+        return reduce(operator, terms(operator, left, right));
+    }
+
+    private static RuntimeValue node(char operator, RuntimeValue left, RuntimeValue right) {
+        RuntimeValue.LazyIntValue node = new RuntimeValue.LazyIntValue(operator, left, right);
+        use(left);
+        use(right);
+
+        if (node.getDepth() > MAX_DEPTH) {
+            node.evaluate();
+        }
+
+        return node;
+    }
+
+    private static void use(RuntimeValue value) {
+        if (value instanceof RuntimeValue.LazyIntValue) {
+            ((RuntimeValue.LazyIntValue) value).use();
+        }
+    }
+
+    private static IntDiscreteSample sample(RuntimeValue value) {
+        return value.getDiscreteIntSample();
+    }
+
+    /**
+     * Collects the terms of a chain of an associative operator. Nodes of the chain that have been evaluated or are
+     * shared are evaluated as terms.
+     * @param operator '+' or '*'
+     * @param left Left operand of the chain
+     * @param right Right operand of the chain
+     * @return Samples of the terms
+     */
+    private static List<IntDiscreteSample> terms(char operator, RuntimeValue left, RuntimeValue right) {
+        List<IntDiscreteSample> terms = new ArrayList<>();
+        Deque<RuntimeValue> pending = new ArrayDeque<>();
+        pending.push(right);
+        pending.push(left);
+
+        while (!pending.isEmpty()) {
+            RuntimeValue value = pending.pop();
+            RuntimeValue[] operands = null;
+
+            if (value instanceof RuntimeValue.LazyIntValue && ((RuntimeValue.LazyIntValue) value).getOperator() == operator) {
+                operands = ((RuntimeValue.LazyIntValue) value).privateOperands();
+            }
+
+            if (operands != null) {
+                pending.push(operands[1]);
+                pending.push(operands[0]);
+            } else {
+                terms.add(sample(value));
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * @param value Integer value
+     * @return Terms of the value if it is an unevaluated sum that is not shared, otherwise null
+     */
+    private static List<IntDiscreteSample> sumTerms(RuntimeValue value) {
+        if (!(value instanceof RuntimeValue.LazyIntValue) || ((RuntimeValue.LazyIntValue) value).getOperator() != '+') {
+            return null;
+        }
+
+        RuntimeValue[] operands = ((RuntimeValue.LazyIntValue) value).privateOperands();
+        return operands == null ? null : terms('+', operands[0], operands[1]);
+    }
+
+    /**
+     * Reduces the terms of a commutative operator in a balanced tree
+     * @param operator '+' or '*'
+     * @param terms Samples of the terms
+     * @return Result sample
+     */
+    private static IntDiscreteSample reduce(char operator, List<IntDiscreteSample> terms) {
+        List<IntDiscreteSample> round = group(terms);
+
+        while (round.size() > 1) {
+            List<IntDiscreteSample> next = new ArrayList<>((round.size() + 1) / 2);
+            IntDiscreteSample previousLeft = null;
+            IntDiscreteSample previousRight = null;
+            IntDiscreteSample previous = null;
+
+            for (int i = 0; i + 1 < round.size(); i += 2) {
+                IntDiscreteSample left = round.get(i);
+                IntDiscreteSample right = round.get(i + 1);
+
+                if (left != previousLeft || right != previousRight) {
+                    previous = operator == '+' ? Runtime.add(left, right) : Runtime.multiply(left, right);
+                    previousLeft = left;
+                    previousRight = right;
+                }
+
+                next.add(previous);
+            }
+
+            if (round.size() % 2 == 1) {
+                next.add(round.get(round.size() - 1));
+            }
+
+            round = next;
+        }
+
+        return round.get(0);
+    }
+
+    /**
+     * Places equal samples next to each other, in the order of their first occurrence
+     * @param terms Samples of the terms
+     * @return Reordered samples
+     */
+    private static List<IntDiscreteSample> group(List<IntDiscreteSample> terms) {
+        Map<IntDiscreteSample, List<IntDiscreteSample>> groups = new IdentityHashMap<>();
+        List<List<IntDiscreteSample>> order = new ArrayList<>();
+
+        for (IntDiscreteSample term : terms) {
+            List<IntDiscreteSample> group = groups.get(term);
+
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(term, group);
+                order.add(group);
+            }
+
+            group.add(term);
+        }
+
+        List<IntDiscreteSample> grouped = new ArrayList<>(terms.size());
+        order.forEach(grouped::addAll);
+        return grouped;
+    }
+
+    /**
+     * Compares a sum with a sample without evaluating the sum, if the compared sample is smaller than the largest term
+     * @param terms Terms of the sum
+     * @param other Compared sample
+     * @param sumLess True for the probability of the sum being less than the sample, false for greater
+     * @return Boolean sample
+     */
+    private static BoolDiscreteSample compareSum(List<IntDiscreteSample> terms, IntDiscreteSample other, boolean sumLess) {
+        int largest = 0;
+
+        for (int i = 1; i < terms.size(); i++) {
+            if (terms.get(i).size() > terms.get(largest).size()) {
+                largest = i;
+            }
+        }
+
+        IntDiscreteSample last = terms.remove(largest);
+        IntDiscreteSample rest = reduce('+', terms);
+
+        if (other.size() >= last.size() || overflows(rest, last)) {
+            IntDiscreteSample sum = Runtime.add(rest, last);
+            return sumLess ? Runtime.lessThan(sum, other) : Runtime.lessThan(other, sum);
+        }
+
+        SortedIntSupport support = last.sorted();
+        double t = 0;
+        double f = 0;
+        boolean hasTrue = false;
+        boolean hasFalse = false;
+
+        for (int i = 0; i < rest.size(); i++) {
+            for (int j = 0; j < other.size(); j++) {
+                double p = rest.weightAt(i) * other.weightAt(j);
+                long difference = (long) other.keyAt(j) - rest.keyAt(i);
+
+                if (sumLess) {
+                    int index = upperBound(support, difference - 1); // values of the last term below the difference
+                    t += p * support.probabilityBefore(index);
+                    f += p * support.probabilityFrom(index);
+                    hasTrue |= index > 0;
+                    hasFalse |= index < support.size();
+                } else {
+                    int index = upperBound(support, difference); // values of the last term above the difference
+                    t += p * support.probabilityFrom(index);
+                    f += p * support.probabilityBefore(index);
+                    hasTrue |= index < support.size();
+                    hasFalse |= index > 0;
+                }
+            }
+        }
+
+        BoolDiscreteSample result = new BoolDiscreteSample();
+
+        if (hasFalse) {
+            result.add(false, f);
+        }
+
+        if (hasTrue) {
+            result.add(true, t);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param support Sorted values
+     * @param value Value outside of the integer range if it is below or above all integers
+     * @return Position of the first value greater than the specified value
+     */
+    private static int upperBound(SortedIntSupport support, long value) {
+        if (value < Integer.MIN_VALUE) {
+            return 0;
+        }
+
+        if (value >= Integer.MAX_VALUE) {
+            return support.size();
+        }
+
+        return support.upperBound((int) value);
+    }
+
+    /**
+     * @param left Left sample
+     * @param right Right sample
+     * @return True if the sum of some values of the samples does not fit in an integer, so that it has to wrap around
+     */
+    private static boolean overflows(IntDiscreteSample left, IntDiscreteSample right) {
+        SortedIntSupport l = left.sorted();
+        SortedIntSupport r = right.sorted();
+
+        if (l.size() == 0 || r.size() == 0) {
+            return false;
+        }
+
+        long min = (long) l.keyAt(0) + r.keyAt(0);
+        long max = (long) l.keyAt(l.size() - 1) + r.keyAt(r.size() - 1);
+        return min < Integer.MIN_VALUE || max > Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,160 @@
+package episcopal.runtime;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LazyIntegersTest {
+    @After
+    public void eager() {
+        Runtime.setLazy(false);
+    }
+
+    @Test
+    public void balancedChain() throws Exception {
+        RuntimeValue eager = sum(uniform(0, 20), uniform(-5, 5), uniform(3, 9), uniform(0, 20));
+        Runtime.setLazy(true);
+        RuntimeValue lazy = sum(uniform(0, 20), uniform(-5, 5), uniform(3, 9), uniform(0, 20));
+
+        assertTrue(lazy instanceof RuntimeValue.LazyIntValue);
+        assertFalse(((RuntimeValue.LazyIntValue) lazy).isEvaluated());
+        assertSameSample(eager.getDiscreteIntSample(), lazy.getDiscreteIntSample());
+        assertTrue(((RuntimeValue.LazyIntValue) lazy).isEvaluated());
+    }
+
+    @Test
+    public void mixedOperators() throws Exception {
+        RuntimeValue eager = Runtime.multiply(Runtime.subtract(uniform(0, 5), uniform(1, 3)), uniform(2, 4));
+        Runtime.setLazy(true);
+        RuntimeValue lazy = Runtime.multiply(Runtime.subtract(uniform(0, 5), uniform(1, 3)), uniform(2, 4));
+
+        assertSameSample(eager.getDiscreteIntSample(), lazy.getDiscreteIntSample());
+    }
+
+    @Test
+    public void fusedComparison() throws Exception {
+        RuntimeValue threshold = Runtime.constant(25);
+        BoolDiscreteSample eager = Runtime.lessThan(sum(uniform(0, 10), uniform(0, 100), uniform(0, 10)), threshold)
+                .getDiscreteBoolSample();
+        BoolDiscreteSample eagerGreater = Runtime.greaterThan(sum(uniform(0, 10), uniform(0, 100)), threshold)
+                .getDiscreteBoolSample();
+        Runtime.setLazy(true);
+        RuntimeValue sum = sum(uniform(0, 10), uniform(0, 100), uniform(0, 10));
+        BoolDiscreteSample lazy = Runtime.lessThan(sum, threshold).getDiscreteBoolSample();
+        BoolDiscreteSample lazyGreater = Runtime.greaterThan(sum(uniform(0, 10), uniform(0, 100)), threshold)
+                .getDiscreteBoolSample();
+
+        assertFalse(((RuntimeValue.LazyIntValue) sum).isEvaluated());
+        assertEquals(eager.probability(true), lazy.probability(true), 1e-9);
+        assertEquals(eager.probability(false), lazy.probability(false), 1e-9);
+        assertEquals(eagerGreater.probability(true), lazyGreater.probability(true), 1e-9);
+        assertEquals(eagerGreater.probability(false), lazyGreater.probability(false), 1e-9);
+    }
+
+    @Test
+    public void sharedNode() throws Exception {
+        Runtime.setLazy(true);
+        RuntimeValue shared = Runtime.add(uniform(0, 3), uniform(0, 3));
+        RuntimeValue left = Runtime.add(shared, uniform(0, 1));
+        RuntimeValue right = Runtime.add(shared, uniform(1, 2));
+
+        left.getDiscreteIntSample();
+
+        assertTrue(((RuntimeValue.LazyIntValue) shared).isEvaluated());
+        assertFalse(((RuntimeValue.LazyIntValue) right).isEvaluated());
+        assertEquals(1 / 32.0, right.getDiscreteIntSample().probability(1), 1e-9);
+    }
+
+    @Test
+    public void sharedComparedSum() throws Exception {
+        RuntimeValue threshold = Runtime.constant(4);
+        Runtime.setLazy(true);
+        RuntimeValue shared = Runtime.add(uniform(0, 3), uniform(0, 3));
+        RuntimeValue total = Runtime.add(shared, uniform(0, 1));
+        BoolDiscreteSample less = Runtime.lessThan(shared, threshold).getDiscreteBoolSample();
+
+        assertTrue(((RuntimeValue.LazyIntValue) shared).isEvaluated());
+        assertFalse(((RuntimeValue.LazyIntValue) total).isEvaluated());
+        assertEquals(10 / 16.0, less.probability(true), 1e-9);
+        assertEquals(1 / 32.0, total.getDiscreteIntSample().probability(0), 1e-9);
+    }
+
+    @Test
+    public void compiledChain() throws Exception {
+        Runtime.setLazy(true);
+        RuntimeValue sum = bernoulliChain(Runtime.constant(0.5f));
+
+        assertTrue(sum instanceof RuntimeValue.LazyIntValue);
+
+        BoolDiscreteSample less = Runtime.lessThan(sum, Runtime.constant(2)).getDiscreteBoolSample();
+
+        assertFalse(((RuntimeValue.LazyIntValue) sum).isEvaluated());
+        assertEquals(5 / 16.0, less.probability(true), 1e-9);
+        assertEquals(6 / 16.0, sum.getDiscreteIntSample().probability(2), 1e-9);
+    }
+
+    @Test
+    public void deepGraph() throws Exception {
+        Runtime.setLazy(true);
+        RuntimeValue value = Runtime.constant(0);
+
+        for (int i = 0; i < 100_000; i++) {
+            value = i % 2 == 0 ? Runtime.add(value, Runtime.constant(3)) : Runtime.subtract(value, Runtime.constant(1));
+        }
+
+        assertEquals(100_000, value.getDiscreteIntSample().pointValue());
+    }
+
+    @Test
+    public void wrapAround() throws Exception {
+        Runtime.setLazy(true);
+        RuntimeValue sum = Runtime.add(Runtime.constant(Integer.MAX_VALUE), uniform(0, 1));
+
+        assertEquals(0.5, Runtime.lessThan(sum, Runtime.constant(0)).getDiscreteBoolSample().probability(true), 1e-9);
+    }
+
+    /**
+     * Calls emitted by the compiler for the integer chain
+     * {@code sample(bernoulli(p)) + sample(bernoulli(p)) + sample(bernoulli(p)) + sample(bernoulli(p))}
+     */
+    private static RuntimeValue bernoulliChain(RuntimeValue p) throws RuntimeException {
+        return Runtime.add(
+                Runtime.add(
+                        Runtime.add(Runtime.sample(Runtime.bernoulli(p)), Runtime.sample(Runtime.bernoulli(p))),
+                        Runtime.sample(Runtime.bernoulli(p))),
+                Runtime.sample(Runtime.bernoulli(p)));
+    }
+
+    private static RuntimeValue sum(RuntimeValue... values) throws RuntimeException {
+        RuntimeValue sum = values[0];
+
+        for (int i = 1; i < values.length; i++) {
+            sum = Runtime.add(sum, values[i]);
+        }
+
+        return sum;
+    }
+
+    private static RuntimeValue uniform(int from, int to) {
+        IntDiscreteSample sample = new IntDiscreteSample();
+
+        for (int i = from; i <= to; i++) {
+            sample.add(i, 1.0 / (to - from + 1));
+        }
+
+        return RuntimeValue.of(sample);
+    }
+
+    private static void assertSameSample(IntDiscreteSample expected, IntDiscreteSample actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.weightAt(i), actual.probability(expected.keyAt(i)), 1e-9);
+        }
+
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(actual.weightAt(i), expected.probability(actual.keyAt(i)), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package episcopal.runtime;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a program many times in parallel and aggregates the results of the accepted runs
+ *
+ * The runs are done in rounds of batches on the common fork/join pool. Every batch runs in its own execution context
+ * split off the context of the runner, and the batches of a round are merged in a fixed order. A runner with a seeded
+ * context therefore gives the same result regardless of the number of threads.
+ */
+class MonteCarlo {
+    /**
+     * Number of runs in one batch
+     */
+    private static final int BATCH_RUNS = 512;
+
+    /**
+     * Number of batches run in parallel before the precision is checked
+     */
+    private static final int ROUND_BATCHES = 32;
+
+    private final Program program;
+
+    MonteCarlo(Program program) {
+        this.program = program;
+    }
+
+    /**
+     * Runs the program until the standard errors of both the posterior and the acceptance rate are within the
+     * precision, or until the maximum number of runs
+     * @param maxRuns Largest number of runs
+     * @param precision Target standard error, or 0 to do all runs
+     * @param context Execution context the contexts of the batches are split off
+     * @return Aggregated result
+     * @throws RuntimeException Thrown if a run fails with other error than a failed observation
+     */
+    MonteCarloResult run(long maxRuns, double precision, ExecutionContext context) throws RuntimeException {
+        Tally total = new Tally();
+
+        while (total.runs < maxRuns) {
+            List<Callable<Tally>> batches = new ArrayList<>();
+            long remaining = maxRuns - total.runs;
+
+            for (int i = 0; i < ROUND_BATCHES && remaining > 0; i++) {
+                int runs = (int) Math.min(BATCH_RUNS, remaining);
+                ExecutionContext batchContext = context.split();
+                remaining -= runs;
+                batches.add(() -> runBatch(runs, batchContext));
+            }
+
+            for (Future<Tally> batch : ForkJoinPool.commonPool().invokeAll(batches)) {
+                total.merge(result(batch));
+            }
+
+            if (precision > 0 && Math.max(total.standardError(), total.acceptanceRateError()) <= precision) {
+                break;
+            }
+        }
+
+        return total.result();
+    }
+
+    /**
+     * Runs one batch. Runtime errors are kept in the tally, so that they can be rethrown by the runner.
+     * @param runs Number of runs
+     * @param context Execution context of the batch
+     * @return Counts of the batch
+     */
+    private Tally runBatch(int runs, ExecutionContext context) {
+        Tally tally = new Tally();
+
+        try {
+            for (int i = 0; i < runs; i++) {
+                RuntimeValue result = program.tryRun(context);
+
+                if (result != null) {
+                    tally.accept(result);
+                } else {
+                    tally.runs++;
+                }
+            }
+        } catch (RuntimeException e) {
+            tally.error = e;
+        }
+
+        return tally;
+    }
+
+    private static Tally result(Future<Tally> batch) throws RuntimeException {
+        try {
+            Tally tally = batch.get();
+
+            if (tally.error != null) {
+                throw tally.error;
+            }
+
+            return tally;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof java.lang.RuntimeException) {
+                throw (java.lang.RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException(cause.getMessage());
+        }
+    }
+
+    /**
+     * Counts of runs with the sums and sums of squares of the probabilities of each result value
+     */
+    private static class Tally {
+        private long runs;
+        private long accepted;
+        private RuntimeValue.Type type;
+        private final Map<Object, double[]> values = new LinkedHashMap<>();
+
+        /**
+         * Runtime error that stopped the batch
+         */
+        private RuntimeException error;
+
+        void accept(RuntimeValue value) throws RuntimeException {
+            checkType(value.getType());
+            runs++;
+            accepted++;
+
+            switch (type) {
+                case DISCRETE_INT_SAMPLE: {
+                    IntDiscreteSample sample = value.getDiscreteIntSample();
+
+                    for (int i = 0; i < sample.size(); i++) {
+                        add(sample.keyAt(i), sample.weightAt(i));
+                    }
+
+                    break;
+                }
+                case DISCRETE_FLOAT_SAMPLE: {
+                    FloatDiscreteSample sample = value.getDiscreteFloatSample();
+
+                    for (int i = 0; i < sample.size(); i++) {
+                        add(sample.keyAt(i), sample.weightAt(i));
+                    }
+
+                    break;
+                }
+                default: {
+                    BoolDiscreteSample sample = value.getDiscreteBoolSample();
+
+                    for (boolean b : new boolean[]{false, true}) {
+                        if (sample.contains(b)) {
+                            add(b, sample.probability(b));
+                        }
+                    }
+                }
+            }
+        }
+
+        void merge(Tally other) throws RuntimeException {
+            if (other.type != null) {
+                checkType(other.type);
+            }
+
+            runs += other.runs;
+            accepted += other.accepted;
+
+            for (Map.Entry<Object, double[]> entry : other.values.entrySet()) {
+                double[] sums = values.computeIfAbsent(entry.getKey(), key -> new double[2]);
+                sums[0] += entry.getValue()[0];
+                sums[1] += entry.getValue()[1];
+            }
+        }
+
+        double standardError() {
+            if (accepted < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            double error = 0;
+
+            for (double[] sums : values.values()) {
+                double mean = sums[0] / accepted;
+                double variance = Math.max(0, (sums[1] - accepted * mean * mean) / (accepted - 1));
+                error = Math.max(error, Math.sqrt(variance / accepted));
+            }
+
+            return error;
+        }
+
+        double acceptanceRateError() {
+            if (runs == 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            double rate = (double) accepted / runs;
+            return Math.sqrt(rate * (1 - rate) / runs);
+        }
+
+        MonteCarloResult result() {
+            return new MonteCarloResult(posterior(), runs, accepted, standardError());
+        }
+
+        private RuntimeValue posterior() {
+            if (accepted == 0) {
+                return null;
+            }
+
+            switch (type) {
+                case DISCRETE_INT_SAMPLE: {
+                    IntDiscreteSample sample = new IntDiscreteSample(values.size());
+                    values.forEach((key, sums) -> sample.add((int) (Integer) key, sums[0] / accepted));
+                    return RuntimeValue.of(sample);
+                }
+                case DISCRETE_FLOAT_SAMPLE: {
+                    FloatDiscreteSample sample = new FloatDiscreteSample(values.size());
+                    values.forEach((key, sums) -> sample.add((float) (Float) key, sums[0] / accepted));
+                    return RuntimeValue.of(sample);
+                }
+                default: {
+                    BoolDiscreteSample sample = new BoolDiscreteSample();
+                    values.forEach((key, sums) -> sample.add((boolean) (Boolean) key, sums[0] / accepted));
+                    return RuntimeValue.of(sample);
+                }
+            }
+        }
+
+        private void add(Object key, double probability) {
+            double[] sums = values.computeIfAbsent(key, k -> new double[2]);
+            sums[0] += probability;
+            sums[1] += probability * probability;
+        }
+
+        private void checkType(RuntimeValue.Type valueType) throws RuntimeException {
+            if (valueType == RuntimeValue.Type.CONTINUOUS_SAMPLE || valueType == RuntimeValue.Type.DISTRIBUTION) {
+                throw new RuntimeException("Unable to aggregate value");
+            }
+
+            if (type != null && type != valueType) {
+                throw new RuntimeException("Unable to aggregate values of different types");
+            }
+
+            type = valueType;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package episcopal.runtime;
+
+/**
+ * Result of running a program many times (see {@link Program#estimate(int)})
+ *
+ * The posterior is the average of the results of the accepted runs, so each value has the probability of the fraction
+ * of runs it was the result of. The standard error is the largest standard error among the probabilities of the
+ * values.
+ */
+public class MonteCarloResult {
+    private final RuntimeValue posterior;
+    private final long runs;
+    private final long accepted;
+    private final double standardError;
+
+    MonteCarloResult(RuntimeValue posterior, long runs, long accepted, double standardError) {
+        this.posterior = posterior;
+        this.runs = runs;
+        this.accepted = accepted;
+        this.standardError = standardError;
+    }
+
+    /**
+     * @return Discrete sample with the results of the accepted runs, or null if no run was accepted
+     */
+    public RuntimeValue getPosterior() {
+        return posterior;
+    }
+
+    /**
+     * @return Number of runs
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return Number of runs not rejected by an observation
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * @return Fraction of runs not rejected by an observation
+     */
+    public double getAcceptanceRate() {
+        return runs == 0 ? 0 : (double) accepted / runs;
+    }
+
+    /**
+     * @return Standard error of the acceptance rate
+     */
+    public double getAcceptanceRateError() {
+        if (runs == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double rate = getAcceptanceRate();
+        return Math.sqrt(rate * (1 - rate) / runs);
+    }
+
+    /**
+     * @return Largest standard error of the probabilities in the posterior, or infinity with fewer than two accepted
+     * runs
+     */
+    public double getStandardError() {
+        return standardError;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d of %d runs accepted, standard error %f)", posterior, accepted, runs, standardError);
+    }
+}
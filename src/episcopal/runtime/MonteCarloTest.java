@@ -0,0 +1,80 @@
+package episcopal.runtime;
+
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MonteCarloTest {
+    @Test
+    public void estimate() throws Exception {
+        MonteCarloResult result = new DiceProgram().estimate(20000, new ExecutionContext(1));
+        IntDiscreteSample posterior = result.getPosterior().getDiscreteIntSample();
+
+        assertEquals(20000, result.getRuns());
+        assertEquals(0.5, result.getAcceptanceRate(), 0.02);
+        assertEquals(result.getRuns(), result.getAccepted() + Math.round(result.getRuns() * (1 - result.getAcceptanceRate())));
+        assertEquals(1, posterior.probability(1), 0.0001);
+        assertEquals(0, result.getStandardError(), 0);
+    }
+
+    @Test
+    public void mixture() throws Exception {
+        MonteCarloResult result = new CoinProgram().estimate(10000, new ExecutionContext(2));
+        BoolDiscreteSample posterior = result.getPosterior().getDiscreteBoolSample();
+
+        assertEquals(1, result.getAcceptanceRate(), 0);
+        assertEquals(0.3, posterior.probability(true), 0.02);
+        assertEquals(0, result.getStandardError(), 1e-9);
+    }
+
+    @Test
+    public void reproducible() throws Exception {
+        MonteCarloResult first = new DiceProgram().estimate(5000, new ExecutionContext(3));
+        MonteCarloResult second = new DiceProgram().estimate(5000, new ExecutionContext(3));
+
+        assertEquals(first.getAccepted(), second.getAccepted());
+    }
+
+    @Test
+    public void precision() throws Exception {
+        MonteCarloResult result = new DiceProgram().estimate(0.002, 10000000, new ExecutionContext(4));
+
+        assertTrue(result.getAcceptanceRateError() <= 0.002);
+        assertTrue(result.getRuns() >= 62500);
+        assertTrue(result.getRuns() < 10000000);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void error() throws Exception {
+        new Program() {
+            @Override
+            public RuntimeValue run() throws RuntimeException {
+                return Runtime.add(Runtime.constant(1), Runtime.constant(true));
+            }
+        }.estimate(10);
+    }
+
+    /**
+     * Returns 1 if a fair coin flip is true, otherwise the observation fails
+     */
+    private static class DiceProgram extends Program {
+        @Override
+        public RuntimeValue run() throws RuntimeException {
+            RuntimeValue coin = Runtime.sample(Runtime.flip(Runtime.constant(0.5f)));
+            return Runtime.observe(coin, Runtime.constant(1));
+        }
+    }
+
+    /**
+     * Returns a biased coin flip sample
+     */
+    private static class CoinProgram extends Program {
+        @Override
+        public RuntimeValue run() throws RuntimeException {
+            RuntimeValue coin = Runtime.sample(Runtime.flip(Runtime.constant(0.3f)));
+            return Runtime.observe(Runtime.constant(true), coin);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package episcopal.runtime;
+
+/**
+ * Thrown when an observation rejects the current run of a program
+ *
+ * Rejections are part of the normal execution of a program, so the exception has no stack trace and a single shared
+ * instance is thrown. Throwing it costs about as much as returning a status.
+ */
+public class ObservationFailedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Shared instance thrown by the observations
+     */
+    static final ObservationFailedException INSTANCE = new ObservationFailedException();
+
+    private ObservationFailedException() {
+        super("Observation failed", false);
+    }
+}
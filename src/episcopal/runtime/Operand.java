@@ -0,0 +1,91 @@
+package episcopal.runtime;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Operand of an operator evaluated by the compiled program on another thread (see {@link Program#forkOperand})
+ *
+ * The operand runs in its own execution context split off the context of the thread that forked it, so that the
+ * random generators are not shared. The evidence of an exact context is multiplied into the context of the joining
+ * thread. An operand that was not forked holds its value already.
+ */
+@SuppressWarnings("serial")
+public final class Operand extends RecursiveTask<RuntimeValue> {
+    private final Program program;
+    private final int task;
+    private final RuntimeValue[] arguments;
+    private final ExecutionContext context;
+    private final RuntimeValue value;
+
+    /**
+     * Runtime error thrown by the operand, rethrown when it is joined
+     */
+    private RuntimeException error;
+
+    private Operand(Program program, int task, RuntimeValue[] arguments, ExecutionContext context, RuntimeValue value) {
+        this.program = program;
+        this.task = task;
+        this.arguments = arguments;
+        this.context = context;
+        this.value = value;
+    }
+
+    /**
+     * Creates an operand to be forked
+     * @param program Program evaluating the operand
+     * @param task Index of the operand task of the program
+     * @param arguments Arguments of the task
+     * @param context Execution context of the operand
+     * @return Operand
+     */
+    static Operand of(Program program, int task, RuntimeValue[] arguments, ExecutionContext context) {
+        return new Operand(program, task, arguments, context, null);
+    }
+
+    /**
+     * Wraps the value of an operand task that has not been forked. Called by the compiled code when the parallel
+     * evaluation is disabled.
+     * @param value Value of the operand
+     * @return Operand that has been evaluated already
+     */
+    public static Operand evaluated(RuntimeValue value) {
+        return new Operand(null, 0, null, null, value);
+    }
+
+    @Override
+    protected RuntimeValue compute() {
+        ExecutionContext previous = ExecutionContext.enter(context);
+
+        try {
+            return program.evaluateOperand(task, arguments);
+        } catch (RuntimeException e) {
+            error = e;
+            return null;
+        } finally {
+            ExecutionContext.enter(previous);
+        }
+    }
+
+    /**
+     * Waits for the operand to be evaluated. Called by the compiled code before the operator.
+     * @return Value of the operand
+     * @throws RuntimeException Thrown if the evaluation of the operand failed
+     */
+    public RuntimeValue result() throws RuntimeException {
+        if (context == null) {
+            return value;
+        }
+
+        RuntimeValue result = join();
+
+        if (error != null) {
+            throw error;
+        }
+
+        if (context.isExact()) {
+            ExecutionContext.current().observe(context.getEvidence());
+        }
+
+        return result;
+    }
+}
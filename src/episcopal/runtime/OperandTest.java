@@ -0,0 +1,108 @@
+package episcopal.runtime;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OperandTest {
+    @Test
+    public void sequentialByDefault() throws Exception {
+        SumProgram program = new SumProgram(1);
+
+        assertEquals(2 * SumProgram.TERMS, program.run().getDiscreteIntSample().pointValue());
+        assertSame(Thread.currentThread(), program.operandThread);
+        assertEquals(0, program.forks.get());
+    }
+
+    @Test
+    public void parallel() throws Exception {
+        SumProgram program = new SumProgram(1);
+        program.parallelizeOperands(true);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2 * SumProgram.TERMS, program.run().getDiscreteIntSample().pointValue());
+        }
+
+        assertEquals(10, program.forks.get());
+    }
+
+    @Test(expected = ObservationFailedException.class)
+    public void failedOperand() throws Exception {
+        SumProgram program = new SumProgram(0);
+        program.parallelizeOperands(true);
+        program.run(new ExecutionContext(1)).getDiscreteIntSample();
+    }
+
+    @Test
+    public void exactEvidence() throws Exception {
+        SumProgram program = new SumProgram(0.25f);
+        program.parallelizeOperands(true);
+        ConditionedResult result = program.condition();
+
+        assertEquals(0.25, result.getEvidence(), 1e-9);
+    }
+
+    /**
+     * Program adding two sums of constants, with the left sum as an operand task, in the same way as compiled programs
+     */
+    private static class SumProgram extends Program {
+        static final int TERMS = 1000;
+
+        /**
+         * Probability of the observation made by the operand task
+         */
+        private final float observed;
+        private volatile Thread operandThread;
+        private final AtomicInteger forks = new AtomicInteger();
+
+        SumProgram(float observed) {
+            this.observed = observed;
+        }
+
+        @Override
+        public RuntimeValue run() throws RuntimeException {
+            Operand left = isParallelOperands()
+                    ? forkOperand(0, new RuntimeValue[]{Runtime.constant(1)})
+                    : Operand.evaluated(operand(Runtime.constant(1)));
+            RuntimeValue right = sum(Runtime.constant(1));
+            return Runtime.add(left.result(), right);
+        }
+
+        @Override
+        protected Operand forkOperand(int task, RuntimeValue[] arguments) throws RuntimeException {
+            forks.incrementAndGet();
+            return super.forkOperand(task, arguments);
+        }
+
+        @Override
+        protected RuntimeValue evaluateOperand(int task, RuntimeValue[] arguments) throws RuntimeException {
+            if (task != 0) {
+                return super.evaluateOperand(task, arguments);
+            }
+
+            return operand(arguments[0]);
+        }
+
+        /**
+         * Helper of the operand task
+         */
+        private RuntimeValue operand(RuntimeValue term) throws RuntimeException {
+            operandThread = Thread.currentThread();
+            RuntimeValue sum = sum(term);
+
+            return Runtime.observe(Runtime.sample(Runtime.flip(Runtime.constant(observed))), sum);
+        }
+
+        private static RuntimeValue sum(RuntimeValue term) throws RuntimeException {
+            RuntimeValue sum = Runtime.constant(0);
+
+            for (int i = 0; i < TERMS; i++) {
+                sum = Runtime.add(sum, term);
+            }
+
+            return sum;
+        }
+    }
+}
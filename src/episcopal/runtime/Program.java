@@ -1,10 +1,32 @@
 package episcopal.runtime;
 
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * Represents an Episcopal program. The class in the compiled bytecode will extend this class and implement the run
  * method that will evaluate the program.
+ *
+ * Running the program with an {@link ExecutionContext} makes its observations use the random generator of the
+ * context, so that a run with a seeded context can be replayed. Estimating the program runs it many times in parallel
+ * and aggregates the results into a posterior sample.
+ *
+ * The compiler lifts the left operands of operators with two expensive operands into operand tasks. When the parallel
+ * evaluation is enabled, such an operand is forked onto the common fork/join pool while the current thread evaluates
+ * the right operand, so that a single large query can use all cores.
  */
 public abstract class Program {
+    /**
+     * Cache of query results, or null if the queries are not memoized
+     */
+    private volatile QueryCache queryCache;
+
+    /**
+     * Number of queued tasks of the current worker from which operands are evaluated inline instead of forked
+     */
+    private static final int MAX_SURPLUS_TASKS = 3;
+
+    private volatile boolean parallelOperands;
+
     /**
      * Runs the program and prints out the result value. If there is an error, shows the error message.
      */
@@ -23,4 +45,176 @@ public abstract class Program {
      * @throws RuntimeException Thrown if there is a runtime error during the execuction
      */
     public abstract RuntimeValue run() throws RuntimeException;
+
+    /**
+     * Runs the program in the specified execution context, which provides the random generator for the observations
+     * @param context Execution context
+     * @return Program result value
+     * @throws RuntimeException Thrown if there is a runtime error during the execuction
+     */
+    public RuntimeValue run(ExecutionContext context) throws RuntimeException {
+        ExecutionContext previous = ExecutionContext.enter(context);
+
+        try {
+            return run();
+        } finally {
+            ExecutionContext.enter(previous);
+        }
+    }
+
+    /**
+     * Runs the program in the specified execution context and reports a rejection by an observation as a status
+     * instead of an exception. Used by runners repeating the program many times.
+     * @param context Execution context
+     * @return Program result value, or null if an observation rejected the run
+     * @throws RuntimeException Thrown if there is a runtime error other than a failed observation
+     */
+    public RuntimeValue tryRun(ExecutionContext context) throws RuntimeException {
+        try {
+            return run(context);
+        } catch (ObservationFailedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs the program once with exact conditioning (see {@link ExecutionContext#exact()}). The observations do not
+     * reject the run, they weigh it by their probability of success instead.
+     * @return Normalized result with the evidence of the observations
+     * @throws RuntimeException Thrown if there is a runtime error or an observation cannot succeed
+     */
+    public ConditionedResult condition() throws RuntimeException {
+        ExecutionContext context = ExecutionContext.exact();
+        RuntimeValue result = run(context);
+        return new ConditionedResult(result, context.getEvidence());
+    }
+
+    /**
+     * Runs the program many times in parallel and aggregates the results of the runs not rejected by an observation.
+     * The runs may run concurrently, so the program must not keep any state between them.
+     * @param runs Number of runs
+     * @return Aggregated result
+     * @throws RuntimeException Thrown if a run fails with other error than a failed observation
+     */
+    public MonteCarloResult estimate(int runs) throws RuntimeException {
+        return estimate(runs, new ExecutionContext());
+    }
+
+    /**
+     * Runs the program many times in parallel. The random generators of the runs are split off the context, so a
+     * seeded context gives the same result every time.
+     * @param runs Number of runs
+     * @param context Execution context
+     * @return Aggregated result
+     * @throws RuntimeException Thrown if a run fails with other error than a failed observation
+     */
+    public MonteCarloResult estimate(int runs, ExecutionContext context) throws RuntimeException {
+        return new MonteCarlo(this).run(runs, 0, context);
+    }
+
+    /**
+     * Runs the program in parallel until the standard error of the result is within the precision
+     * @param precision Target standard error of the probabilities in the result
+     * @param maxRuns Largest number of runs
+     * @param context Execution context
+     * @return Aggregated result
+     * @throws RuntimeException Thrown if a run fails with other error than a failed observation
+     */
+    public MonteCarloResult estimate(double precision, int maxRuns, ExecutionContext context) throws RuntimeException {
+        return new MonteCarlo(this).run(maxRuns, precision, context);
+    }
+
+    /**
+     * Enables memoization of query results. Compiled queries that cannot make observations, not even through the
+     * queries they call, are then evaluated once for each combination of argument values. Later calls with structurally
+     * equal arguments get the cached result. Queries are not memoized by default.
+     * @param capacity Largest number of cached results, or 0 to disable memoization
+     */
+    public void memoizeQueries(int capacity) {
+        queryCache = capacity > 0 ? new QueryCache(capacity) : null;
+    }
+
+    /**
+     * Looks up a cached result of a query. Called by the compiled query methods.
+     * @param query Name of the query
+     * @param arguments Argument values
+     * @return Cached result, or null if the query has to be evaluated
+     */
+    protected RuntimeValue cachedQuery(String query, RuntimeValue[] arguments) {
+        QueryCache cache = queryCache;
+        return cache == null ? null : cache.get(query, arguments);
+    }
+
+    /**
+     * Stores a result of a query, if the queries are memoized. Called by the compiled query methods.
+     * @param query Name of the query
+     * @param arguments Argument values
+     * @param result Result value
+     * @return The result value
+     */
+    protected RuntimeValue cacheQuery(String query, RuntimeValue[] arguments, RuntimeValue result) {
+        QueryCache cache = queryCache;
+
+        if (cache != null) {
+            cache.put(query, arguments, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Enables the parallel evaluation of the operand tasks. Their observations use random generators split off the
+     * generator of the run, so seeded runs are still reproducible, but give different results than sequential runs.
+     * Operands are evaluated sequentially by default.
+     * @param enabled True to evaluate the operand tasks in parallel
+     */
+    public void parallelizeOperands(boolean enabled) {
+        parallelOperands = enabled;
+    }
+
+    /**
+     * Checks if the operand tasks are evaluated in parallel. Called by the compiled code before each operand task, which
+     * calls the helper of the task directly instead of forking it when the parallel evaluation is disabled.
+     * @return True if the operand tasks are evaluated in parallel
+     */
+    protected boolean isParallelOperands() {
+        return parallelOperands;
+    }
+
+    /**
+     * Starts evaluating an operand task. Called by the compiled code before evaluating the other operand. The operand is
+     * evaluated right away if the parallel evaluation is disabled, or if the current worker has enough queued tasks
+     * already.
+     * @param task Index of the operand task
+     * @param arguments Arguments of the task
+     * @return Operand, joined by {@link Operand#result()}
+     * @throws RuntimeException Thrown if the operand is evaluated right away and fails
+     */
+    protected Operand forkOperand(int task, RuntimeValue[] arguments) throws RuntimeException {
+        if (!parallelOperands || ForkJoinTask.getSurplusQueuedTaskCount() > MAX_SURPLUS_TASKS) {
+            return Operand.evaluated(evaluateOperand(task, arguments));
+        }
+
+        Operand operand = Operand.of(this, task, arguments, ExecutionContext.current().split());
+        operand.fork();
+        return operand;
+    }
+
+    /**
+     * Evaluates an operand task. Compiled programs with operand tasks override this method.
+     * @param task Index of the operand task
+     * @param arguments Arguments of the task
+     * @return Value of the operand
+     * @throws RuntimeException Thrown if there is a runtime error during the evaluation
+     */
+    protected RuntimeValue evaluateOperand(int task, RuntimeValue[] arguments) throws RuntimeException {
+        throw new RuntimeException("Operand task " + task + " does not exist");
+    }
+
+    /**
+     * @return Cache of query results, or null if the queries are not memoized
+     */
+    QueryCache getQueryCache() {
+        return queryCache;
+    }
 }
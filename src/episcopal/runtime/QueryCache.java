@@ -0,0 +1,112 @@
+package episcopal.runtime;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of query results, keyed by the name of the query and the values of its arguments
+ *
+ * The arguments are compared structurally, so a query called again with equal samples or distributions gets the
+ * result of the first call. When the cache is full, the least recently used result is evicted. Cached arguments and
+ * results are frozen, because they are shared by all later calls.
+ *
+ * The runs of a program may be concurrent and share the cache, so its methods are synchronized.
+ */
+class QueryCache {
+    private final Map<Key, RuntimeValue> results;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Largest number of cached results
+     */
+    QueryCache(int capacity) {
+        results = new LinkedHashMap<Key, RuntimeValue>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RuntimeValue> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param query Name of the query
+     * @param arguments Argument values
+     * @return Cached result of the query, or null if there is none
+     */
+    synchronized RuntimeValue get(String query, RuntimeValue[] arguments) {
+        RuntimeValue result = results.get(new Key(query, arguments));
+
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores a result of a query
+     * @param query Name of the query
+     * @param arguments Argument values
+     * @param result Result value
+     */
+    synchronized void put(String query, RuntimeValue[] arguments, RuntimeValue result) {
+        for (RuntimeValue argument : arguments) {
+            argument.freeze();
+        }
+
+        result.freeze();
+        results.put(new Key(query, arguments), result);
+    }
+
+    /**
+     * @return Number of cached results
+     */
+    synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return Number of calls that got a cached result
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of calls that had to evaluate the query
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private static class Key {
+        private final String query;
+        private final RuntimeValue[] arguments;
+        private final int hash;
+
+        Key(String query, RuntimeValue[] arguments) {
+            this.query = query;
+            this.arguments = arguments;
+            this.hash = 31 * query.hashCode() + Arrays.hashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return hash == other.hash && query.equals(other.query) && Arrays.equals(arguments, other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
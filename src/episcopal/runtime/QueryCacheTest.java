@@ -0,0 +1,74 @@
+package episcopal.runtime;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryCacheTest {
+    @Test
+    public void memoize() throws Exception {
+        SquareProgram program = new SquareProgram();
+        program.memoizeQueries(16);
+
+        RuntimeValue result = program.run();
+
+        assertEquals(1, program.evaluations);
+        assertEquals(1, program.getQueryCache().getHits());
+        assertEquals(result, program.run());
+        assertEquals(1, program.evaluations);
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        SquareProgram program = new SquareProgram();
+
+        program.run();
+
+        assertEquals(2, program.evaluations);
+        assertNull(program.getQueryCache());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        QueryCache cache = new QueryCache(2);
+        RuntimeValue[] one = {Runtime.constant(1)};
+        RuntimeValue[] two = {Runtime.constant(2)};
+        RuntimeValue[] three = {Runtime.constant(3)};
+
+        cache.put("q", one, Runtime.constant(1));
+        cache.put("q", two, Runtime.constant(4));
+        cache.get("q", one);
+        cache.put("q", three, Runtime.constant(9));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("q", one));
+        assertNull(cache.get("q", two));
+        assertNotNull(cache.get("q", three));
+    }
+
+    /**
+     * Program calling a query with structurally equal arguments twice, in the same way as compiled query methods
+     */
+    private static class SquareProgram extends Program {
+        private int evaluations;
+
+        @Override
+        public RuntimeValue run() throws RuntimeException {
+            RuntimeValue first = Runtime.sample(Runtime.bernoulli(Runtime.constant(0.5f)));
+            RuntimeValue second = Runtime.sample(Runtime.bernoulli(Runtime.constant(0.5f)));
+            return Runtime.add(square(first), square(second));
+        }
+
+        private RuntimeValue square(RuntimeValue x) throws RuntimeException {
+            RuntimeValue[] arguments = {x};
+            RuntimeValue cached = cachedQuery("square", arguments);
+
+            if (cached != null) {
+                return cached;
+            }
+
+            evaluations++;
+            return cacheQuery("square", arguments, Runtime.multiply(x, x));
+        }
+    }
+}
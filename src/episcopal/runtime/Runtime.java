@@ -1,42 +1,117 @@
 package episcopal.runtime;
 
 import episcopal.Distribution;
-import episcopal.Observations;
 import episcopal.Operators;
 import episcopal.continuous.BetaDistribution;
 import episcopal.continuous.ContinuousDistribution;
+import episcopal.continuous.ContinuousSample;
 import episcopal.continuous.NormalDistribution;
+import episcopal.discrete.Approximation;
 import episcopal.discrete.BernoulliDistribution;
+import episcopal.discrete.BoolDiscreteSample;
 import episcopal.discrete.DiscreteSample;
 import episcopal.discrete.FlipDistribution;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
 
 /**
  * This class contains static method used by the compiled bytecode. This way we need to use bytecode only to call these
  * methods and let the Java compiler compile the runtime code.
+ *
+ * The operators also have overloads for discrete samples of the same type. The compiler calls them directly when it
+ * can infer the types of the operands, so that the operands are neither wrapped in runtime values nor dispatched on
+ * their types.
  */
 public class Runtime {
+    private static final RuntimeValue TRUE = RuntimeValue.of(BoolDiscreteSample.point(true));
+    private static final RuntimeValue FALSE = RuntimeValue.of(BoolDiscreteSample.point(false));
+
+    private static final int BOOL_BOOL = RuntimeValue.BOOL << 3 | RuntimeValue.BOOL;
+    private static final int INT_INT = RuntimeValue.INT << 3 | RuntimeValue.INT;
+    private static final int FLOAT_FLOAT = RuntimeValue.FLOAT << 3 | RuntimeValue.FLOAT;
+    private static final int FLOAT_CONTINUOUS = RuntimeValue.FLOAT << 3 | RuntimeValue.CONTINUOUS;
+    private static final int CONTINUOUS_FLOAT = RuntimeValue.CONTINUOUS << 3 | RuntimeValue.FLOAT;
+
+    private static volatile Approximation approximation = Approximation.EXACT;
+
+    private static volatile boolean lazy;
+
+    /**
+     * Sets the policy bounding the results of arithmetic operators on discrete samples. By default, the results are
+     * exact. The values precomputed by compiled programs that are already initialized keep their policy (see
+     * {@link #share(RuntimeValue)}).
+     * @param policy Approximation policy
+     */
+    public static void setApproximation(Approximation policy) {
+        approximation = policy;
+    }
+
+    /**
+     * @return Policy bounding the results of arithmetic operators on discrete samples
+     */
+    public static Approximation getApproximation() {
+        return approximation;
+    }
+
+    /**
+     * Sets whether the integer operators dispatched at run time build their results lazily (see {@link LazyIntegers}).
+     * By default, each operator computes its result right away. The typed operator overloads are always eager, so the
+     * compiler calls the dispatched operators for chains of integer arithmetic and for comparisons of their results.
+     * @param enabled True to build the results lazily
+     */
+    public static void setLazy(boolean enabled) {
+        lazy = enabled;
+    }
 
     /**
-     * Creates a new discrete sample from an Integer, Float or Boolean instance.
+     * @return True if the integer operators dispatched at run time build their results lazily
+     */
+    public static boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Creates a new discrete sample from an Integer, Float or Boolean instance. The sample is an immutable point mass,
+     * and the values of booleans and small integers are shared. Compiled programs call this once for each constant
+     * when the program class is initialized, and share the value between all runs and threads.
      * @param value Integer, Float or Boolean
      * @return Discrete sample runtime value
      */
     public static RuntimeValue constant(Object value) throws RuntimeException {
         if (value instanceof Integer) {
-            return new RuntimeValue(RuntimeValue.Type.DISCRETE_INT_SAMPLE, DiscreteSample.create(value));
+            int n = (int) value;
+
+            if (n >= IntConstants.MIN && n <= IntConstants.MAX) {
+                return IntConstants.CACHE[n - IntConstants.MIN];
+            }
+
+            return RuntimeValue.of(IntDiscreteSample.point(n));
         }
 
         if (value instanceof Float) {
-            return new RuntimeValue(RuntimeValue.Type.DISCRETE_FLOAT_SAMPLE, DiscreteSample.create(value));
+            return RuntimeValue.of(FloatDiscreteSample.point((float) value));
         }
 
         if (value instanceof Boolean) {
-            return new RuntimeValue(RuntimeValue.Type.DISCRETE_BOOL_SAMPLE, DiscreteSample.create(value));
+            return (boolean) value ? TRUE : FALSE;
         }
 
         throw new RuntimeException("Incompatible constant");
     }
 
+    /**
+     * Makes a runtime value immutable, so that it can be shared between all runs and threads. Compiled programs call
+     * this for the values they precompute from constants when the program class is initialized. These values get the
+     * approximation policy and operator cache in effect at that time, and keep them when the policy or the cache is
+     * changed later.
+     * @param value Runtime value
+     * @return The same value
+     */
+    public static RuntimeValue share(RuntimeValue value) {
+        value.freeze();
+        return value;
+    }
+
     /**
      * Adds two runtime values. Represents the plus operator.
      * @param left Left operand value
@@ -44,35 +119,18 @@ public class Runtime {
      * @return Added values
      */
     public static RuntimeValue add(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_INT_SAMPLE,
-                    Operators.addIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
-        }
-
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_FLOAT_SAMPLE,
-                    Operators.addFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
-        }
-
-        if (isDiscreteFloatSample(left) && hasSingleValue(left.getDiscreteFloatSample()) && isContinuousSample(right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    right.getContinuousSample().add(left.getDiscreteFloatSample().single())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return lazy ? LazyIntegers.add(left, right) : RuntimeValue.of(add(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(add(floats(left), floats(right)));
+            case FLOAT_CONTINUOUS:
+                return RuntimeValue.of(continuous(right).add(point(left, "Adding incompatible types")));
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(continuous(left).add(point(right, "Adding incompatible types")));
+            default:
+                throw new RuntimeException("Adding incompatible types");
         }
-
-        if (isDiscreteFloatSample(right) && hasSingleValue(right.getDiscreteFloatSample()) && isContinuousSample(left)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    left.getContinuousSample().add(right.getDiscreteFloatSample().single())
-            );
-        }
-
-        throw new RuntimeException("Adding incompatible types");
     }
 
     /**
@@ -82,35 +140,18 @@ public class Runtime {
      * @return Subtracted values
      */
     public static RuntimeValue subtract(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_INT_SAMPLE,
-                    Operators.subtractIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return lazy ? LazyIntegers.subtract(left, right) : RuntimeValue.of(subtract(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(subtract(floats(left), floats(right)));
+            case FLOAT_CONTINUOUS:
+                return RuntimeValue.of(continuous(right).add(-1 * point(left, "Subtracting incompatible types")));
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(continuous(left).add(-1 * point(right, "Subtracting incompatible types")));
+            default:
+                throw new RuntimeException("Subtracting incompatible types");
         }
-
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_FLOAT_SAMPLE,
-                    Operators.subtractFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
-        }
-
-        if (isDiscreteFloatSample(left) && hasSingleValue(left.getDiscreteFloatSample()) && isContinuousSample(right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    right.getContinuousSample().add(-1 * left.getDiscreteFloatSample().single())
-            );
-        }
-
-        if (isDiscreteFloatSample(right) && hasSingleValue(right.getDiscreteFloatSample()) && isContinuousSample(left)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    left.getContinuousSample().add(-1 * right.getDiscreteFloatSample().single())
-            );
-        }
-
-        throw new RuntimeException("Subtracting incompatible types");
     }
 
     /**
@@ -120,35 +161,18 @@ public class Runtime {
      * @return Multiplied values
      */
     public static RuntimeValue multiply(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_INT_SAMPLE,
-                    Operators.multiplyIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
-        }
-
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_FLOAT_SAMPLE,
-                    Operators.multiplyFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
-        }
-
-        if (isDiscreteFloatSample(left) && hasSingleValue(left.getDiscreteFloatSample()) && isContinuousSample(right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    right.getContinuousSample().multiply(left.getDiscreteFloatSample().single())
-            );
-        }
-
-        if (isDiscreteFloatSample(right) && hasSingleValue(right.getDiscreteFloatSample()) && isContinuousSample(left)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    left.getContinuousSample().multiply(right.getDiscreteFloatSample().single())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return lazy ? LazyIntegers.multiply(left, right) : RuntimeValue.of(multiply(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(multiply(floats(left), floats(right)));
+            case FLOAT_CONTINUOUS:
+                return RuntimeValue.of(continuous(right).multiply(point(left, "Multiplying incompatible types")));
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(continuous(left).multiply(point(right, "Multiplying incompatible types")));
+            default:
+                throw new RuntimeException("Multiplying incompatible types");
         }
-
-        throw new RuntimeException("Multiplying incompatible types");
     }
 
     /**
@@ -158,35 +182,18 @@ public class Runtime {
      * @return Divided values
      */
     public static RuntimeValue divide(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_INT_SAMPLE,
-                    Operators.divideIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
-        }
-
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_FLOAT_SAMPLE,
-                    Operators.divideFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
-        }
-
-        if (isDiscreteFloatSample(left) && hasSingleValue(left.getDiscreteFloatSample()) && isContinuousSample(right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    right.getContinuousSample().multiply(1 / left.getDiscreteFloatSample().single())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return RuntimeValue.of(divide(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(divide(floats(left), floats(right)));
+            case FLOAT_CONTINUOUS:
+                return RuntimeValue.of(continuous(right).multiply(1 / point(left, "Dividing incompatible types")));
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(continuous(left).multiply(1 / point(right, "Dividing incompatible types")));
+            default:
+                throw new RuntimeException("Dividing incompatible types");
         }
-
-        if (isDiscreteFloatSample(right) && hasSingleValue(right.getDiscreteFloatSample()) && isContinuousSample(left)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.CONTINUOUS_SAMPLE,
-                    left.getContinuousSample().multiply(1 / right.getDiscreteFloatSample().single())
-            );
-        }
-
-        throw new RuntimeException("Dividing incompatible types");
     }
 
     /**
@@ -196,14 +203,12 @@ public class Runtime {
      * @return ANDed values
      */
     public static RuntimeValue and(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteBoolSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.and(left.getDiscreteBoolSample(), right.getDiscreteBoolSample())
-            );
+        switch (types(left, right)) {
+            case BOOL_BOOL:
+                return RuntimeValue.of(and(bools(left), bools(right)));
+            default:
+                throw new RuntimeException("AND-ing incompatible types");
         }
-
-        throw new RuntimeException("AND-ing incompatible types");
     }
 
     /**
@@ -213,14 +218,12 @@ public class Runtime {
      * @return ORed values
      */
     public static RuntimeValue or(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteBoolSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.or(left.getDiscreteBoolSample(), right.getDiscreteBoolSample())
-            );
+        switch (types(left, right)) {
+            case BOOL_BOOL:
+                return RuntimeValue.of(or(bools(left), bools(right)));
+            default:
+                throw new RuntimeException("OR-ing incompatible types");
         }
-
-        throw new RuntimeException("OR-ing incompatible types");
     }
 
     /**
@@ -230,36 +233,19 @@ public class Runtime {
      * @return Boolean or float discrete sample
      */
     public static RuntimeValue equal(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.equalIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return RuntimeValue.of(equal(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(equal(floats(left), floats(right)));
+            case BOOL_BOOL:
+                return RuntimeValue.of(equal(bools(left), bools(right)));
+            case FLOAT_CONTINUOUS:
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(new BoolDiscreteSample().add(false, 1).add(true, 0));
+            default:
+                throw new RuntimeException("Comparing incompatible types");
         }
-
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.equalFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
-        }
-
-        if (isDiscreteBoolSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.equalBooleans(left.getDiscreteBoolSample(), right.getDiscreteBoolSample())
-            );
-        }
-
-        if ((isDiscreteFloatSample(left) && isContinuousSample(right)) ||
-                (isDiscreteFloatSample(right) && isContinuousSample(left))) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    new DiscreteSample<Boolean>().add(false, 1).add(true, 0)
-            );
-        }
-
-        throw new RuntimeException("Comparing incompatible types");
     }
 
     /**
@@ -269,35 +255,18 @@ public class Runtime {
      * @return Boolean or float discrete sample
      */
     public static RuntimeValue lessThan(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.lessThanIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
-        }
-
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.lessThanFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return RuntimeValue.of(lazy ? LazyIntegers.lessThan(left, right) : lessThan(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(lessThan(floats(left), floats(right)));
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(Operators.lessThanContinuous(continuous(left), floats(right)));
+            case FLOAT_CONTINUOUS:
+                return RuntimeValue.of(Operators.greaterThanContinuous(continuous(right), floats(left)));
+            default:
+                throw new RuntimeException("Comparing incompatible types");
         }
-
-        if (isDiscreteFloatSample(right) && isContinuousSample(left)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.lessThanContinuous(left.getContinuousSample(), right.getDiscreteFloatSample())
-            );
-        }
-
-        if (isDiscreteFloatSample(left) && isContinuousSample(right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.not(Operators.lessThanContinuous(right.getContinuousSample(), left.getDiscreteFloatSample()))
-            );
-        }
-
-        throw new RuntimeException("Comparing incompatible types");
     }
 
     /**
@@ -307,35 +276,188 @@ public class Runtime {
      * @return Boolean or float discrete sample
      */
     public static RuntimeValue greaterThan(RuntimeValue left, RuntimeValue right) throws RuntimeException {
-        if (isDiscreteIntSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.greaterThanIntegers(left.getDiscreteIntSample(), right.getDiscreteIntSample())
-            );
+        switch (types(left, right)) {
+            case INT_INT:
+                return RuntimeValue.of(lazy ? LazyIntegers.lessThan(right, left) : greaterThan(ints(left), ints(right)));
+            case FLOAT_FLOAT:
+                return RuntimeValue.of(greaterThan(floats(left), floats(right)));
+            case CONTINUOUS_FLOAT:
+                return RuntimeValue.of(Operators.greaterThanContinuous(continuous(left), floats(right)));
+            case FLOAT_CONTINUOUS:
+                return RuntimeValue.of(Operators.lessThanContinuous(continuous(right), floats(left)));
+            default:
+                throw new RuntimeException("Comparing incompatible types");
         }
+    }
 
-        if (isDiscreteFloatSamples(left, right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.greaterThanFloats(left.getDiscreteFloatSample(), right.getDiscreteFloatSample())
-            );
-        }
+    /**
+     * Adds two integer samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static IntDiscreteSample add(IntDiscreteSample left, IntDiscreteSample right) {
+        return approximate(Operators.addIntegers(left, right));
+    }
 
-        if (isDiscreteFloatSample(right) && isContinuousSample(left)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.not(Operators.lessThanContinuous(left.getContinuousSample(), right.getDiscreteFloatSample()))
-            );
-        }
+    /**
+     * Adds two float samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static FloatDiscreteSample add(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return approximate(Operators.addFloats(left, right));
+    }
 
-        if (isDiscreteFloatSample(left) && isContinuousSample(right)) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
-                    Operators.lessThanContinuous(right.getContinuousSample(), left.getDiscreteFloatSample())
-            );
-        }
+    /**
+     * Subtracts two integer samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static IntDiscreteSample subtract(IntDiscreteSample left, IntDiscreteSample right) {
+        return approximate(Operators.subtractIntegers(left, right));
+    }
+
+    /**
+     * Subtracts two float samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static FloatDiscreteSample subtract(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return approximate(Operators.subtractFloats(left, right));
+    }
 
-        throw new RuntimeException("Comparing incompatible types");
+    /**
+     * Multiplies two integer samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static IntDiscreteSample multiply(IntDiscreteSample left, IntDiscreteSample right) {
+        return approximate(Operators.multiplyIntegers(left, right));
+    }
+
+    /**
+     * Multiplies two float samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static FloatDiscreteSample multiply(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return approximate(Operators.multiplyFloats(left, right));
+    }
+
+    /**
+     * Divides two integer samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static IntDiscreteSample divide(IntDiscreteSample left, IntDiscreteSample right) {
+        return approximate(Operators.divideIntegers(left, right));
+    }
+
+    /**
+     * Divides two float samples, bounded by the approximation policy
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static FloatDiscreteSample divide(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return approximate(Operators.divideFloats(left, right));
+    }
+
+    /**
+     * ANDs two boolean samples
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample and(BoolDiscreteSample left, BoolDiscreteSample right) {
+        return Operators.and(left, right);
+    }
+
+    /**
+     * ORs two boolean samples
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample or(BoolDiscreteSample left, BoolDiscreteSample right) {
+        return Operators.or(left, right);
+    }
+
+    /**
+     * Checks if two integer samples are equal
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample equal(IntDiscreteSample left, IntDiscreteSample right) {
+        return Operators.equalIntegers(left, right);
+    }
+
+    /**
+     * Checks if two float samples are equal
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample equal(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return Operators.equalFloats(left, right);
+    }
+
+    /**
+     * Checks if two boolean samples are equal
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample equal(BoolDiscreteSample left, BoolDiscreteSample right) {
+        return Operators.equalBooleans(left, right);
+    }
+
+    /**
+     * Checks if the left integer sample is less than the right
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample lessThan(IntDiscreteSample left, IntDiscreteSample right) {
+        return Operators.lessThanIntegers(left, right);
+    }
+
+    /**
+     * Checks if the left float sample is less than the right
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample lessThan(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return Operators.lessThanFloats(left, right);
+    }
+
+    /**
+     * Checks if the left integer sample is greater than the right
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample greaterThan(IntDiscreteSample left, IntDiscreteSample right) {
+        return Operators.greaterThanIntegers(left, right);
+    }
+
+    /**
+     * Checks if the left float sample is greater than the right
+     * @param left Left operand sample
+     * @param right Right operand sample
+     * @return Result sample
+     */
+    public static BoolDiscreteSample greaterThan(FloatDiscreteSample left, FloatDiscreteSample right) {
+        return Operators.greaterThanFloats(left, right);
     }
 
     /**
@@ -345,10 +467,7 @@ public class Runtime {
      */
     public static RuntimeValue bernoulli(RuntimeValue p) throws RuntimeException {
         if (isDiscreteFloatSample(p) && hasSingleValue(p.getDiscreteFloatSample())) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISTRIBUTION,
-                    new BernoulliDistribution(p.getDiscreteFloatSample().single())
-            );
+            return RuntimeValue.of(new BernoulliDistribution(p.getDiscreteFloatSample().pointValue()));
         }
 
         throw new RuntimeException("Unable to create Bernoulli distribution");
@@ -363,9 +482,8 @@ public class Runtime {
     public static RuntimeValue beta(RuntimeValue a, RuntimeValue b) throws RuntimeException {
         if (isDiscreteFloatSample(a) && hasSingleValue(a.getDiscreteFloatSample()) &&
                 isDiscreteFloatSample(b) && hasSingleValue(b.getDiscreteFloatSample())) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISTRIBUTION,
-                    new BetaDistribution(a.getDiscreteFloatSample().single(), b.getDiscreteFloatSample().single())
+            return RuntimeValue.of(
+                    new BetaDistribution(a.getDiscreteFloatSample().pointValue(), b.getDiscreteFloatSample().pointValue())
             );
         }
 
@@ -381,9 +499,8 @@ public class Runtime {
     public static RuntimeValue normal(RuntimeValue m, RuntimeValue sd) throws RuntimeException {
         if (isDiscreteFloatSample(m) && hasSingleValue(m.getDiscreteFloatSample()) &&
                 isDiscreteFloatSample(sd) && hasSingleValue(sd.getDiscreteFloatSample())) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISTRIBUTION,
-                    new NormalDistribution(m.getDiscreteFloatSample().single(), sd.getDiscreteFloatSample().single())
+            return RuntimeValue.of(
+                    new NormalDistribution(m.getDiscreteFloatSample().pointValue(), sd.getDiscreteFloatSample().pointValue())
             );
         }
 
@@ -397,10 +514,7 @@ public class Runtime {
      */
     public static RuntimeValue flip(RuntimeValue p) throws RuntimeException {
         if (isDiscreteFloatSample(p) && hasSingleValue(p.getDiscreteFloatSample())) {
-            return new RuntimeValue(
-                    RuntimeValue.Type.DISTRIBUTION,
-                    new FlipDistribution(p.getDiscreteFloatSample().single())
-            );
+            return RuntimeValue.of(new FlipDistribution(p.getDiscreteFloatSample().pointValue()));
         }
 
         throw new RuntimeException("Unable to create Flip distribution");
@@ -416,21 +530,21 @@ public class Runtime {
             Distribution distribution = value.getDistribution();
 
             if (distribution instanceof BernoulliDistribution) {
-                return new RuntimeValue(
+                return RuntimeValue.of(
                         RuntimeValue.Type.DISCRETE_INT_SAMPLE,
                         distribution.sample()
                 );
             }
 
             if (distribution instanceof FlipDistribution) {
-                return new RuntimeValue(
+                return RuntimeValue.of(
                         RuntimeValue.Type.DISCRETE_BOOL_SAMPLE,
                         distribution.sample()
                 );
             }
 
             if (distribution instanceof ContinuousDistribution) {
-                return new RuntimeValue(
+                return RuntimeValue.of(
                         RuntimeValue.Type.CONTINUOUS_SAMPLE,
                         distribution.sample()
                 );
@@ -442,18 +556,32 @@ public class Runtime {
 
     /**
      * Observes a sample. If the sample is true, returns the result value. If it is false, throws runtime exception.
+     * The value is selected using the random generator of the current {@link ExecutionContext}. In an exact context,
+     * the probability of true is multiplied into the evidence and the result is returned, unless the probability is 0.
      * @param sample Sample to observe
      * @param result Result if observation is true
      * @return Result value
      */
     public static RuntimeValue observe(RuntimeValue sample, RuntimeValue result) throws RuntimeException {
         if (isDiscreteBoolSample(sample)) {
-            Boolean value = Observations.select(sample.getDiscreteBoolSample());
+            ExecutionContext context = ExecutionContext.current();
+
+            if (context.isExact()) {
+                double p = sample.getDiscreteBoolSample().probability(true);
+
+                if (!(p > 0)) {
+                    throw ObservationFailedException.INSTANCE;
+                }
+
+                context.observe(p);
+                return result;
+            }
 
-            if (value) {
+            // the missing probability of an incomplete sample rejects the run, as it lowers the evidence in exact mode
+            if (context.getRandom().nextDouble() < sample.getDiscreteBoolSample().probability(true)) {
                 return result;
             } else {
-                throw new RuntimeException("Observation failed");
+                throw ObservationFailedException.INSTANCE;
             }
         }
 
@@ -480,20 +608,77 @@ public class Runtime {
         return value.getType() == RuntimeValue.Type.DISTRIBUTION;
     }
 
-    private static boolean isDiscreteIntSamples(RuntimeValue left, RuntimeValue right) {
-        return isDiscreteIntSample(left) && isDiscreteIntSample(right);
+    private static boolean hasSingleValue(DiscreteSample<?> sample) {
+        return sample.isPoint();
+    }
+
+    /**
+     * @param left Left operand value
+     * @param right Right operand value
+     * @return Code of the combination of the operand types, such as {@link #INT_INT}
+     */
+    private static int types(RuntimeValue left, RuntimeValue right) {
+        return left.getCode() << 3 | right.getCode();
+    }
+
+    private static BoolDiscreteSample bools(RuntimeValue value) {
+        return ((RuntimeValue.BoolSampleValue) value).getValue();
     }
 
-    private static boolean isDiscreteFloatSamples(RuntimeValue left, RuntimeValue right) {
-        return isDiscreteFloatSample(left) && isDiscreteFloatSample(right);
+    private static IntDiscreteSample ints(RuntimeValue value) {
+        if (value instanceof RuntimeValue.LazyIntValue) {
+            return ((RuntimeValue.LazyIntValue) value).evaluate();
+        }
+
+        return ((RuntimeValue.IntSampleValue) value).getValue();
     }
 
-    private static boolean isDiscreteBoolSamples(RuntimeValue left, RuntimeValue right) {
-        return isDiscreteBoolSample(left) && isDiscreteBoolSample(right);
+    private static FloatDiscreteSample floats(RuntimeValue value) {
+        return ((RuntimeValue.FloatSampleValue) value).getValue();
     }
 
-    private static boolean hasSingleValue(DiscreteSample<?> sample) {
-        return sample.single() != null;
+    private static ContinuousSample continuous(RuntimeValue value) {
+        return ((RuntimeValue.ContinuousSampleValue) value).getValue();
+    }
+
+    /**
+     * @param value Discrete float sample
+     * @param error Message of the runtime exception thrown if the sample has more than one value
+     * @return Single value of the sample
+     */
+    private static float point(RuntimeValue value, String error) throws RuntimeException {
+        FloatDiscreteSample sample = floats(value);
+
+        if (!hasSingleValue(sample)) {
+            throw new RuntimeException(error);
+        }
+
+        return sample.pointValue();
+    }
+
+    private static IntDiscreteSample approximate(IntDiscreteSample sample) {
+        Approximation policy = approximation;
+        return policy.isExact() ? sample : policy.apply(sample);
+    }
+
+    private static FloatDiscreteSample approximate(FloatDiscreteSample sample) {
+        Approximation policy = approximation;
+        return policy.isExact() ? sample : policy.apply(sample);
+    }
+
+    /**
+     * Shared runtime values of small integer constants
+     */
+    private static class IntConstants {
+        static final int MIN = -128;
+        static final int MAX = 127;
+        static final RuntimeValue[] CACHE = new RuntimeValue[MAX - MIN + 1];
+
+        static {
+            for (int i = 0; i < CACHE.length; i++) {
+                CACHE[i] = RuntimeValue.of(IntDiscreteSample.point(MIN + i));
+            }
+        }
     }
 
 }
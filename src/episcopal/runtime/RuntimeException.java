@@ -4,4 +4,13 @@ public class RuntimeException extends Exception {
     public RuntimeException(String message) {
         super(message);
     }
+
+    /**
+     * Creates an exception without a stack trace, for errors that are thrown often and handled by the runtime
+     * @param message Error message
+     * @param writableStackTrace False to skip capturing the stack trace
+     */
+    protected RuntimeException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
@@ -0,0 +1,74 @@
+package episcopal.runtime;
+
+import episcopal.discrete.Approximation;
+import episcopal.discrete.BoolDiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RuntimeTest {
+    @Test
+    public void sharedConstants() throws Exception {
+        assertTrue(Runtime.constant(0.5f).getDiscreteFloatSample().isFrozen());
+        assertTrue(Runtime.constant(1000).getDiscreteIntSample().isFrozen());
+        assertSame(Runtime.constant(1), Runtime.constant(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutableConstant() throws Exception {
+        Runtime.constant(2.5f).getDiscreteFloatSample().add(1f, 0.5);
+    }
+
+    @Test
+    public void sharedValue() throws Exception {
+        RuntimeValue sample = Runtime.sample(Runtime.flip(Runtime.constant(0.25f)));
+
+        assertSame(sample, Runtime.share(sample));
+        assertTrue(sample.getDiscreteBoolSample().isFrozen());
+        assertEquals(0.25, sample.getDiscreteBoolSample().probability(true), 1e-6);
+    }
+
+    @Test
+    public void typedOperators() {
+        IntDiscreteSample sum = Runtime.add(IntDiscreteSample.point(2), IntDiscreteSample.point(3));
+        FloatDiscreteSample quotient = Runtime.divide(FloatDiscreteSample.point(1f), FloatDiscreteSample.point(4f));
+        BoolDiscreteSample less = Runtime.lessThan(IntDiscreteSample.point(2), IntDiscreteSample.point(3));
+        BoolDiscreteSample and = Runtime.and(BoolDiscreteSample.point(true), BoolDiscreteSample.point(false));
+
+        assertEquals(5, sum.pointValue());
+        assertEquals(0.25f, quotient.pointValue(), 0);
+        assertTrue(less.pointValue());
+        assertFalse(and.pointValue());
+    }
+
+    @Test
+    public void approximation() {
+        IntDiscreteSample sample = new IntDiscreteSample().add(1, 0.5).add(2, 0.49).add(3, 0.01);
+
+        try {
+            Runtime.setApproximation(new Approximation(0.1, Integer.MAX_VALUE, 0));
+            assertEquals(2, Runtime.add(sample, IntDiscreteSample.point(0)).size());
+        } finally {
+            Runtime.setApproximation(Approximation.EXACT);
+        }
+
+        assertEquals(3, Runtime.add(sample, IntDiscreteSample.point(0)).size());
+    }
+
+    @Test
+    public void typedMatchesDynamic() throws Exception {
+        IntDiscreteSample sample = new IntDiscreteSample().add(1, 0.5).add(2, 0.5);
+        RuntimeValue value = RuntimeValue.of(sample);
+
+        assertEquals(
+                Runtime.multiply(value, value).toString(),
+                Runtime.multiply(sample, sample).toString()
+        );
+        assertEquals(
+                Runtime.equal(value, value).toString(),
+                Runtime.equal(sample, sample).toString()
+        );
+    }
+}
@@ -2,14 +2,27 @@ package episcopal.runtime;
 
 import episcopal.Distribution;
 import episcopal.continuous.ContinuousSample;
+import episcopal.discrete.BoolDiscreteSample;
 import episcopal.discrete.DiscreteSample;
+import episcopal.discrete.FloatDiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
 
 /**
  * Represents a runtime value. It can contain a discrete or continuous sample, or a distribution. A separate class is
  * needed because we cannot use the instanceof operator to check the type of a discrete distribution, because of Java's
  * type erasure.
+ *
+ * Each type of value has its own final subclass holding the value with its static type. The operators of the runtime
+ * switch on the codes of the types of both operands at once and then read the operands by casting them to the
+ * subclasses, so that every operator implementation is a direct call.
+ *
+ * Discrete samples are kept in their primitive representation. Samples created by the runtime already are primitive,
+ * other samples are converted when the value is created.
  */
-public class RuntimeValue {
+public abstract sealed class RuntimeValue {
+    /**
+     * Type of a runtime value. The order of the types matches their codes.
+     */
     public enum Type {
         DISCRETE_BOOL_SAMPLE,
         DISCRETE_INT_SAMPLE,
@@ -18,44 +31,322 @@ public class RuntimeValue {
         DISTRIBUTION,
     };
 
-    private Type type;
-    private Object value;
+    static final int BOOL = 0;
+    static final int INT = 1;
+    static final int FLOAT = 2;
+    static final int CONTINUOUS = 3;
+    static final int DISTRIBUTION = 4;
 
-    public RuntimeValue(Type type, Object value) {
+    private final Type type;
+
+    /**
+     * Code of the type, usable as a switch label
+     */
+    private final int code;
+
+    private RuntimeValue(Type type) {
         this.type = type;
-        this.value = value;
+        this.code = type.ordinal();
     }
 
-    public Type getType() {
+    /**
+     * Creates a runtime value of the specified type
+     * @param type Type of the value
+     * @param value Discrete sample of the matching type, continuous sample or distribution
+     * @return Runtime value
+     */
+    @SuppressWarnings("unchecked")
+    public static RuntimeValue of(Type type, Object value) {
+        switch (type) {
+            case DISCRETE_BOOL_SAMPLE:
+                return of(BoolDiscreteSample.of((DiscreteSample<Boolean>) value));
+            case DISCRETE_INT_SAMPLE:
+                return of(IntDiscreteSample.of((DiscreteSample<Integer>) value));
+            case DISCRETE_FLOAT_SAMPLE:
+                return of(FloatDiscreteSample.of((DiscreteSample<Float>) value));
+            case CONTINUOUS_SAMPLE:
+                return of((ContinuousSample) value);
+            default:
+                return of((Distribution) value);
+        }
+    }
+
+    public static BoolSampleValue of(BoolDiscreteSample sample) {
+        return new BoolSampleValue(sample);
+    }
+
+    public static IntSampleValue of(IntDiscreteSample sample) {
+        return new IntSampleValue(sample);
+    }
+
+    public static FloatSampleValue of(FloatDiscreteSample sample) {
+        return new FloatSampleValue(sample);
+    }
+
+    public static ContinuousSampleValue of(ContinuousSample sample) {
+        return new ContinuousSampleValue(sample);
+    }
+
+    public static DistributionValue of(Distribution distribution) {
+        return new DistributionValue(distribution);
+    }
+
+    public final Type getType() {
         return type;
     }
 
-    public Object getValue() {
-        return value;
+    /**
+     * @return Code of the type of the value, one of {@link #BOOL}, {@link #INT}, {@link #FLOAT}, {@link #CONTINUOUS}
+     * and {@link #DISTRIBUTION}
+     */
+    final int getCode() {
+        return code;
     }
 
-    public DiscreteSample<Boolean> getDiscreteBoolSample() {
-        return (DiscreteSample<Boolean>) value;
+    public abstract Object getValue();
+
+    public BoolDiscreteSample getDiscreteBoolSample() {
+        throw mismatch(Type.DISCRETE_BOOL_SAMPLE);
     }
 
-    public DiscreteSample<Integer> getDiscreteIntSample() {
-        return (DiscreteSample<Integer>) value;
+    public IntDiscreteSample getDiscreteIntSample() {
+        throw mismatch(Type.DISCRETE_INT_SAMPLE);
     }
 
-    public DiscreteSample<Float> getDiscreteFloatSample() {
-        return (DiscreteSample<Float>) value;
+    public FloatDiscreteSample getDiscreteFloatSample() {
+        throw mismatch(Type.DISCRETE_FLOAT_SAMPLE);
     }
 
     public ContinuousSample getContinuousSample() {
-        return (ContinuousSample) value;
+        throw mismatch(Type.CONTINUOUS_SAMPLE);
     }
 
     public Distribution getDistribution() {
-        return (Distribution) value;
+        throw mismatch(Type.DISTRIBUTION);
+    }
+
+    /**
+     * Makes a discrete sample value immutable, so that it can be shared. Other values are immutable already.
+     */
+    void freeze() {
+        if (getValue() instanceof DiscreteSample) {
+            ((DiscreteSample<?>) getValue()).freeze();
+        }
+    }
+
+    /**
+     * Runtime values are equal if they have the same type and structurally equal values
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof RuntimeValue)) {
+            return false;
+        }
+
+        RuntimeValue other = (RuntimeValue) o;
+        return type == other.type && getValue().equals(other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * code + getValue().hashCode();
     }
 
     @Override
     public String toString() {
-        return value.toString();
+        return getValue().toString();
+    }
+
+    private ClassCastException mismatch(Type expected) {
+        return new ClassCastException("Expected " + expected + " value, got " + type);
+    }
+
+    public static final class BoolSampleValue extends RuntimeValue {
+        private final BoolDiscreteSample sample;
+
+        private BoolSampleValue(BoolDiscreteSample sample) {
+            super(Type.DISCRETE_BOOL_SAMPLE);
+            this.sample = sample;
+        }
+
+        @Override
+        public BoolDiscreteSample getValue() {
+            return sample;
+        }
+
+        @Override
+        public BoolDiscreteSample getDiscreteBoolSample() {
+            return sample;
+        }
+    }
+
+    public static final class IntSampleValue extends RuntimeValue {
+        private final IntDiscreteSample sample;
+
+        private IntSampleValue(IntDiscreteSample sample) {
+            super(Type.DISCRETE_INT_SAMPLE);
+            this.sample = sample;
+        }
+
+        @Override
+        public IntDiscreteSample getValue() {
+            return sample;
+        }
+
+        @Override
+        public IntDiscreteSample getDiscreteIntSample() {
+            return sample;
+        }
+    }
+
+    public static final class FloatSampleValue extends RuntimeValue {
+        private final FloatDiscreteSample sample;
+
+        private FloatSampleValue(FloatDiscreteSample sample) {
+            super(Type.DISCRETE_FLOAT_SAMPLE);
+            this.sample = sample;
+        }
+
+        @Override
+        public FloatDiscreteSample getValue() {
+            return sample;
+        }
+
+        @Override
+        public FloatDiscreteSample getDiscreteFloatSample() {
+            return sample;
+        }
+    }
+
+    public static final class ContinuousSampleValue extends RuntimeValue {
+        private final ContinuousSample sample;
+
+        private ContinuousSampleValue(ContinuousSample sample) {
+            super(Type.CONTINUOUS_SAMPLE);
+            this.sample = sample;
+        }
+
+        @Override
+        public ContinuousSample getValue() {
+            return sample;
+        }
+
+        @Override
+        public ContinuousSample getContinuousSample() {
+            return sample;
+        }
+    }
+
+    /**
+     * Integer sample defined by an operator on two integer values, evaluated when it is first read (see
+     * {@link LazyIntegers}). The result is kept, so a node shared by several expressions is evaluated once, and the
+     * operands are released after the evaluation.
+     */
+    public static final class LazyIntValue extends RuntimeValue {
+        private final char operator;
+        private final int depth;
+        private RuntimeValue left;
+        private RuntimeValue right;
+        private IntDiscreteSample sample;
+
+        /**
+         * Number of nodes using this node as an operand
+         */
+        private int uses;
+
+        LazyIntValue(char operator, RuntimeValue left, RuntimeValue right) {
+            super(Type.DISCRETE_INT_SAMPLE);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+            this.depth = 1 + Math.max(depth(left), depth(right));
+        }
+
+        @Override
+        public IntDiscreteSample getValue() {
+            return evaluate();
+        }
+
+        @Override
+        public IntDiscreteSample getDiscreteIntSample() {
+            return evaluate();
+        }
+
+        /**
+         * @return True if the sample has been evaluated
+         */
+        public synchronized boolean isEvaluated() {
+            return sample != null;
+        }
+
+        /**
+         * Evaluates the sample, unless it has been evaluated already
+         * @return Integer sample
+         */
+        synchronized IntDiscreteSample evaluate() {
+            if (sample == null) {
+                sample = LazyIntegers.evaluate(operator, left, right);
+                left = null;
+                right = null;
+            }
+
+            return sample;
+        }
+
+        /**
+         * @return Operator of the node, one of '+', '-' and '*'
+         */
+        char getOperator() {
+            return operator;
+        }
+
+        /**
+         * @return Length of the longest path of lazy nodes from this node, when the node was created
+         */
+        int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return Operands of the node, or null if the node has been evaluated or is used by several nodes, so that it
+         * has to be evaluated on its own
+         */
+        synchronized RuntimeValue[] privateOperands() {
+            return sample == null && uses <= 1 ? new RuntimeValue[]{left, right} : null;
+        }
+
+        /**
+         * Records that another node uses this node as an operand
+         */
+        synchronized void use() {
+            uses++;
+        }
+
+        private static int depth(RuntimeValue value) {
+            return value instanceof LazyIntValue ? ((LazyIntValue) value).depth : 0;
+        }
+    }
+
+    public static final class DistributionValue extends RuntimeValue {
+        private final Distribution distribution;
+
+        private DistributionValue(Distribution distribution) {
+            super(Type.DISTRIBUTION);
+            this.distribution = distribution;
+        }
+
+        @Override
+        public Distribution getValue() {
+            return distribution;
+        }
+
+        @Override
+        public Distribution getDistribution() {
+            return distribution;
+        }
     }
 }
@@ -0,0 +1,59 @@
+package episcopal.runtime;
+
+import episcopal.discrete.DiscreteSample;
+import episcopal.discrete.IntDiscreteSample;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RuntimeValueTest {
+    @Test
+    public void ofType() {
+        DiscreteSample<Integer> sample = new DiscreteSample<Integer>().add(1, 0.5f).add(2, 0.5f);
+        RuntimeValue value = RuntimeValue.of(RuntimeValue.Type.DISCRETE_INT_SAMPLE, sample);
+
+        assertTrue(value instanceof RuntimeValue.IntSampleValue);
+        assertEquals(RuntimeValue.Type.DISCRETE_INT_SAMPLE, value.getType());
+        assertEquals(0.5, value.getDiscreteIntSample().probability(2), 1e-9);
+    }
+
+    @Test
+    public void codes() {
+        assertEquals(RuntimeValue.BOOL, RuntimeValue.Type.DISCRETE_BOOL_SAMPLE.ordinal());
+        assertEquals(RuntimeValue.INT, RuntimeValue.Type.DISCRETE_INT_SAMPLE.ordinal());
+        assertEquals(RuntimeValue.FLOAT, RuntimeValue.Type.DISCRETE_FLOAT_SAMPLE.ordinal());
+        assertEquals(RuntimeValue.CONTINUOUS, RuntimeValue.Type.CONTINUOUS_SAMPLE.ordinal());
+        assertEquals(RuntimeValue.DISTRIBUTION, RuntimeValue.Type.DISTRIBUTION.ordinal());
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void mismatch() {
+        RuntimeValue.of(IntDiscreteSample.point(1)).getDiscreteFloatSample();
+    }
+
+    @Test
+    public void dispatch() throws Exception {
+        RuntimeValue sum = Runtime.add(Runtime.constant(1), Runtime.constant(2));
+        RuntimeValue less = Runtime.lessThan(Runtime.constant(1.5f), Runtime.constant(2.5f));
+
+        assertEquals(3, sum.getDiscreteIntSample().pointValue());
+        assertTrue(less.getDiscreteBoolSample().pointValue());
+    }
+
+    @Test
+    public void incompatible() throws Exception {
+        try {
+            Runtime.add(Runtime.constant(1), Runtime.constant(true));
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Adding incompatible types", e.getMessage());
+        }
+
+        try {
+            Runtime.lessThan(Runtime.constant(true), Runtime.constant(false));
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Comparing incompatible types", e.getMessage());
+        }
+    }
+}